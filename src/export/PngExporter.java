@@ -0,0 +1,237 @@
+package export;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.NoninvertibleTransformException;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.function.Function;
+
+import figures.Drawing;
+import figures.DrawingSnapshot;
+import figures.Figure;
+
+/**
+ * Export d'un {@link Drawing} au format PNG par bandes horizontales : chaque
+ * bande est dessinée dans une image de la largeur de l'export (avec les
+ * seules figures qui l'intersectent, obtenues auprès de l'index spatial du
+ * dessin) puis transmise ligne par ligne au {@link PngWriter}. La mémoire
+ * utilisée dépend de la taille des bandes et non de celle de l'image
+ * exportée, ce qui permet d'exporter des images de plusieurs gigapixels.
+ * Un export pouvant être long, il peut être réalisé par un autre thread que
+ * l'EDT à partir d'un {@link DrawingSnapshot}, qui n'est pas affecté par les
+ * modifications du dessin pendant l'export.
+ *
+ * @author davidroussel
+ */
+public class PngExporter
+{
+	/**
+	 * Taille maximum par défaut d'une bande (en octets)
+	 */
+	public final static int DefaultStripBytes = 16 * 1024 * 1024;
+
+	/**
+	 * Les caractéristiques de rendu
+	 */
+	private RenderingHints hints;
+
+	/**
+	 * La couleur de fond (ou null pour un fond transparent)
+	 */
+	private Color background;
+
+	/**
+	 * Taille maximum d'une bande (en octets)
+	 */
+	private int stripBytes;
+
+	/**
+	 * Constructeur d'un export anti-aliasé sur fond blanc
+	 */
+	public PngExporter()
+	{
+		this(new RenderingHints(RenderingHints.KEY_ANTIALIASING,
+		                        RenderingHints.VALUE_ANTIALIAS_ON),
+		     Color.WHITE, DefaultStripBytes);
+	}
+
+	/**
+	 * Constructeur
+	 * @param hints les caractéristiques de rendu
+	 * @param background la couleur de fond (ou null pour un fond
+	 * transparent)
+	 * @param stripBytes la taille maximum d'une bande (en octets)
+	 */
+	public PngExporter(RenderingHints hints, Color background, int stripBytes)
+	{
+		this.hints = hints;
+		this.background = background;
+		this.stripBytes = stripBytes;
+	}
+
+	/**
+	 * Nombre de lignes par bande pour une largeur d'image donnée
+	 * @param width la largeur de l'image exportée
+	 * @return le nombre de lignes des bandes (au moins 1)
+	 */
+	public int getStripHeight(int width)
+	{
+		return Math.max(1, stripBytes / (4 * width));
+	}
+
+	/**
+	 * Export d'un dessin dans un fichier PNG
+	 * @param drawing le dessin
+	 * @param width la largeur de l'image
+	 * @param height la hauteur de l'image
+	 * @param transform la transformation du repère du dessin vers celui de
+	 * l'image (ou null pour l'identité)
+	 * @param file le fichier à écrire
+	 * @throws IOException si l'écriture échoue
+	 */
+	public void export(Drawing drawing, int width, int height,
+		AffineTransform transform, File file) throws IOException
+	{
+		try (OutputStream out =
+			new BufferedOutputStream(new FileOutputStream(file)))
+		{
+			export(drawing, width, height, transform, out);
+		}
+	}
+
+	/**
+	 * Export d'un dessin au format PNG dans un flux
+	 * @param drawing le dessin
+	 * @param width la largeur de l'image
+	 * @param height la hauteur de l'image
+	 * @param transform la transformation du repère du dessin vers celui de
+	 * l'image (ou null pour l'identité)
+	 * @param out le flux dans lequel écrire (non fermé)
+	 * @throws IOException si l'écriture échoue
+	 */
+	public void export(Drawing drawing, int width, int height,
+		AffineTransform transform, OutputStream out) throws IOException
+	{
+		export(drawing::getFiguresIn, width, height, transform, out);
+	}
+
+	/**
+	 * Export d'une version immuable d'un dessin dans un fichier PNG (depuis
+	 * n'importe quel thread)
+	 * @param snapshot la version du dessin
+	 * @param width la largeur de l'image
+	 * @param height la hauteur de l'image
+	 * @param transform la transformation du repère du dessin vers celui de
+	 * l'image (ou null pour l'identité)
+	 * @param file le fichier à écrire
+	 * @throws IOException si l'écriture échoue
+	 */
+	public void export(DrawingSnapshot snapshot, int width, int height,
+		AffineTransform transform, File file) throws IOException
+	{
+		try (OutputStream out =
+			new BufferedOutputStream(new FileOutputStream(file)))
+		{
+			export(snapshot::getFiguresIn, width, height, transform, out);
+		}
+	}
+
+	/**
+	 * Export au format PNG dans un flux
+	 * @param figures la recherche des figures (dans l'ordre de dessin) dont
+	 * le rectangle englobant intersecte une zone du dessin
+	 * @param width la largeur de l'image
+	 * @param height la hauteur de l'image
+	 * @param transform la transformation du repère du dessin vers celui de
+	 * l'image (ou null pour l'identité)
+	 * @param out le flux dans lequel écrire (non fermé)
+	 * @throws IOException si l'écriture échoue
+	 */
+	private void export(Function<Rectangle2D, List<Figure>> figures,
+		int width, int height, AffineTransform transform, OutputStream out)
+		throws IOException
+	{
+		AffineTransform t =
+			(transform != null ? transform : new AffineTransform());
+		AffineTransform inverse;
+		try
+		{
+			inverse = t.createInverse();
+		}
+		catch (NoninvertibleTransformException e)
+		{
+			throw new IOException("PngExporter: non invertible transform", e);
+		}
+
+		PngWriter writer = new PngWriter(out, width, height,
+		                                 background == null);
+		int stripHeight = Math.min(getStripHeight(width), height);
+		BufferedImage strip = new BufferedImage(width, stripHeight,
+			background != null ? BufferedImage.TYPE_INT_RGB
+			                   : BufferedImage.TYPE_INT_ARGB);
+		int[] pixels = ((DataBufferInt) strip.getRaster().getDataBuffer())
+			.getData();
+
+		for (int y = 0; y < height; y += stripHeight)
+		{
+			int rows = Math.min(stripHeight, height - y);
+			paintStrip(figures, strip, y, rows, t, inverse);
+			for (int r = 0; r < rows; r++)
+			{
+				writer.writeRow(pixels, r * width);
+			}
+		}
+		writer.finish();
+	}
+
+	/**
+	 * Dessin d'une bande de l'image
+	 * @param figures la recherche des figures intersectant une zone
+	 * @param strip l'image de la bande
+	 * @param y l'ordonnée de la bande dans l'image exportée
+	 * @param rows le nombre de lignes de la bande à dessiner
+	 * @param t la transformation du dessin vers l'image exportée
+	 * @param inverse la transformation de l'image exportée vers le dessin
+	 */
+	private void paintStrip(Function<Rectangle2D, List<Figure>> figures,
+		BufferedImage strip, int y, int rows, AffineTransform t,
+		AffineTransform inverse)
+	{
+		int width = strip.getWidth();
+		Graphics2D g2D = strip.createGraphics();
+		g2D.setRenderingHints(hints);
+		if (background != null)
+		{
+			g2D.setColor(background);
+			g2D.fillRect(0, 0, width, rows);
+		}
+		else
+		{
+			g2D.setBackground(new Color(0, 0, 0, 0));
+			g2D.clearRect(0, 0, width, rows);
+		}
+		g2D.clipRect(0, 0, width, rows);
+		g2D.translate(0, -y);
+		g2D.transform(t);
+
+		// zone du dessin couverte par la bande (+ 1 pixel pour l'antialiasing)
+		Rectangle2D area = inverse.createTransformedShape(
+			new Rectangle2D.Double(-1, y - 1, width + 2, rows + 2))
+			.getBounds2D();
+		for (Figure f : figures.apply(area))
+		{
+			f.draw(g2D);
+		}
+		g2D.dispose();
+	}
+}
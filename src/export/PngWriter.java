@@ -0,0 +1,288 @@
+package export;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Encodeur PNG (truecolor 8 bits, avec ou sans alpha) écrivant l'image ligne
+ * par ligne dans un flux : les lignes sont filtrées (filtre "Sub"),
+ * compressées au fil de l'eau et émises sous forme de blocs IDAT de taille
+ * bornée. La mémoire utilisée ne dépend donc que de la largeur de l'image et
+ * non de sa hauteur.
+ * Utilisation : construction (écriture de l'entête), {@link #writeRow(int[],
+ * int)} pour chacune des lignes de haut en bas puis {@link #finish()}.
+ *
+ * @author davidroussel
+ */
+public class PngWriter
+{
+	/**
+	 * Signature des fichiers PNG
+	 */
+	private final static byte[] signature = new byte[] {
+		(byte) 137, 80, 78, 71, 13, 10, 26, 10
+	};
+
+	/**
+	 * Taille maximum des blocs IDAT émis
+	 */
+	private final static int chunkSize = 64 * 1024;
+
+	/**
+	 * Filtre PNG "Sub" : chaque octet est codé par sa différence avec
+	 * l'octet correspondant du pixel précédent
+	 */
+	private final static byte filterSub = 1;
+
+	/**
+	 * Flux de sortie du fichier
+	 */
+	private final DataOutputStream out;
+
+	/**
+	 * Largeur et hauteur de l'image
+	 */
+	private final int width, height;
+
+	/**
+	 * Indique si l'image comporte un canal alpha
+	 */
+	private final boolean alpha;
+
+	/**
+	 * Nombre d'octets par pixel
+	 */
+	private final int bytesPerPixel;
+
+	/**
+	 * Ligne courante filtrée (octet de filtre compris)
+	 */
+	private final byte[] row;
+
+	/**
+	 * Compresseur des lignes
+	 */
+	private final Deflater deflater;
+
+	/**
+	 * Flux de compression des lignes vers les blocs IDAT
+	 */
+	private final DeflaterOutputStream zip;
+
+	/**
+	 * Nombre de lignes déjà écrites
+	 */
+	private int rows;
+
+	/**
+	 * Flux découpant les données compressées en blocs IDAT
+	 */
+	private class ChunkOutputStream extends OutputStream
+	{
+		/**
+		 * Données du bloc en cours
+		 */
+		private final byte[] buffer = new byte[chunkSize];
+
+		/**
+		 * Nombre d'octets du bloc en cours
+		 */
+		private int count = 0;
+
+		@Override
+		public void write(int b) throws IOException
+		{
+			if (count == buffer.length)
+			{
+				flush();
+			}
+			buffer[count++] = (byte) b;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException
+		{
+			while (len > 0)
+			{
+				if (count == buffer.length)
+				{
+					flush();
+				}
+				int n = Math.min(len, buffer.length - count);
+				System.arraycopy(b, off, buffer, count, n);
+				count += n;
+				off += n;
+				len -= n;
+			}
+		}
+
+		/**
+		 * Émission du bloc en cours (s'il n'est pas vide)
+		 */
+		@Override
+		public void flush() throws IOException
+		{
+			if (count > 0)
+			{
+				writeChunk("IDAT", buffer, count);
+				count = 0;
+			}
+		}
+	}
+
+	/**
+	 * Flux découpant les données compressées en blocs IDAT
+	 */
+	private final ChunkOutputStream chunks;
+
+	/**
+	 * Constructeur : écriture de la signature et de l'entête (IHDR)
+	 * @param out le flux dans lequel écrire l'image (non fermé par cet
+	 * encodeur)
+	 * @param width la largeur de l'image
+	 * @param height la hauteur de l'image
+	 * @param alpha true si l'image comporte un canal alpha
+	 * @throws IOException si l'écriture échoue
+	 * @throws IllegalArgumentException si la taille de l'image est invalide
+	 */
+	public PngWriter(OutputStream out, int width, int height, boolean alpha)
+		throws IOException, IllegalArgumentException
+	{
+		if ((width <= 0) || (height <= 0))
+		{
+			throw new IllegalArgumentException("PngWriter: invalid size "
+				+ width + "x" + height);
+		}
+		this.out = new DataOutputStream(out);
+		this.width = width;
+		this.height = height;
+		this.alpha = alpha;
+		bytesPerPixel = (alpha ? 4 : 3);
+		row = new byte[1 + (width * bytesPerPixel)];
+		rows = 0;
+
+		this.out.write(signature);
+		byte[] header = new byte[13];
+		putInt(header, 0, width);
+		putInt(header, 4, height);
+		header[8] = 8; // bits par composante
+		header[9] = (byte) (alpha ? 6 : 2); // truecolor (avec alpha)
+		header[10] = 0; // compression deflate
+		header[11] = 0; // filtrage adaptatif
+		header[12] = 0; // pas d'entrelacement
+		writeChunk("IHDR", header, header.length);
+
+		chunks = new ChunkOutputStream();
+		deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+		zip = new DeflaterOutputStream(chunks, deflater, chunkSize);
+	}
+
+	/**
+	 * Accesseur de la largeur de l'image
+	 * @return la largeur de l'image
+	 */
+	public int getWidth()
+	{
+		return width;
+	}
+
+	/**
+	 * Accesseur de la hauteur de l'image
+	 * @return la hauteur de l'image
+	 */
+	public int getHeight()
+	{
+		return height;
+	}
+
+	/**
+	 * Écriture de la ligne suivante de l'image
+	 * @param pixels les pixels (ARGB) contenant la ligne
+	 * @param offset l'index du premier pixel de la ligne dans pixels
+	 * @throws IOException si l'écriture échoue
+	 * @throws IllegalStateException si toutes les lignes ont déjà été écrites
+	 */
+	public void writeRow(int[] pixels, int offset)
+		throws IOException, IllegalStateException
+	{
+		if (rows >= height)
+		{
+			throw new IllegalStateException("PngWriter: too many rows");
+		}
+
+		row[0] = filterSub;
+		int previous = 0;
+		int i = 1;
+		for (int x = 0; x < width; x++)
+		{
+			int p = pixels[offset + x];
+			row[i++] = (byte) ((p >> 16) - (previous >> 16));
+			row[i++] = (byte) ((p >> 8) - (previous >> 8));
+			row[i++] = (byte) (p - previous);
+			if (alpha)
+			{
+				row[i++] = (byte) ((p >>> 24) - (previous >>> 24));
+			}
+			previous = p;
+		}
+		zip.write(row, 0, row.length);
+		rows++;
+	}
+
+	/**
+	 * Fin de l'image : émission des dernières données compressées et du bloc
+	 * final (IEND)
+	 * @throws IOException si l'écriture échoue
+	 * @throws IllegalStateException si toutes les lignes n'ont pas été
+	 * écrites
+	 */
+	public void finish() throws IOException, IllegalStateException
+	{
+		if (rows != height)
+		{
+			throw new IllegalStateException("PngWriter: " + rows + " rows "
+				+ "written out of " + height);
+		}
+		zip.finish();
+		deflater.end();
+		chunks.flush();
+		writeChunk("IEND", new byte[0], 0);
+		out.flush();
+	}
+
+	/**
+	 * Écriture d'un bloc PNG : longueur, type, données et CRC
+	 * @param type le type du bloc
+	 * @param data les données du bloc
+	 * @param length le nombre d'octets de données
+	 * @throws IOException si l'écriture échoue
+	 */
+	private void writeChunk(String type, byte[] data, int length)
+		throws IOException
+	{
+		byte[] name = type.getBytes(StandardCharsets.US_ASCII);
+		CRC32 crc = new CRC32();
+		crc.update(name);
+		crc.update(data, 0, length);
+		out.writeInt(length);
+		out.write(name);
+		out.write(data, 0, length);
+		out.writeInt((int) crc.getValue());
+	}
+
+	/**
+	 * Écriture d'un entier (big endian) dans un tableau
+	 */
+	private static void putInt(byte[] b, int index, int value)
+	{
+		b[index] = (byte) (value >>> 24);
+		b[index + 1] = (byte) (value >>> 16);
+		b[index + 2] = (byte) (value >>> 8);
+		b[index + 3] = (byte) value;
+	}
+}
@@ -0,0 +1,463 @@
+package export;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Paint;
+import java.awt.Polygon;
+import java.awt.Shape;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.PathIterator;
+import java.awt.geom.Rectangle2D;
+import java.awt.geom.RoundRectangle2D;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import figures.Drawing;
+import figures.Figure;
+
+/**
+ * Export d'un {@link Drawing} au format SVG. Chaque figure (obtenue au
+ * travers de {@link Drawing#stream()} et donc filtrée comme dans la zone de
+ * dessin) est écrite sous la forme de l'élément SVG correspondant à sa forme
+ * (circle, ellipse, rect, polygon ou path à défaut) muni de sa
+ * transformation.
+ * Les couleurs et traits des figures étant des flyweights issus de
+ * {@link utils.PaintFactory} et {@link utils.StrokeFactory}, les styles
+ * distincts sont peu nombreux : ils sont recensés lors d'un premier parcours
+ * du dessin et émis une seule fois sous forme de classes CSS partagées par
+ * les éléments. Les éléments sont écrits au fil du second parcours dans un
+ * flux bufferisé : la mémoire utilisée ne dépend pas du nombre de figures.
+ *
+ * @author davidroussel
+ */
+public class SvgExporter
+{
+	/**
+	 * Style d'une figure : couleurs de remplissage et de bordure et trait.
+	 * Ces éléments étant des flyweights, ils sont comparés par référence.
+	 */
+	private static class Style
+	{
+		final Paint fill, edge;
+		final BasicStroke stroke;
+
+		Style(Figure figure)
+		{
+			fill = figure.getFillPaint();
+			edge = figure.getEdgePaint();
+			stroke = (edge != null ? figure.getStroke() : null);
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return (31 * ((31 * System.identityHashCode(fill))
+				+ System.identityHashCode(edge)))
+				+ System.identityHashCode(stroke);
+		}
+
+		@Override
+		public boolean equals(Object obj)
+		{
+			if (!(obj instanceof Style))
+			{
+				return false;
+			}
+			Style s = (Style) obj;
+			return (fill == s.fill) && (edge == s.edge) && (stroke == s.stroke);
+		}
+	}
+
+	/**
+	 * Formatteur des nombres (indépendant de la locale)
+	 */
+	private final static DecimalFormat numberFormat =
+		new DecimalFormat("0.###", new DecimalFormatSymbols(Locale.ROOT));
+
+	/**
+	 * Nom de la classe CSS de chacun des styles du dessin en cours d'export
+	 */
+	private final Map<Style, String> classes;
+
+	/**
+	 * Constructeur
+	 */
+	public SvgExporter()
+	{
+		classes = new LinkedHashMap<Style, String>();
+	}
+
+	/**
+	 * Export d'un dessin dans un fichier SVG
+	 * @param drawing le dessin
+	 * @param file le fichier à écrire
+	 * @throws IOException si l'écriture échoue
+	 */
+	public void export(Drawing drawing, File file) throws IOException
+	{
+		try (Writer out = new BufferedWriter(new OutputStreamWriter(
+			new FileOutputStream(file), StandardCharsets.UTF_8)))
+		{
+			export(drawing, out);
+		}
+	}
+
+	/**
+	 * Export d'un dessin au format SVG dans un flux. Le document couvre
+	 * l'étendue du dessin.
+	 * @param drawing le dessin
+	 * @param out le flux dans lequel écrire (non fermé, devrait être
+	 * bufferisé)
+	 * @throws IOException si l'écriture échoue
+	 */
+	public void export(Drawing drawing, final Writer out) throws IOException
+	{
+		// Recensement des styles
+		classes.clear();
+		drawing.stream().forEachOrdered((Figure f) ->
+		{
+			Style style = new Style(f);
+			if (!classes.containsKey(style))
+			{
+				classes.put(style, "s" + classes.size());
+			}
+		});
+
+		Rectangle2D extent = drawing.getExtent();
+		if (extent == null)
+		{
+			extent = new Rectangle2D.Double();
+		}
+		out.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+		out.write("<svg xmlns=\"http://www.w3.org/2000/svg\" version=\"1.1\"");
+		out.write(" width=\"" + format(extent.getWidth()) + "\"");
+		out.write(" height=\"" + format(extent.getHeight()) + "\"");
+		out.write(" viewBox=\"" + format(extent.getX()) + " "
+			+ format(extent.getY()) + " " + format(extent.getWidth()) + " "
+			+ format(extent.getHeight()) + "\">\n");
+		writeStyles(out);
+
+		// Écriture des figures
+		try
+		{
+			drawing.stream().forEachOrdered((Figure f) ->
+			{
+				try
+				{
+					writeFigure(f, out);
+				}
+				catch (IOException e)
+				{
+					throw new UncheckedIOException(e);
+				}
+			});
+		}
+		catch (UncheckedIOException e)
+		{
+			throw e.getCause();
+		}
+
+		out.write("</svg>\n");
+		out.flush();
+		classes.clear();
+	}
+
+	/**
+	 * Écriture des classes CSS correspondant aux styles recensés
+	 * @param out le flux dans lequel écrire
+	 * @throws IOException si l'écriture échoue
+	 */
+	private void writeStyles(Writer out) throws IOException
+	{
+		out.write("<style type=\"text/css\"><![CDATA[\n");
+		for (Iterator<Map.Entry<Style, String>> it =
+			classes.entrySet().iterator(); it.hasNext();)
+		{
+			Map.Entry<Style, String> entry = it.next();
+			Style style = entry.getKey();
+			StringBuilder css = new StringBuilder();
+			css.append('.').append(entry.getValue()).append(" {");
+			appendPaint(css, "fill", style.fill);
+			if ((style.edge != null) && (style.stroke != null))
+			{
+				appendPaint(css, "stroke", style.edge);
+				appendStroke(css, style.stroke);
+			}
+			else
+			{
+				css.append(" stroke: none;");
+			}
+			css.append(" }\n");
+			out.write(css.toString());
+		}
+		out.write("]]></style>\n");
+	}
+
+	/**
+	 * Ajout des propriétés CSS d'une couleur
+	 * @param css la définition CSS à compléter
+	 * @param property la propriété ("fill" ou "stroke")
+	 * @param paint la couleur (ou null)
+	 */
+	private static void appendPaint(StringBuilder css, String property,
+		Paint paint)
+	{
+		if (!(paint instanceof Color))
+		{
+			if (paint != null)
+			{
+				System.err.println("SvgExporter: unsupported paint " + paint);
+			}
+			css.append(' ').append(property).append(": none;");
+			return;
+		}
+		Color color = (Color) paint;
+		css.append(' ').append(property).append(": ")
+		   .append(String.format("#%06x", color.getRGB() & 0xffffff))
+		   .append(';');
+		if (color.getAlpha() < 255)
+		{
+			css.append(' ').append(property).append("-opacity: ")
+			   .append(format(color.getAlpha() / 255.0)).append(';');
+		}
+	}
+
+	/**
+	 * Ajout des propriétés CSS d'un trait
+	 * @param css la définition CSS à compléter
+	 * @param stroke le trait
+	 */
+	private static void appendStroke(StringBuilder css, BasicStroke stroke)
+	{
+		css.append(" stroke-width: ").append(format(stroke.getLineWidth()))
+		   .append(';');
+		switch (stroke.getEndCap())
+		{
+			case BasicStroke.CAP_ROUND:
+				css.append(" stroke-linecap: round;");
+				break;
+			case BasicStroke.CAP_SQUARE:
+				css.append(" stroke-linecap: square;");
+				break;
+			default:
+				break;
+		}
+		switch (stroke.getLineJoin())
+		{
+			case BasicStroke.JOIN_ROUND:
+				css.append(" stroke-linejoin: round;");
+				break;
+			case BasicStroke.JOIN_BEVEL:
+				css.append(" stroke-linejoin: bevel;");
+				break;
+			default:
+				css.append(" stroke-miterlimit: ")
+				   .append(format(stroke.getMiterLimit())).append(';');
+				break;
+		}
+		float[] dash = stroke.getDashArray();
+		if (dash != null)
+		{
+			css.append(" stroke-dasharray:");
+			for (int i = 0; i < dash.length; i++)
+			{
+				css.append(i > 0 ? ", " : " ").append(format(dash[i]));
+			}
+			css.append(';');
+			if (stroke.getDashPhase() != 0.0f)
+			{
+				css.append(" stroke-dashoffset: ")
+				   .append(format(stroke.getDashPhase())).append(';');
+			}
+		}
+	}
+
+	/**
+	 * Écriture de l'élément SVG correspondant à une figure
+	 * @param figure la figure
+	 * @param out le flux dans lequel écrire
+	 * @throws IOException si l'écriture échoue
+	 */
+	private void writeFigure(Figure figure, Writer out) throws IOException
+	{
+		Shape shape = figure.getShape();
+		if (shape == null)
+		{
+			return;
+		}
+
+		StringBuilder element = new StringBuilder("<");
+		if ((shape instanceof Ellipse2D)
+			&& (((Ellipse2D) shape).getWidth() == ((Ellipse2D) shape)
+				.getHeight()))
+		{
+			Ellipse2D e = (Ellipse2D) shape;
+			element.append("circle");
+			appendAttribute(element, "cx", e.getCenterX());
+			appendAttribute(element, "cy", e.getCenterY());
+			appendAttribute(element, "r", e.getWidth() / 2.0);
+		}
+		else if (shape instanceof Ellipse2D)
+		{
+			Ellipse2D e = (Ellipse2D) shape;
+			element.append("ellipse");
+			appendAttribute(element, "cx", e.getCenterX());
+			appendAttribute(element, "cy", e.getCenterY());
+			appendAttribute(element, "rx", e.getWidth() / 2.0);
+			appendAttribute(element, "ry", e.getHeight() / 2.0);
+		}
+		else if ((shape instanceof Rectangle2D)
+			|| (shape instanceof RoundRectangle2D))
+		{
+			Rectangle2D r = shape.getBounds2D();
+			element.append("rect");
+			appendAttribute(element, "x", r.getX());
+			appendAttribute(element, "y", r.getY());
+			appendAttribute(element, "width", r.getWidth());
+			appendAttribute(element, "height", r.getHeight());
+			if (shape instanceof RoundRectangle2D)
+			{
+				RoundRectangle2D rr = (RoundRectangle2D) shape;
+				appendAttribute(element, "rx", rr.getArcWidth() / 2.0);
+				appendAttribute(element, "ry", rr.getArcHeight() / 2.0);
+			}
+		}
+		else if (shape instanceof Polygon)
+		{
+			Polygon p = (Polygon) shape;
+			element.append("polygon points=\"");
+			for (int i = 0; i < p.npoints; i++)
+			{
+				element.append(i > 0 ? " " : "").append(p.xpoints[i])
+				       .append(',').append(p.ypoints[i]);
+			}
+			element.append('"');
+		}
+		else
+		{
+			element.append("path d=\"");
+			appendPath(element, shape.getPathIterator(null));
+			element.append('"');
+		}
+
+		if (shape.getPathIterator(null).getWindingRule() ==
+			PathIterator.WIND_EVEN_ODD)
+		{
+			element.append(" fill-rule=\"evenodd\"");
+		}
+		element.append(" class=\"").append(classes.get(new Style(figure)))
+		       .append('"');
+		appendTransform(element, figure.getTransformation());
+		element.append("/>\n");
+		out.write(element.toString());
+	}
+
+	/**
+	 * Ajout d'un attribut numérique
+	 */
+	private static void appendAttribute(StringBuilder element, String name,
+		double value)
+	{
+		element.append(' ').append(name).append("=\"").append(format(value))
+		       .append('"');
+	}
+
+	/**
+	 * Ajout de l'attribut transform correspondant à une transformation (rien
+	 * pour l'identité)
+	 */
+	private static void appendTransform(StringBuilder element,
+		AffineTransform t)
+	{
+		if (t.isIdentity())
+		{
+			return;
+		}
+		element.append(" transform=\"");
+		if (t.getType() == AffineTransform.TYPE_TRANSLATION)
+		{
+			element.append("translate(").append(format(t.getTranslateX()))
+			       .append(' ').append(format(t.getTranslateY()));
+		}
+		else
+		{
+			element.append("matrix(").append(format(t.getScaleX()))
+			       .append(' ').append(format(t.getShearY()))
+			       .append(' ').append(format(t.getShearX()))
+			       .append(' ').append(format(t.getScaleY()))
+			       .append(' ').append(format(t.getTranslateX()))
+			       .append(' ').append(format(t.getTranslateY()));
+		}
+		element.append(")\"");
+	}
+
+	/**
+	 * Ajout des données d'un chemin (attribut d d'un élément path)
+	 */
+	private static void appendPath(StringBuilder element, PathIterator it)
+	{
+		double[] c = new double[6];
+		for (; !it.isDone(); it.next())
+		{
+			switch (it.currentSegment(c))
+			{
+				case PathIterator.SEG_MOVETO:
+					element.append("M ").append(format(c[0])).append(' ')
+					       .append(format(c[1])).append(' ');
+					break;
+				case PathIterator.SEG_LINETO:
+					element.append("L ").append(format(c[0])).append(' ')
+					       .append(format(c[1])).append(' ');
+					break;
+				case PathIterator.SEG_QUADTO:
+					element.append("Q ");
+					for (int i = 0; i < 4; i++)
+					{
+						element.append(format(c[i])).append(' ');
+					}
+					break;
+				case PathIterator.SEG_CUBICTO:
+					element.append("C ");
+					for (int i = 0; i < 6; i++)
+					{
+						element.append(format(c[i])).append(' ');
+					}
+					break;
+				case PathIterator.SEG_CLOSE:
+					element.append("Z ");
+					break;
+				default:
+					break;
+			}
+		}
+		if ((element.length() > 0)
+			&& (element.charAt(element.length() - 1) == ' '))
+		{
+			element.setLength(element.length() - 1);
+		}
+	}
+
+	/**
+	 * Formatage d'un nombre
+	 */
+	private static String format(double value)
+	{
+		synchronized (numberFormat)
+		{
+			return numberFormat.format(value);
+		}
+	}
+}
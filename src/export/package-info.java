@@ -0,0 +1,9 @@
+/**
+ * Package contenant les exports des dessins
+ * <ul>
+ * 	<li>un export PNG par bandes : {@link export.PngExporter}</li>
+ * 	<li>un encodeur PNG ligne par ligne : {@link export.PngWriter}</li>
+ * 	<li>un export SVG : {@link export.SvgExporter}</li>
+ * </ul>
+ */
+package export;
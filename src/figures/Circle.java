@@ -67,6 +67,29 @@ public class Circle extends Figure
 				: newHeight);
 		ellipse.width = size;
 		ellipse.height = size;
+		changed();
+	}
+
+	/**
+	 * Teste si un point exprimé dans le repère du cercle est contenu dans
+	 * celui ci en comparant sa distance au centre avec le rayon
+	 * @param x l'abcisse du point dans le repère de la forme
+	 * @param y l'ordonnée du point dans le repère de la forme
+	 * @return true si le point est contenu dans le cercle, false sinon
+	 * @see figures.Figure#containsLocal(double, double)
+	 */
+	@Override
+	protected boolean containsLocal(double x, double y)
+	{
+		Ellipse2D.Float ellipse = (Ellipse2D.Float) shape;
+		double rayon = ellipse.width / 2.0;
+		if (rayon <= 0.0)
+		{
+			return false;
+		}
+		double dx = x - (ellipse.x + rayon);
+		double dy = y - (ellipse.y + rayon);
+		return (dx * dx + dy * dy) < (rayon * rayon);
 	}
 
 	/**
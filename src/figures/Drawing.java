@@ -3,9 +3,14 @@ package figures;
 import java.awt.BasicStroke;
 import java.awt.Paint;
 import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Observable;
 import java.util.Observer;
-import java.util.Vector;
+import java.util.Set;
+import java.util.function.Predicate;
 import java.util.stream.Stream;
 
 import figures.enums.FigureType;
@@ -16,6 +21,9 @@ import filters.FillColorFilter;
 import filters.LineFilter;
 import filters.ShapeFilter;
 import utils.PaintFactory;
+import utils.PersistentVector;
+import utils.RTree;
+import utils.SnapshotList;
 import utils.StrokeFactory;
 
 /**
@@ -27,9 +35,75 @@ public class Drawing extends Observable
 {
 	
 	/**
-	 * Liste des figures à dessiner
+	 * Liste des figures à dessiner. Chaque modification publie un instantané
+	 * immuable de la liste : les lecteurs (dessin, export, ...) parcourent
+	 * un instantané stable sans verrou pendant que le dessin est modifié.
+	 * @see #getFigures()
 	 */
-	private Vector<Figure> figures;
+	private SnapshotList<Figure> figures;
+
+	/**
+	 * Index spatial des figures selon leur rectangle englobant transformé
+	 * ({@link Figure#getTransformedBounds()}) permettant de ne tester que les
+	 * figures candidates lors de la recherche d'une figure sous un point.
+	 * Mis à jour dès qu'une figure est modifiée de sorte que les recherches
+	 * ne font que lire l'index.
+	 */
+	private RTree<Figure> index;
+
+	/**
+	 * Stockage compact (sur le tas ou hors tas) des figures des très grands
+	 * dessins, situées en dessous de celles de {@link #figures}. Ces figures
+	 * ne sont matérialisées
+	 * (sous forme de vues éphémères) que lorsqu'elles sont dessinées,
+	 * recherchées ou modifiées. Null pour les dessins sans stockage compact
+	 * (par défaut).
+	 * @see #getStore()
+	 */
+	private FigureStore store;
+
+	/**
+	 * Copies immuables des {@link #figures} lors du dernier
+	 * {@link #snapshot()} (les figures ajoutées depuis y figurent en
+	 * attendant d'être copiées)
+	 */
+	private PersistentVector<Figure> frozenFigures;
+
+	/**
+	 * Figures ajoutées ou modifiées depuis le dernier {@link #snapshot()} et
+	 * dont la copie immuable doit être refaite
+	 */
+	private Set<Figure> unfrozenFigures;
+
+	/**
+	 * Le dernier instantané (ou null si le dessin a été modifié depuis)
+	 */
+	private DrawingSnapshot snapshot;
+
+	/**
+	 * Numéro de version du dernier instantané
+	 */
+	private long snapshotVersion;
+
+	/**
+	 * Zone modifiée depuis la dernière notification des observateurs : union
+	 * des anciens et des nouveaux rectangles englobants des figures modifiées
+	 * (null si aucune figure n'a été modifiée)
+	 * @see #update()
+	 */
+	private Rectangle2D damage;
+
+	/**
+	 * Figures ajoutées, retirées ou modifiées depuis la dernière notification
+	 * des observateurs
+	 */
+	private Set<Figure> changedFigures;
+
+	/**
+	 * Indique qu'une modification concernant l'ensemble du dessin (filtrage,
+	 * effacement) a eu lieu depuis la dernière notification des observateurs
+	 */
+	private boolean globalChange;
 	
 	/**
 	 * Le type de figure à créer
@@ -61,12 +135,6 @@ public class Drawing extends Observable
 	 * {@link #edgeWidth}
 	 */
 	private BasicStroke stroke;
-		
-	/**
-	 * Figure située sous le curseur.
-	 * Déterminé par {@link #getFigureAt(Point2D)}
-	 */
-	private Figure selectedFigure;
 	
 	/**
 	 * Etat de filtrage des figures dans le flux de figures fournit par 
@@ -108,11 +176,45 @@ public class Drawing extends Observable
 	private boolean moveMode;
 
 	/**
-	 * Constructeur de modèle de dessin
+	 * La figure en cours d'édition (création ou déplacement) ou null.
+	 * Permet aux vues de ne redessiner que cette figure tant que seule celle
+	 * ci est modifiée.
+	 */
+	private Figure activeFigure;
+
+	/**
+	 * Constructeur de modèle de dessin sans stockage compact
 	 */
 	public Drawing()
 	{
-		figures = new Vector<Figure>();
+		this(null);
+	}
+
+	/**
+	 * Constructeur de modèle de dessin utilisant un stockage compact
+	 * particulier pour ses figures les plus anciennes
+	 * @param store le stockage (vide et propre à ce dessin) :
+	 * {@link RectangularFigureStore} sur le tas, {@link OffHeapFigureStore}
+	 * hors tas (voir {@link FigureStore#create()}) ou null pour un dessin
+	 * sans stockage compact
+	 * @see #getStore()
+	 */
+	public Drawing(FigureStore store)
+	{
+		figures = new SnapshotList<Figure>();
+		index = new RTree<Figure>();
+		this.store = store;
+		if (store != null)
+		{
+			store.drawing = this;
+		}
+		frozenFigures = PersistentVector.empty();
+		unfrozenFigures = new HashSet<Figure>();
+		snapshot = null;
+		snapshotVersion = 0;
+		damage = null;
+		changedFigures = new HashSet<Figure>();
+		globalChange = false;
 		shapeFilters = new FigureFilters<FigureType>();
 		
 		fillColorFilter = null;
@@ -125,7 +227,7 @@ public class Drawing extends Observable
 		edgeType = LineType.SOLID;
 		stroke = StrokeFactory.getStroke(edgeType, edgeWidth);
 		filtering = false;
-		selectedFigure = null;
+		activeFigure = null;
 
 		System.out.println("Drawing model created");
 	}
@@ -138,16 +240,74 @@ public class Drawing extends Observable
 	{
 		// Aide au GC
 		figures.clear();
+		index.clear();
+		if (store != null)
+		{
+			store.clear();
+		}
 	}
 
 	/**
 	 * Mise à jour du ou des {@link Observer} qui observent ce modèle. On place
-	 * le modèle dans un état "changé" puis on notifie les observateurs.
+	 * le modèle dans un état "changé" puis on notifie les observateurs en
+	 * leur transmettant un {@link DrawingChange} décrivant la zone modifiée
+	 * depuis la précédente notification. Si une modification globale a eu
+	 * lieu, la modification transmise est globale. Si aucune modification
+	 * n'a été enregistrée, les observateurs ne sont pas notifiés : leurs
+	 * caches (tuiles, images des figures, etc.) restent ainsi valides.
 	 */
 	public void update()
 	{
+		DrawingChange change;
+		if (globalChange)
+		{
+			change = new DrawingChange();
+			changedFigures.clear();
+		}
+		else if (damage != null)
+		{
+			change = new DrawingChange(damage, changedFigures);
+			changedFigures = new HashSet<Figure>();
+		}
+		else if (!changedFigures.isEmpty())
+		{
+			// figures modifiées sans zone à redessiner
+			change = new DrawingChange(new Rectangle2D.Double(),
+			                           changedFigures);
+			changedFigures = new HashSet<Figure>();
+		}
+		else
+		{
+			return;
+		}
+		damage = null;
+		globalChange = false;
+
 		setChanged();
-		notifyObservers();
+		notifyObservers(change);
+	}
+
+	/**
+	 * Ajout d'une zone modifiée par une figure à la zone à transmettre lors de
+	 * la prochaine notification
+	 * @param figure la figure modifiée
+	 * @param bounds la zone modifiée par la figure (ou null)
+	 */
+	private void addDamage(Figure figure, Rectangle2D bounds)
+	{
+		changedFigures.add(figure);
+		if (bounds != null)
+		{
+			if (damage == null)
+			{
+				damage = new Rectangle2D.Double();
+				damage.setRect(bounds);
+			}
+			else
+			{
+				damage.add(bounds);
+			}
+		}
 	}
 
 	// ------------------------------------------------------------------------
@@ -276,7 +436,14 @@ public class Drawing extends Observable
 		 */
 		if (newFigure != null)
 		{
+			newFigure.drawing = this;
+			newFigure.zOrder = figures.size();
 			figures.add(newFigure);
+			frozenFigures = frozenFigures.append(newFigure);
+			unfrozenFigures.add(newFigure);
+			snapshot = null;
+			index.insert(newFigure, newFigure.getTransformedBounds());
+			addDamage(newFigure, newFigure.getTransformedBounds());
 		}
 
 		/* Notification des observers */
@@ -292,9 +459,14 @@ public class Drawing extends Observable
 	 */
 	public Figure getLastFigure()
 	{
-		if (!figures.isEmpty())
+		List<Figure> current = figures.snapshot();
+		if (!current.isEmpty())
 		{
-			return figures.get(figures.size() - 1);
+			return current.get(current.size() - 1);
+		}
+		else if (storedCount() > 0)
+		{
+			return store.getFigure(store.size() - 1);
 		}
 		else
 		{
@@ -305,47 +477,130 @@ public class Drawing extends Observable
 
 	/**
 	 * Obtention de la dernière figure contenant le point p.
+	 * Les figures sont parcourues de la plus au dessus à la plus en dessous
+	 * au travers des filtres actifs et le parcours s'arrête à la première
+	 * figure contenant le point p. Cette recherche ne modifie pas l'état du
+	 * dessin et peut donc être utilisée depuis plusieurs threads tant que le
+	 * dessin n'est pas modifié en même temps.
 	 * @param p le point sous lequel on cherche une figure
 	 * @return une référence vers la dernière figure contenant le point p ou à
 	 *         défaut null.
 	 */
 	public Figure getFigureAt(Point2D p)
 	{
-		// Première version du parcours sans itérateur
-//		for (int i = figures.size() - 1; i >= 0; i--)
-//		{
-//			AbstractFigure figure = figures.get(i);
-//			if (figure.contains(p))
-//			{
-//				return figure;
-//			}
-//		}
-		
-//		// Seconde version du parcours avec le ListIterator initialisé à listIterator(figures.size())
-//		for (ListIterator<Figure> it = reverseIterator(); it.hasPrevious();)
-//		{
-//			Figure figure = it.previous();
-//			if (figure.contains(p))
-//			{
-//				return figure;
-//			}
-//		}
-		
-		/*
-		 * Recherche dans le flux des figures de la DERNIERE figure contenant
-		 * le point p
-		 */
-		selectedFigure = null;
-		
-		stream().forEach((Figure f) -> 
+		for (Figure f : candidatesAt(p))
+		{
+			if (accept(f) && f.contains(p))
+			{
+				return f;
+			}
+		}
+
+		if (storedCount() == 0)
 		{
-			if (f.contains(p))
+			return null;
+		}
+		int[] stored = store.getIndicesAt(p, storeFilter(), false);
+		return (stored.length > 0 ? store.getFigure(stored[0]) : null);
+	}
+
+	/**
+	 * Obtention de toutes les figures (filtrées) contenant le point p.
+	 * Comme {@link #getFigureAt(Point2D)} cette recherche ne modifie pas l'état
+	 * du dessin.
+	 * @param p le point sous lequel on cherche des figures
+	 * @return la liste des figures contenant le point p, de la plus au dessus
+	 * à la plus en dessous (liste vide si aucune figure ne contient p)
+	 */
+	public List<Figure> getFiguresAt(Point2D p)
+	{
+		List<Figure> result = new ArrayList<Figure>();
+		for (Figure f : candidatesAt(p))
+		{
+			if (accept(f) && f.contains(p))
 			{
-				selectedFigure = f;
+				result.add(f);
 			}
-		});
+		}
+		if (storedCount() > 0)
+		{
+			for (int i : store.getIndicesAt(p, storeFilter(), true))
+			{
+				result.add(store.getFigure(i));
+			}
+		}
 
-		return selectedFigure;
+		return result;
+	}
+
+	/**
+	 * Obtention des figures (filtrées) susceptibles d'être visibles dans une
+	 * zone, c'est à dire dont le rectangle englobant transformé, trait
+	 * compris, intersecte cette zone. Comme {@link #getFigureAt(Point2D)}
+	 * cette recherche utilise l'{@link #index} et ne modifie pas l'état du
+	 * dessin.
+	 * @param area la zone (dans le repère du dessin) à dessiner
+	 * @return la liste des figures intersectant la zone dans l'ordre de
+	 * dessin (de la plus en dessous à la plus au dessus)
+	 */
+	public List<Figure> getFiguresIn(Rectangle2D area)
+	{
+		List<Figure> result = index.search(area);
+		if (filtering)
+		{
+			result.removeIf((Figure f) -> !accept(f));
+		}
+		result.sort((Figure f1, Figure f2) -> f1.zOrder - f2.zOrder);
+
+		if (storedCount() > 0)
+		{
+			int[] stored = store.getIndicesIn(area, storeFilter());
+			List<Figure> all = new ArrayList<Figure>(stored.length
+				+ result.size());
+			for (int i : stored)
+			{
+				all.add(store.getFigure(i));
+			}
+			all.addAll(result);
+			result = all;
+		}
+
+		return result;
+	}
+
+	/**
+	 * Étendue du dessin : union des rectangles englobants transformés (trait
+	 * compris) de toutes les figures, maintenue au fur et à mesure des
+	 * modifications par l'{@link #index}.
+	 * @return l'étendue du dessin ou null si le dessin est vide
+	 */
+	public Rectangle2D getExtent()
+	{
+		Rectangle2D extent = index.getExtent();
+		Rectangle2D stored = (store != null ? store.getExtent() : null);
+		if (stored == null)
+		{
+			return extent;
+		}
+		if (extent != null)
+		{
+			stored.add(extent);
+		}
+		return stored;
+	}
+
+	/**
+	 * Obtention des figures dont le rectangle englobant contient le point p
+	 * grâce à l'{@link #index}
+	 * @param p le point recherché
+	 * @return les figures candidates triées de la plus au dessus à la plus en
+	 * dessous
+	 */
+	private List<Figure> candidatesAt(Point2D p)
+	{
+		List<Figure> candidates = index.search(p);
+		candidates.sort((Figure f1, Figure f2) -> f2.zOrder - f1.zOrder);
+		return candidates;
 	}
 
 	/**
@@ -356,7 +611,28 @@ public class Drawing extends Observable
 	{
 		if (!figures.isEmpty())
 		{
-			figures.remove(figures.size() - 1);
+			Figure removed = figures.removeLast();
+			frozenFigures = frozenFigures.dropLast();
+			unfrozenFigures.remove(removed);
+			snapshot = null;
+			if (removed == activeFigure)
+			{
+				activeFigure = null;
+			}
+			addDamage(removed, index.getBounds(removed));
+			index.remove(removed);
+			removed.drawing = null;
+			update();
+		}
+		else if (storedCount() > 0)
+		{
+			Figure removed = store.getFigure(store.size() - 1);
+			if (removed.equals(activeFigure))
+			{
+				activeFigure = null;
+			}
+			snapshot = null;
+			addDamage(removed, store.removeLast());
 			update();
 		}
 	}
@@ -367,13 +643,52 @@ public class Drawing extends Observable
 	 */
 	public void clear()
 	{
-		if (!figures.isEmpty())
+		if (!figures.isEmpty() || (storedCount() > 0))
 		{
+			for (Figure f : figures.snapshot())
+			{
+				f.drawing = null;
+			}
 			figures.clear();
+			index.clear();
+			if (store != null)
+			{
+				store.clear();
+			}
+			frozenFigures = PersistentVector.empty();
+			unfrozenFigures.clear();
+			snapshot = null;
+			activeFigure = null;
+			globalChange = true;
 			update();
 		}
 	}
 	
+	/**
+	 * Notification de la modification d'une figure de ce dessin (appelée par
+	 * {@link Figure#changed()}) : la figure est immédiatement réindexée avec
+	 * son nouveau rectangle englobant et ses anciens et nouveaux rectangles
+	 * englobants sont ajoutés à la zone modifiée.
+	 * @param figure la figure modifiée
+	 */
+	void figureChanged(Figure figure)
+	{
+		if (figure instanceof FigureStore.StoredFigure)
+		{
+			// figure du stockage compact : non indexée
+			snapshot = null;
+			addDamage(figure, ((FigureStore.StoredFigure) figure)
+				.getPreviousBounds());
+			addDamage(figure, figure.getTransformedBounds());
+			return;
+		}
+		unfrozenFigures.add(figure);
+		snapshot = null;
+		Rectangle2D newBounds = figure.getTransformedBounds();
+		addDamage(figure, index.update(figure, newBounds));
+		addDamage(figure, newBounds);
+	}
+
 	/**
 	 * Accesseur de l'état de filtrage
 	 * @return l'état courant de filtrage
@@ -391,6 +706,7 @@ public class Drawing extends Observable
 	public void setFiltering(boolean filtering)
 	{
 		this.filtering = filtering;
+		globalChange = true;
 		update();
 	}
 	
@@ -409,7 +725,8 @@ public class Drawing extends Observable
 		
 		if (added)
 		{
-			update();			
+			globalChange = true;
+			update();
 		}
 		
 		return added;
@@ -430,6 +747,7 @@ public class Drawing extends Observable
 		
 		if (removed)
 		{
+			globalChange = true;
 			update();
 		}
 		
@@ -445,6 +763,7 @@ public class Drawing extends Observable
 	public void setFillColorFilter(FillColorFilter filter)
 	{
 		fillColorFilter = filter;
+		globalChange = true;
 		update();
 	}
 	
@@ -457,6 +776,7 @@ public class Drawing extends Observable
 	public void setEdgeColorFilter(EdgeColorFilter filter)
 	{
 		edgeColorFilter = filter;
+		globalChange = true;
 		update();
 	}
 	
@@ -473,7 +793,8 @@ public class Drawing extends Observable
 		
 		if (added)
 		{
-			update();			
+			globalChange = true;
+			update();
 		}
 		
 		return added;
@@ -492,45 +813,266 @@ public class Drawing extends Observable
 		
 		if (removed)
 		{
+			globalChange = true;
 			update();
 		}
 		
 		return removed;
 	}
 
+	/**
+	 * Accès à un instantané des figures
+	 * @return la liste immuable (non filtrée) des figures dans l'ordre de
+	 * dessin, qui n'est pas affectée par les modifications ultérieures du
+	 * dessin et peut être parcourue depuis un autre thread sans verrou. Les
+	 * figures du stockage compact ({@link #getStore()}) n'en font pas
+	 * partie.
+	 */
+	public List<Figure> getFigures()
+	{
+		return figures.snapshot();
+	}
+
+	/**
+	 * Nombre total de figures : figures du stockage compact
+	 * ({@link #getStore()}) puis figures de {@link #getFigures()}, sans tenir
+	 * compte des filtres
+	 * @return le nombre de figures du dessin
+	 * @see #getFigure(int)
+	 */
+	public int getFigureCount()
+	{
+		return storedCount() + figures.size();
+	}
+
+	/**
+	 * Accès à une figure par son rang dans l'ordre de dessin, ce qui permet
+	 * de parcourir une partie du dessin sans matérialiser toutes les figures
+	 * du stockage compact (contrairement à {@link #stream()})
+	 * @param order le rang de la figure (0 pour la plus en dessous), entre 0
+	 * et {@link #getFigureCount()} - 1
+	 * @return la figure (une vue pour les figures du stockage compact)
+	 * @throws IndexOutOfBoundsException si le rang est invalide
+	 */
+	public Figure getFigure(int order) throws IndexOutOfBoundsException
+	{
+		int stored = storedCount();
+		if (order < stored)
+		{
+			return store.getFigure(order);
+		}
+		return figures.get(order - stored);
+	}
+
+	/**
+	 * Rang d'une figure dans l'ordre de dessin
+	 * @param figure la figure recherchée
+	 * @return le rang de la figure (tel que {@link #getFigure(int)} la
+	 * renvoie) ou -1 si elle ne fait pas (ou plus) partie du dessin
+	 */
+	public int getOrder(Figure figure)
+	{
+		if (figure instanceof FigureStore.StoredFigure)
+		{
+			FigureStore.StoredFigure stored = (FigureStore.StoredFigure) figure;
+			return ((stored.store() == store)
+				&& (stored.getIndex() < storedCount()) ? stored.getIndex()
+					: -1);
+		}
+		if ((figure == null) || (figure.drawing != this))
+		{
+			return -1;
+		}
+		return storedCount() + figure.zOrder;
+	}
+
+	/**
+	 * Nombre de figures du stockage compact
+	 * @return le nombre de figures du stockage compact ou 0 si ce dessin n'en
+	 * a pas
+	 */
+	private int storedCount()
+	{
+		return (store != null ? store.size() : 0);
+	}
+
+	/**
+	 * Accès au stockage compact des figures situées en dessous de celles de
+	 * {@link #getFigures()}. Les chargements de très grands dessins peuvent y
+	 * ajouter directement des figures (sans les créer sur le tas) avant
+	 * d'appeler {@link #storeChanged()}.
+	 * Les figures du stockage sont fournies (sous forme de vues) par
+	 * {@link #stream()}, {@link #getFiguresIn(Rectangle2D)},
+	 * {@link #getFigureAt(Point2D)} et {@link #getFiguresAt(Point2D)}.
+	 * @return le stockage compact de ce dessin ou null s'il n'en a pas
+	 * (voir {@link #Drawing(FigureStore)})
+	 */
+	public FigureStore getStore()
+	{
+		return store;
+	}
+
+	/**
+	 * Notification de l'ajout de figures directement dans le stockage hors
+	 * tas ({@link #getStore()})
+	 * @post le modèle de dessin a été mis à jour
+	 */
+	public void storeChanged()
+	{
+		snapshot = null;
+		globalChange = true;
+		update();
+	}
+
+	/**
+	 * Déplacement des figures du dessin vers le stockage compact : les
+	 * premières figures pouvant être stockées
+	 * ({@link FigureStore#accepts(Figure)}) sont recopiées dans le
+	 * stockage et retirées des {@link #figures}. Le déplacement s'arrête à la
+	 * première figure ne pouvant être stockée afin de conserver l'ordre de
+	 * dessin.
+	 * @return le nombre de figures déplacées
+	 * @post si des figures ont été déplacées, le modèle de dessin a été mis à
+	 * jour
+	 */
+	public int storeFigures()
+	{
+		if (store == null)
+		{
+			return 0;
+		}
+		List<Figure> current = figures.snapshot();
+		int moved = 0;
+		while ((moved < current.size())
+			&& (current.get(moved) != activeFigure)
+			&& (store.add(current.get(moved)) >= 0))
+		{
+			Figure f = current.get(moved++);
+			index.remove(f);
+			f.drawing = null;
+		}
+		if (moved > 0)
+		{
+			figures.clear();
+			frozenFigures = PersistentVector.empty();
+			unfrozenFigures.clear();
+			snapshot = null;
+			for (Figure f : current.subList(moved, current.size()))
+			{
+				f.zOrder = figures.size();
+				figures.add(f);
+				frozenFigures = frozenFigures.append(f);
+				unfrozenFigures.add(f);
+			}
+			globalChange = true;
+			update();
+		}
+		return moved;
+	}
+
+	/**
+	 * Obtention d'une version immuable des figures du dessin, qui peut être
+	 * conservée (historique) ou parcourue depuis un autre thread sans être
+	 * affectée par les modifications ultérieures du dessin.
+	 * Les versions successives partagent leur structure : seules les figures
+	 * ajoutées ou modifiées depuis l'instantané précédent sont recopiées, et
+	 * le même instantané est renvoyé tant que le dessin n'est pas modifié.
+	 * Doit être appelée depuis le thread qui modifie le dessin. Les figures
+	 * du stockage compact ({@link #getStore()}) y figurent sous la forme
+	 * d'une copie figée du stockage ({@link FigureStore#freeze()}) dont les
+	 * enregistrements ne sont recopiés que lors de leur prochaine
+	 * modification.
+	 * @return la version courante (non filtrée) des figures
+	 */
+	public DrawingSnapshot snapshot()
+	{
+		if (snapshot == null)
+		{
+			for (Figure f : unfrozenFigures)
+			{
+				if (f.drawing == this)
+				{
+					frozenFigures = frozenFigures.update(f.zOrder,
+					                                     new FrozenFigure(f));
+				}
+			}
+			unfrozenFigures.clear();
+			snapshot = new DrawingSnapshot(
+				(storedCount() > 0 ? store.freeze() : null), frozenFigures,
+				++snapshotVersion);
+		}
+		return snapshot;
+	}
+
+	/**
+	 * Prédicat à appliquer aux figures du stockage compact
+	 * @return le test des figures par les filtres lorsque le filtrage est
+	 * actif, null sinon
+	 */
+	private Predicate<Figure> storeFilter()
+	{
+		return (filtering ? this::accept : null);
+	}
+
 	/**
 	 * Accès aux figures dans un stream afin que l'on puisse y appliquer
 	 * de filtres
 	 * @return le flux des figures éventuellement filtrés par les différents
-	 * filtres
+	 * filtres, issu d'un instantané des figures : le flux n'est pas affecté
+	 * par les modifications du dessin pendant son parcours. Les figures du
+	 * stockage compact, en dessous des autres, y sont matérialisées au fur
+	 * et à mesure du parcours.
 	 */
 	public Stream<Figure> stream()
 	{
-		Stream<Figure> figuresStream = figures.stream();
+		Stream<Figure> figuresStream = figures.snapshot().stream();
 		if (filtering)
 		{
-			if (shapeFilters.size() > 0)
+			figuresStream = figuresStream.filter(this::accept);
+		}
+		if (storedCount() > 0)
+		{
+			figuresStream = Stream.concat(store.stream(storeFilter()),
+			                              figuresStream);
+		}
+		
+		return figuresStream;
+	}
+
+	/**
+	 * Test d'une figure par les différents filtres lorsque le filtrage est
+	 * actif
+	 * @param f la figure à tester
+	 * @return true si le filtrage est inactif ou si la figure passe
+	 * l'ensemble des filtres présents, false sinon
+	 * @see #stream()
+	 */
+	public boolean accept(Figure f)
+	{
+		if (filtering)
+		{
+			if ((shapeFilters.size() > 0) && !shapeFilters.test(f))
 			{
-				figuresStream = figuresStream.filter(shapeFilters);
+				return false;
 			}
-			
-			if (fillColorFilter != null)
+
+			if ((fillColorFilter != null) && !fillColorFilter.test(f))
 			{
-				figuresStream = figuresStream.filter(fillColorFilter);
+				return false;
 			}
 
-			if (edgeColorFilter != null)
+			if ((edgeColorFilter != null) && !edgeColorFilter.test(f))
 			{
-				figuresStream = figuresStream.filter(edgeColorFilter);
+				return false;
 			}
-			
-			if (lineFilters.size() > 0)
+
+			if ((lineFilters.size() > 0) && !lineFilters.test(f))
 			{
-				figuresStream = figuresStream.filter(lineFilters);
+				return false;
 			}
 		}
-		
-		return figuresStream;
+
+		return true;
 	}
 	
 	public boolean isMoveMode() {
@@ -540,4 +1082,25 @@ public class Drawing extends Observable
 	public void setMoveMode(boolean moveMode) {
 		this.moveMode = moveMode;
 	}
+
+	/**
+	 * Accesseur de la figure en cours d'édition
+	 * @return la figure en cours de création ou de déplacement ou null
+	 */
+	public Figure getActiveFigure()
+	{
+		return activeFigure;
+	}
+
+	/**
+	 * Mise en place de la figure en cours d'édition (à appeler par les
+	 * contrôleurs au début et à la fin de la création ou du déplacement
+	 * d'une figure)
+	 * @param figure la figure en cours d'édition ou null lorsque l'édition
+	 * est terminée
+	 */
+	public void setActiveFigure(Figure figure)
+	{
+		activeFigure = figure;
+	}
 }
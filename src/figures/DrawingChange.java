@@ -0,0 +1,78 @@
+package figures;
+
+import java.awt.geom.Rectangle2D;
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * Description d'une modification d'un {@link Drawing} transmise aux
+ * observateurs du dessin lors de {@link Drawing#update()}.
+ * Une modification est soit globale (filtrage, effacement, modification non
+ * suivie, etc.) auquel cas tout le dessin doit être redessiné, soit locale
+ * auquel cas elle fournit la zone modifiée (union des anciens et des nouveaux
+ * rectangles englobants transformés des figures modifiées) ainsi que les
+ * figures concernées.
+ *
+ * @author davidroussel
+ */
+public class DrawingChange
+{
+	/**
+	 * La zone modifiée ou null si la modification est globale
+	 */
+	private final Rectangle2D bounds;
+
+	/**
+	 * Les figures ajoutées, retirées ou modifiées
+	 */
+	private final Set<Figure> figures;
+
+	/**
+	 * Constructeur d'une modification globale
+	 */
+	DrawingChange()
+	{
+		bounds = null;
+		figures = Collections.emptySet();
+	}
+
+	/**
+	 * Constructeur d'une modification locale
+	 * @param bounds la zone modifiée
+	 * @param figures les figures modifiées
+	 */
+	DrawingChange(Rectangle2D bounds, Set<Figure> figures)
+	{
+		this.bounds = bounds;
+		this.figures = Collections.unmodifiableSet(figures);
+	}
+
+	/**
+	 * Teste si la modification concerne l'ensemble du dessin
+	 * @return true si l'ensemble du dessin doit être redessiné
+	 */
+	public boolean isGlobal()
+	{
+		return bounds == null;
+	}
+
+	/**
+	 * Accesseur de la zone modifiée
+	 * @return la zone modifiée (dans le repère du dessin) ou null si la
+	 * modification est globale
+	 */
+	public Rectangle2D getBounds()
+	{
+		return bounds;
+	}
+
+	/**
+	 * Accesseur des figures modifiées
+	 * @return l'ensemble (non modifiable) des figures ajoutées, retirées ou
+	 * modifiées, vide si la modification est globale
+	 */
+	public Set<Figure> getFigures()
+	{
+		return figures;
+	}
+}
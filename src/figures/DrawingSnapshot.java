@@ -0,0 +1,220 @@
+package figures;
+
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import utils.PersistentVector;
+
+/**
+ * Version immuable des figures d'un {@link Drawing} obtenue par
+ * {@link Drawing#snapshot()}. Les figures sont des copies immuables rangées
+ * dans un {@link PersistentVector} partagé avec les versions précédentes et
+ * suivantes : seules les figures modifiées entre deux versions sont
+ * recopiées. Une version peut être conservée (historique d'annulation) ou
+ * transmise à un autre thread (dessin, export) sans verrou ni copie, elle
+ * n'est jamais affectée par les modifications ultérieures du dessin.
+ * Les figures du stockage compact du dessin, situées en dessous des autres,
+ * proviennent d'une copie figée de celui ci ({@link FigureStore#freeze()})
+ * et sont matérialisées (sous forme de vues) au fur et à mesure des
+ * parcours.
+ *
+ * @author davidroussel
+ */
+public final class DrawingSnapshot
+{
+	/**
+	 * Les copies immuables des figures dans l'ordre de dessin
+	 */
+	private final PersistentVector<Figure> figures;
+
+	/**
+	 * Copie figée du stockage compact du dessin (ou null)
+	 */
+	private final FigureStore store;
+
+	/**
+	 * Numéro de version du dessin
+	 */
+	private final long version;
+
+	/**
+	 * Étendue des figures calculée à la demande
+	 */
+	private volatile Rectangle2D extent;
+
+	/**
+	 * Constructeur
+	 * @param store la copie figée du stockage compact du dessin (ou null)
+	 * @param figures les copies immuables des figures
+	 * @param version le numéro de version du dessin
+	 */
+	DrawingSnapshot(FigureStore store, PersistentVector<Figure> figures,
+		long version)
+	{
+		this.store = store;
+		this.figures = figures;
+		this.version = version;
+		extent = null;
+	}
+
+	/**
+	 * Accesseur du numéro de version : deux instantanés d'un même dessin ont
+	 * le même numéro si et seulement si le dessin n'a pas été modifié entre
+	 * les deux
+	 * @return le numéro de version du dessin
+	 */
+	public long getVersion()
+	{
+		return version;
+	}
+
+	/**
+	 * Nombre de figures
+	 * @return le nombre de figures de cette version
+	 */
+	public int size()
+	{
+		return storedCount() + figures.size();
+	}
+
+	/**
+	 * Accès aux figures
+	 * @return la liste immuable des figures dans l'ordre de dessin (les
+	 * figures du stockage compact en étant des vues non recopiées dans
+	 * celui ci)
+	 */
+	public List<Figure> getFigures()
+	{
+		if (storedCount() == 0)
+		{
+			return figures;
+		}
+		return new AbstractList<Figure>()
+		{
+			@Override
+			public Figure get(int index)
+			{
+				int stored = store.size();
+				return (index < stored ? store.getFigure(index)
+					: figures.get(index - stored));
+			}
+
+			@Override
+			public int size()
+			{
+				return DrawingSnapshot.this.size();
+			}
+		};
+	}
+
+	/**
+	 * Accès aux figures dans un flux
+	 * @return le flux des figures dans l'ordre de dessin
+	 */
+	public Stream<Figure> stream()
+	{
+		if (storedCount() == 0)
+		{
+			return figures.stream();
+		}
+		return Stream.concat(store.stream(null), figures.stream());
+	}
+
+	/**
+	 * Obtention de la dernière figure contenant un point
+	 * @param p le point
+	 * @return la figure la plus au dessus contenant le point ou null
+	 */
+	public Figure getFigureAt(Point2D p)
+	{
+		for (int i = figures.size() - 1; i >= 0; i--)
+		{
+			Figure f = figures.get(i);
+			if (f.contains(p))
+			{
+				return f;
+			}
+		}
+		if (storedCount() > 0)
+		{
+			int[] stored = store.getIndicesAt(p, null, false);
+			if (stored.length > 0)
+			{
+				return store.getFigure(stored[0]);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Obtention des figures dont le rectangle englobant transformé (trait
+	 * compris) intersecte une zone
+	 * @param area la zone
+	 * @return la liste des figures intersectant la zone dans l'ordre de
+	 * dessin
+	 */
+	public List<Figure> getFiguresIn(Rectangle2D area)
+	{
+		List<Figure> result = new ArrayList<Figure>();
+		if (storedCount() > 0)
+		{
+			for (int i : store.getIndicesIn(area, null))
+			{
+				result.add(store.getFigure(i));
+			}
+		}
+		for (Figure f : figures)
+		{
+			if (f.getTransformedBounds().intersects(area))
+			{
+				result.add(f);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Étendue des figures : union de leurs rectangles englobants transformés
+	 * (et de l'étendue du stockage compact, voir
+	 * {@link FigureStore#getExtent()})
+	 * @return l'étendue des figures ou null si cette version est vide
+	 */
+	public Rectangle2D getExtent()
+	{
+		Rectangle2D result = extent;
+		if ((result == null) && (size() > 0))
+		{
+			if (storedCount() > 0)
+			{
+				result = store.getExtent();
+			}
+			for (Figure f : figures)
+			{
+				if (result == null)
+				{
+					result = (Rectangle2D) f.getTransformedBounds().clone();
+				}
+				else
+				{
+					result.add(f.getTransformedBounds());
+				}
+			}
+			extent = result;
+		}
+		return (result != null ? (Rectangle2D) result.clone() : null);
+	}
+
+	/**
+	 * Nombre de figures du stockage compact
+	 * @return le nombre de figures de la copie figée du stockage compact
+	 * (0 s'il n'y en a pas)
+	 */
+	private int storedCount()
+	{
+		return (store != null ? store.size() : 0);
+	}
+}
@@ -58,9 +58,31 @@ public class Ellipse extends Figure
 			float newHeight = (float) (p.getY() - ellipse.y);
 			ellipse.width = newWidth;
 			ellipse.height = newHeight;
+			changed();
 		}
 	}
 
+	/**
+	 * Teste si un point exprimé dans le repère de l'ellipse est contenu dans
+	 * celle ci grâce à l'équation de l'ellipse
+	 * @param x l'abcisse du point dans le repère de la forme
+	 * @param y l'ordonnée du point dans le repère de la forme
+	 * @return true si le point est contenu dans l'ellipse, false sinon
+	 * @see figures.Figure#containsLocal(double, double)
+	 */
+	@Override
+	protected boolean containsLocal(double x, double y)
+	{
+		Ellipse2D.Float ellipse = (Ellipse2D.Float) shape;
+		if ((ellipse.width <= 0.0f) || (ellipse.height <= 0.0f))
+		{
+			return false;
+		}
+		double nx = (x - ellipse.x) / ellipse.width - 0.5;
+		double ny = (y - ellipse.y) / ellipse.height - 0.5;
+		return (nx * nx + ny * ny) < 0.25;
+	}
+
 	/**
 	 * Obtention du barycentre de la figure.
 	 * 
@@ -3,6 +3,7 @@ package figures;
 import java.awt.BasicStroke;
 import java.awt.Graphics2D;
 import java.awt.Paint;
+import java.awt.RenderingHints;
 import java.awt.Shape;
 import java.awt.geom.AffineTransform;
 import java.awt.geom.NoninvertibleTransformException;
@@ -48,6 +49,51 @@ public abstract class Figure
 	
 	protected AffineTransform transformation;
 
+	/**
+	 * Le dessin contenant cette figure (ou null). Celui-ci est notifié par
+	 * {@link #changed()} à chaque modification de la forme ou de la
+	 * transformation afin de mettre à jour son index spatial.
+	 */
+	Drawing drawing;
+
+	/**
+	 * Rang de la figure dans le dessin qui la contient (0 pour la figure la
+	 * plus en dessous). Utilisé pour retrouver la figure la plus au dessus
+	 * parmi plusieurs candidates.
+	 */
+	int zOrder;
+
+	/**
+	 * Rectangle englobant transformé et inverse de la transformation,
+	 * calculés ensemble à la demande par {@link #getGeometry()} et invalidés
+	 * par {@link #changed()}, {@link #translate(double, double)} et
+	 * {@link #scale(double, double)}. Volatile (et immuable) car ils peuvent
+	 * être calculés par les threads de dessin.
+	 */
+	private volatile Geometry geometry;
+
+	/**
+	 * Numéro de version de la forme, incrémenté à chaque modification de
+	 * {@link #shape} (mais pas de {@link #transformation}).
+	 * @see #getVersion()
+	 */
+	private long version;
+
+	/**
+	 * Contour de la bordure ({@link BasicStroke#createStrokedShape(Shape)}).
+	 * Calculé à la demande par {@link #getStrokedShape()} et invalidé par
+	 * {@link #changed()}. Volatile car il peut être calculé par les threads de
+	 * dessin.
+	 */
+	private volatile Shape strokedShape;
+
+	/**
+	 * Épaisseur de trait à partir de laquelle la bordure est dessinée en
+	 * remplissant son contour mémorisé plutôt qu'en la traçant
+	 * @see #usesStrokedShape(Graphics2D)
+	 */
+	private final static float wideStrokeWidth = 3.0f;
+
 	/**
 	 * Constructeur d'une figure abstraite à partir d'un style de ligne d'une
 	 * couleur de bordure et d'une couleur de remplissage. Les styles de lignes
@@ -78,26 +124,51 @@ public abstract class Figure
 
 	/**
 	 * Dessin de la figure dans un contexte graphique fournit par le système.
-	 * Met en place le stroke et les couleur, puis dessine la forme géométrique
+	 * Compose la transformation du contexte avec celle de la figure, met en
+	 * place le stroke et les couleur, puis dessine la forme géométrique
 	 * correspondant à la figure (figure remplie d'abord si le fill est non
-	 * null, puis bordure si le edge est non null)
+	 * null, puis bordure si le edge est non null). La transformation du
+	 * contexte est rétablie après le dessin.
+	 * Lorsque c'est possible ({@link #usesStrokedShape(Graphics2D)}), la
+	 * bordure est dessinée en remplissant son contour mémorisé.
 	 *
 	 * @param g2D le contexte graphique
 	 */
 	public final void draw(Graphics2D g2D)
 	{
-		g2D.setTransform(this.transformation);
+		draw(g2D, stroke);
+	}
+
+	/**
+	 * Dessin de la figure avec un autre trait que le sien (un trait plein à
+	 * la place d'un trait pointillé par exemple).
+	 * @param g2D le contexte graphique
+	 * @param edgeStroke le trait à utiliser pour la bordure
+	 * @see #draw(Graphics2D)
+	 */
+	public final void draw(Graphics2D g2D, BasicStroke edgeStroke)
+	{
+		AffineTransform base = g2D.getTransform();
+		g2D.transform(this.transformation);
 		if (fill != null)
 		{
 			g2D.setPaint(fill);
 			g2D.fill(shape);
 		}
-		if ((edge != null) && (stroke != null))
+		if ((edge != null) && (edgeStroke != null))
 		{
-			g2D.setStroke(stroke);
 			g2D.setPaint(edge);
-			g2D.draw(shape);
+			if ((edgeStroke == stroke) && usesStrokedShape(g2D))
+			{
+				g2D.fill(getStrokedShape());
+			}
+			else
+			{
+				g2D.setStroke(edgeStroke);
+				g2D.draw(shape);
+			}
 		}
+		g2D.setTransform(base);
 	}
 
 	/**
@@ -121,6 +192,176 @@ public abstract class Figure
 		return shape.getBounds2D();
 	}
 
+	/**
+	 * Obtention du rectangle englobant de la figure une fois transformée par
+	 * {@link #transformation}, augmenté de la demi épaisseur du trait s'il y
+	 * en a un. Ce rectangle est conservé jusqu'à la prochaine modification de
+	 * la figure.
+	 * @return le rectangle englobant de la figure transformée (à ne pas
+	 * modifier)
+	 */
+	public Rectangle2D getTransformedBounds()
+	{
+		return getGeometry().bounds;
+	}
+
+	/**
+	 * Obtention du rectangle englobant transformé et de l'inverse de la
+	 * transformation, calculés ensemble une seule fois jusqu'à la prochaine
+	 * modification de la figure et publiés dans un unique champ volatile
+	 * @return la géométrie transformée courante de la figure
+	 */
+	private Geometry getGeometry()
+	{
+		Geometry g = geometry;
+		if (g == null)
+		{
+			Rectangle2D b = shape.getBounds2D();
+			double x0 = Math.min(b.getX(), b.getX() + b.getWidth());
+			double y0 = Math.min(b.getY(), b.getY() + b.getHeight());
+			double x1 = Math.max(b.getX(), b.getX() + b.getWidth());
+			double y1 = Math.max(b.getY(), b.getY() + b.getHeight());
+			if ((edge != null) && (stroke != null))
+			{
+				double halfWidth = stroke.getLineWidth() / 2.0;
+				x0 -= halfWidth;
+				y0 -= halfWidth;
+				x1 += halfWidth;
+				y1 += halfWidth;
+			}
+			double[] corners = { x0, y0, x1, y0, x1, y1, x0, y1 };
+			transformation.transform(corners, 0, corners, 0, 4);
+			double minX = corners[0];
+			double minY = corners[1];
+			double maxX = minX;
+			double maxY = minY;
+			for (int i = 2; i < corners.length; i += 2)
+			{
+				minX = Math.min(minX, corners[i]);
+				maxX = Math.max(maxX, corners[i]);
+				minY = Math.min(minY, corners[i + 1]);
+				maxY = Math.max(maxY, corners[i + 1]);
+			}
+			AffineTransform inverse;
+			try
+			{
+				inverse = transformation.createInverse();
+			}
+			catch (NoninvertibleTransformException e)
+			{
+				System.err.println(getName() + " : non invertible transform "
+					+ transformation);
+				inverse = null;
+			}
+			g = new Geometry(new Rectangle2D.Double(minX, minY, maxX - minX,
+			                                        maxY - minY),
+			                 inverse);
+			geometry = g;
+		}
+
+		return g;
+	}
+
+	/**
+	 * Notification d'une modification de la forme de la figure. Doit être
+	 * appelée par toute méthode modifiant {@link #shape}.
+	 * Incrémente le numéro de version de la forme puis procède comme
+	 * {@link #transformChanged()}.
+	 */
+	protected void changed()
+	{
+		version++;
+		strokedShape = null;
+		transformChanged();
+	}
+
+	/**
+	 * Notification d'une modification de la transformation de la figure.
+	 * Invalide le rectangle englobant transformé et l'inverse de la
+	 * transformation puis prévient le dessin contenant la figure.
+	 */
+	private void transformChanged()
+	{
+		geometry = null;
+		if (drawing != null)
+		{
+			drawing.figureChanged(this);
+		}
+	}
+
+	/**
+	 * Accesseur du numéro de version de la forme. Celui ci change à chaque
+	 * modification de la forme mais pas lors d'un
+	 * {@link #translate(double, double)} ou d'un {@link #scale(double, double)}
+	 * ce qui permet de conserver une image de la figure tant que seule sa
+	 * position change.
+	 * @return le numéro de version de la forme
+	 */
+	public long getVersion()
+	{
+		return version;
+	}
+
+	/**
+	 * Obtention du contour de la bordure de la figure (dans le repère de la
+	 * forme), calculé une seule fois tant que la forme ne change pas.
+	 * Remplir ce contour équivaut à tracer la bordure avec le trait de la
+	 * figure, sans avoir à recalculer les pointillés ni les jointures.
+	 * @return le contour de la bordure ou null si la figure n'a pas de
+	 * bordure
+	 */
+	public Shape getStrokedShape()
+	{
+		if ((edge == null) || (stroke == null) || (shape == null))
+		{
+			return null;
+		}
+		Shape outline = strokedShape;
+		if (outline == null)
+		{
+			outline = stroke.createStrokedShape(shape);
+			strokedShape = outline;
+		}
+		return outline;
+	}
+
+	/**
+	 * Teste si la bordure de la figure doit être dessinée dans un contexte
+	 * graphique en remplissant son contour mémorisé
+	 * ({@link #getStrokedShape()}) : c'est le cas des traits pointillés ou
+	 * épais, lorsque le contexte graphique n'ajuste pas les traits sur les
+	 * pixels ({@link RenderingHints#VALUE_STROKE_PURE}), remplir le contour
+	 * donnant alors exactement le même résultat que tracer la bordure.
+	 * @param g2D le contexte graphique
+	 * @return true si la bordure doit être dessinée en remplissant son
+	 * contour
+	 */
+	public boolean usesStrokedShape(Graphics2D g2D)
+	{
+		return usesStrokedShape(stroke, edge, g2D);
+	}
+
+	/**
+	 * Teste si une bordure doit être dessinée dans un contexte graphique en
+	 * remplissant son contour plutôt qu'en la traçant (même règle que
+	 * {@link #usesStrokedShape(Graphics2D)} pour les figures qui ne sont pas
+	 * matérialisées, telles que celles d'un {@link FigureStore})
+	 * @param stroke le trait de la bordure (ou null)
+	 * @param edge la couleur de la bordure (ou null)
+	 * @param g2D le contexte graphique
+	 * @return true si la bordure doit être dessinée en remplissant son
+	 * contour
+	 */
+	static boolean usesStrokedShape(BasicStroke stroke, Paint edge,
+		Graphics2D g2D)
+	{
+		return (edge != null) && (stroke != null)
+			&& ((stroke.getDashArray() != null)
+				|| (stroke.getLineWidth() >= wideStrokeWidth))
+			&& (g2D.getRenderingHint(RenderingHints.KEY_STROKE_CONTROL) ==
+				RenderingHints.VALUE_STROKE_PURE);
+	}
+
 	/**
 	 * Obtention du barycentre de la figure.
 	 * @return le point correspondant au barycentre de la figure
@@ -129,20 +370,70 @@ public abstract class Figure
 
 	/**
 	 * Teste si le point p est contenu dans cette figure.
-	 * Utilise {@link Shape#contains(Point2D)}
+	 * Le point p est d'abord comparé au rectangle englobant transformé
+	 * ({@link #getTransformedBounds()}), puis ramené dans le repère de la
+	 * forme grâce à l'inverse de la transformation (mémorisée) et testé avec
+	 * {@link #containsLocal(double, double)} puis, s'il n'est pas contenu dans
+	 * la forme, avec le contour de la bordure ({@link #getStrokedShape()}).
+	 * Le point p n'est pas modifié.
 	 * @param p le point dont on veut tester s'il est contenu dans la figure
 	 * @return true si le point p est contenu dans la figure, false sinon
 	 */
  	public boolean contains(Point2D p)
  	{
- 		try {
-			transformation.inverseTransform(p, p);
-		} catch (NoninvertibleTransformException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
-		}
- 		
- 		return shape.contains(p);
+ 		double x = p.getX();
+ 		double y = p.getY();
+ 		Rectangle2D bounds = getTransformedBounds();
+ 		if ((x < bounds.getMinX()) || (x > bounds.getMaxX())
+ 			|| (y < bounds.getMinY()) || (y > bounds.getMaxY()))
+ 		{
+ 			return false;
+ 		}
+
+ 		AffineTransform inv = getInverseTransformation();
+ 		if (inv == null)
+ 		{
+ 			return false;
+ 		}
+
+ 		double localX = inv.getScaleX() * x + inv.getShearX() * y
+ 			+ inv.getTranslateX();
+ 		double localY = inv.getShearY() * x + inv.getScaleY() * y
+ 			+ inv.getTranslateY();
+
+ 		if (containsLocal(localX, localY))
+ 		{
+ 			return true;
+ 		}
+
+ 		Shape outline = getStrokedShape();
+ 		return (outline != null) && outline.contains(localX, localY);
+ 	}
+
+ 	/**
+ 	 * Teste si un point exprimé dans le repère de la forme (avant
+ 	 * transformation) est contenu dans la forme.
+ 	 * Utilise {@link Shape#contains(double, double)}. Les classes filles dont
+ 	 * la forme le permet peuvent la remplacer par un calcul direct.
+ 	 * @param x l'abcisse du point dans le repère de la forme
+ 	 * @param y l'ordonnée du point dans le repère de la forme
+ 	 * @return true si le point est contenu dans la forme, false sinon
+ 	 */
+ 	protected boolean containsLocal(double x, double y)
+ 	{
+ 		return shape.contains(x, y);
+ 	}
+
+ 	/**
+ 	 * Obtention de l'inverse de la {@link #transformation}. Celle-ci n'est
+ 	 * recalculée (avec le rectangle englobant transformé) qu'après une
+ 	 * modification de la figure.
+ 	 * @return l'inverse de la transformation (à ne pas modifier) ou null si
+ 	 * la transformation n'est pas inversible
+ 	 */
+ 	protected AffineTransform getInverseTransformation()
+ 	{
+ 		return getGeometry().inverse;
  	}
 
  	/**
@@ -194,12 +485,40 @@ public abstract class Figure
 	public void translate(double x, double y)
 	{
 		this.transformation.translate(x, y);
+		transformChanged();
 	}
 	
 	public void scale(double x, double y)
 	{
 		this.transformation.scale(x, y);
+		transformChanged();
+	}
+
+	/**
+	 * Rectangle englobant transformé et inverse de la transformation d'une
+	 * figure, calculés ensemble et publiés ensemble (immuable)
+	 */
+	private static final class Geometry
+	{
+		/**
+		 * Rectangle englobant de la figure transformée (trait compris)
+		 */
+		final Rectangle2D bounds;
+
+		/**
+		 * Inverse de la transformation (null si elle n'est pas inversible)
+		 */
+		final AffineTransform inverse;
+
+		/**
+		 * Constructeur
+		 * @param bounds le rectangle englobant transformé
+		 * @param inverse l'inverse de la transformation (ou null)
+		 */
+		Geometry(Rectangle2D bounds, AffineTransform inverse)
+		{
+			this.bounds = bounds;
+			this.inverse = inverse;
+		}
 	}
-	
-	
 }
@@ -0,0 +1,1244 @@
+package figures;
+
+import java.awt.BasicStroke;
+import java.awt.Graphics2D;
+import java.awt.Paint;
+import java.awt.Shape;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.geom.RectangularShape;
+import java.awt.geom.RoundRectangle2D;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import figures.enums.FigureType;
+import utils.PackedRTree;
+
+/**
+ * Stockage compact de figures rectangulaires sous forme d'enregistrements de
+ * types primitifs (type, indices de style, géométrie et transformation)
+ * destiné aux très grands dessins. Seules les figures effectivement
+ * dessinées, testées ou modifiées sont matérialisées sous forme de vues
+ * {@link Figure} éphémères ({@link #getFigure(int)}), dont les
+ * modifications sont recopiées dans l'enregistrement correspondant.
+ * Cette classe contient l'ensemble des traitements des enregistrements
+ * (rectangles englobants, recherches, filtrage, vues) ; le rangement des
+ * champs est laissé aux sous-classes : tableaux parallèles sur le tas
+ * ({@link RectangularFigureStore}) ou blocs hors tas
+ * ({@link OffHeapFigureStore}).
+ * Seules les figures rectangulaires ({@link Rectangle},
+ * {@link RoundedRectangle}, {@link Ellipse} et {@link Circle}) dont la
+ * transformation se limite à une échelle et une translation peuvent être
+ * stockées ({@link #accepts(Figure)}).
+ * Les styles (couleurs et traits) sont des flyweights référencés par leurs
+ * indices dans des tables (sur le tas) de petite taille.
+ * Les recherches par point ou par zone passent par un index spatial compacté
+ * ({@link PackedRTree}) des enregistrements, reconstruit à la demande
+ * lorsque trop de figures ont été ajoutées depuis sa construction.
+ * Les lectures (dessin, recherche, filtrage) peuvent être faites depuis
+ * plusieurs threads, les ajouts et retraits doivent être faits depuis un
+ * seul.
+ *
+ * @author davidroussel
+ */
+public abstract class FigureStore
+{
+	/**
+	 * Propriété système choisissant le stockage créé par {@link #create()} :
+	 * "heap" pour un {@link RectangularFigureStore}, "offheap" pour un
+	 * {@link OffHeapFigureStore}. En son absence les dessins n'ont pas de
+	 * stockage compact.
+	 */
+	public final static String StoreProperty = "figures.store";
+
+	/**
+	 * Nombre maximum de styles (traits ou couleurs) distincts
+	 */
+	private final static int maxStyles = Short.MAX_VALUE;
+
+	/**
+	 * Indice de style d'un trait ou d'une couleur absent (null)
+	 */
+	final static short noStyle = -1;
+
+	/**
+	 * Nombre minimum de figures ajoutées depuis la construction de l'index
+	 * spatial (et donc recherchées séquentiellement) avant sa reconstruction
+	 */
+	private final static int minUnindexed = 1024;
+
+	/**
+	 * Nombre d'enregistrements
+	 */
+	private volatile int size;
+
+	/**
+	 * Table des couleurs (flyweights)
+	 */
+	private final List<Paint> paints;
+
+	/**
+	 * Indices des couleurs de {@link #paints}
+	 */
+	private final Map<Paint, Short> paintIds;
+
+	/**
+	 * Table des traits (flyweights)
+	 */
+	private final List<BasicStroke> strokes;
+
+	/**
+	 * Indices des traits de {@link #strokes}
+	 */
+	private final Map<BasicStroke, Short> strokeIndices;
+
+	/**
+	 * Étendue des figures (minX, minY, maxX, maxY) agrandie à chaque ajout
+	 * ou modification
+	 */
+	private double[] extent;
+
+	/**
+	 * Index spatial des premières figures (les suivantes étant parcourues
+	 * séquentiellement) ou null s'il n'a pas encore été construit
+	 * @see #getIndex()
+	 */
+	private volatile PackedRTree index;
+
+	/**
+	 * Le dessin auquel appartient ce stockage (ou null) : les vues des
+	 * figures le notifient de leurs modifications
+	 */
+	Drawing drawing;
+
+	/**
+	 * Copie figée obtenue par {@link #freeze()} : ni ses figures ni ses vues
+	 * ne peuvent être modifiées dans le stockage
+	 */
+	private boolean frozen;
+
+	/**
+	 * Constructeur d'un stockage vide
+	 */
+	protected FigureStore()
+	{
+		size = 0;
+		paints = new ArrayList<Paint>();
+		paintIds = new IdentityHashMap<Paint, Short>();
+		strokes = new ArrayList<BasicStroke>();
+		strokeIndices = new IdentityHashMap<BasicStroke, Short>();
+		extent = null;
+		index = null;
+		drawing = null;
+		frozen = false;
+	}
+
+	/**
+	 * Création d'un stockage vide selon la propriété système
+	 * {@link #StoreProperty} : tableaux sur le tas (accès plus rapides,
+	 * limités par la taille du tas) ou blocs hors tas (dessins de plusieurs
+	 * millions de figures)
+	 * @return un nouveau stockage vide ou null si la propriété n'est pas
+	 * définie (ou invalide)
+	 * @see Drawing#Drawing(FigureStore)
+	 */
+	public static FigureStore create()
+	{
+		String kind = System.getProperty(StoreProperty);
+		if (kind == null)
+		{
+			return null;
+		}
+		if (kind.equals("heap"))
+		{
+			return new RectangularFigureStore();
+		}
+		if (kind.equals("offheap"))
+		{
+			return new OffHeapFigureStore();
+		}
+		System.err.println("FigureStore.create: unknown store " + kind
+			+ ", using none");
+		return null;
+	}
+
+	// ------------------------------------------------------------------------
+	// Rangement des enregistrements (sous-classes)
+	// ------------------------------------------------------------------------
+
+	/**
+	 * Réservation de la place d'un nouvel enregistrement
+	 * @param i l'indice de l'enregistrement à ajouter (égal au nombre
+	 * d'enregistrements)
+	 */
+	abstract void allocate(int i);
+
+	/**
+	 * Création d'un stockage (vide) partageant les enregistrements de
+	 * celui ci : les enregistrements partagés sont recopiés par ce stockage
+	 * avant d'être modifiés (copie sur écriture), le stockage créé n'étant
+	 * jamais modifié
+	 * @return un nouveau stockage partageant les enregistrements
+	 * @see #freeze()
+	 */
+	abstract FigureStore share();
+
+	/**
+	 * Libération de tous les enregistrements
+	 */
+	abstract void release();
+
+	/**
+	 * Écriture de tous les champs d'un enregistrement (numéro de version
+	 * remis à 0)
+	 */
+	abstract void setRecord(int i, byte type, short fill, short edge,
+		short stroke, float x, float y, float w, float h, float arc,
+		double sx, double sy, double tx, double ty);
+
+	/**
+	 * Modification de la taille de la forme d'un enregistrement et
+	 * incrémentation de son numéro de version
+	 */
+	abstract void resize(int i, float w, float h);
+
+	/**
+	 * Modification de la transformation d'un enregistrement
+	 */
+	abstract void setTransform(int i, double sx, double sy, double tx,
+		double ty);
+
+	/**
+	 * Lecture des champs d'un enregistrement
+	 */
+	abstract byte typeAt(int i);
+	abstract short fillAt(int i);
+	abstract short edgeAt(int i);
+	abstract short strokeAt(int i);
+	abstract int versionAt(int i);
+	abstract float xAt(int i);
+	abstract float yAt(int i);
+	abstract float widthAt(int i);
+	abstract float heightAt(int i);
+	abstract float arcAt(int i);
+	abstract double scaleXAt(int i);
+	abstract double scaleYAt(int i);
+	abstract double translateXAt(int i);
+	abstract double translateYAt(int i);
+
+	/**
+	 * Mémoire occupée par les enregistrements
+	 * @return le nombre d'octets alloués pour les enregistrements
+	 */
+	public abstract long getBytes();
+
+	// ------------------------------------------------------------------------
+	// Ajouts et retraits
+	// ------------------------------------------------------------------------
+
+	/**
+	 * Teste si une figure peut être rangée dans un stockage : ce doit être
+	 * exactement un {@link Rectangle}, un {@link RoundedRectangle} (dont les
+	 * arrondis sont identiques en largeur et en hauteur), une {@link Ellipse}
+	 * ou un {@link Circle} dont la transformation ne comporte ni rotation ni
+	 * cisaillement.
+	 * @param figure la figure à tester
+	 * @return true si la figure peut être rangée dans un stockage
+	 */
+	public static boolean accepts(Figure figure)
+	{
+		if ((figure == null) || (figure instanceof StoredFigure))
+		{
+			return false;
+		}
+		Class<?> c = figure.getClass();
+		if (c == RoundedRectangle.class)
+		{
+			RoundRectangle2D r = (RoundRectangle2D) figure.getShape();
+			if (r.getArcWidth() != r.getArcHeight())
+			{
+				return false;
+			}
+		}
+		else if ((c != Rectangle.class) && (c != Ellipse.class)
+			&& (c != Circle.class))
+		{
+			return false;
+		}
+		return (figure.getTransformation().getShearX() == 0.0)
+			&& (figure.getTransformation().getShearY() == 0.0);
+	}
+
+	/**
+	 * Ajout d'une copie d'une figure en fin de stockage (au dessus de toutes
+	 * les autres)
+	 * @param figure la figure à copier
+	 * @return l'indice de la figure dans le stockage ou -1 si celle-ci ne
+	 * peut pas y être rangée ({@link #accepts(Figure)})
+	 */
+	public int add(Figure figure)
+	{
+		if (!accepts(figure))
+		{
+			return -1;
+		}
+		RectangularShape r = (RectangularShape) figure.getShape();
+		float arc = (r instanceof RoundRectangle2D
+			? (float) ((RoundRectangle2D) r).getArcWidth() : 0.0f);
+		return add(figure.getType(), (float) r.getX(), (float) r.getY(),
+		           (float) r.getWidth(), (float) r.getHeight(), arc,
+		           figure.getTransformation().getScaleX(),
+		           figure.getTransformation().getScaleY(),
+		           figure.getTransformation().getTranslateX(),
+		           figure.getTransformation().getTranslateY(),
+		           figure.getStroke(), figure.getEdgePaint(),
+		           figure.getFillPaint());
+	}
+
+	/**
+	 * Ajout d'une figure en fin de stockage (au dessus de toutes les autres)
+	 * sans créer d'objet {@link Figure}, pour les chargements par exemple
+	 * @param type le type de figure ({@link FigureType#RECTANGLE},
+	 * {@link FigureType#ROUNDED_RECTANGLE}, {@link FigureType#ELLIPSE} ou
+	 * {@link FigureType#CIRCLE})
+	 * @param x l'abcisse du coin supérieur gauche de la forme
+	 * @param y l'ordonnée du coin supérieur gauche de la forme
+	 * @param w la largeur de la forme
+	 * @param h la hauteur de la forme
+	 * @param arc la taille des arrondis (rectangles arrondis seulement)
+	 * @param sx le facteur d'échelle horizontal de la transformation
+	 * @param sy le facteur d'échelle vertical de la transformation
+	 * @param tx la translation horizontale de la transformation
+	 * @param ty la translation verticale de la transformation
+	 * @param stroke le trait de la bordure (ou null)
+	 * @param edge la couleur de la bordure (ou null)
+	 * @param fill la couleur de remplissage (ou null)
+	 * @return l'indice de la figure dans le stockage ou -1 si le type n'est
+	 * pas rectangulaire ou si le nombre de styles distincts est dépassé
+	 */
+	public int add(FigureType type, float x, float y, float w, float h,
+		float arc, double sx, double sy, double tx, double ty,
+		BasicStroke stroke, Paint edge, Paint fill)
+	{
+		if ((type != FigureType.RECTANGLE)
+			&& (type != FigureType.ROUNDED_RECTANGLE)
+			&& (type != FigureType.ELLIPSE) && (type != FigureType.CIRCLE))
+		{
+			return -1;
+		}
+		if (frozen)
+		{
+			System.err.println(getClass().getSimpleName()
+				+ ": can not add to a frozen store");
+			return -1;
+		}
+		short fillId = getPaintId(fill);
+		short edgeId = getPaintId(edge);
+		short strokeId = getStrokeId(stroke);
+		if ((fillId < noStyle) || (edgeId < noStyle) || (strokeId < noStyle))
+		{
+			System.err.println(getClass().getSimpleName()
+				+ ": too many styles");
+			return -1;
+		}
+
+		int i = size;
+		allocate(i);
+		setRecord(i, (byte) type.ordinal(), fillId, edgeId, strokeId, x, y, w,
+		          h, arc, sx, sy, tx, ty);
+		size = i + 1;
+		growExtent(i);
+		return i;
+	}
+
+	/**
+	 * Nombre de figures
+	 * @return le nombre de figures du stockage
+	 */
+	public int size()
+	{
+		return size;
+	}
+
+	/**
+	 * Teste si le stockage est vide
+	 * @return true si le stockage ne contient aucune figure
+	 */
+	public boolean isEmpty()
+	{
+		return size == 0;
+	}
+
+	/**
+	 * Retrait de la dernière figure
+	 * @return le rectangle englobant transformé de la figure retirée ou null
+	 * si le stockage est vide (ou figé)
+	 */
+	public Rectangle2D removeLast()
+	{
+		if ((size == 0) || frozen)
+		{
+			return null;
+		}
+		Rectangle2D removed = getTransformedBounds(size - 1);
+		size--;
+		return removed;
+	}
+
+	/**
+	 * Retrait de toutes les figures et libération des enregistrements (les
+	 * tables de styles sont conservées). Sans effet sur un stockage figé.
+	 */
+	public void clear()
+	{
+		if (frozen)
+		{
+			return;
+		}
+		size = 0;
+		release();
+		extent = null;
+		index = null;
+	}
+
+	/**
+	 * Copie figée des figures de ce stockage, qui n'est pas affectée par ses
+	 * modifications ultérieures et peut donc être parcourue depuis un autre
+	 * thread (export d'un {@link DrawingSnapshot} par exemple). Les
+	 * enregistrements ne sont pas recopiés : ils sont partagés jusqu'à la
+	 * prochaine modification de ce stockage (copie sur écriture). Les vues
+	 * des figures de la copie ne sont pas recopiées dans celle ci.
+	 * Doit être appelée depuis le thread qui modifie ce stockage.
+	 * @return une copie figée de ce stockage
+	 */
+	public FigureStore freeze()
+	{
+		if (frozen)
+		{
+			return this;
+		}
+		FigureStore copy = share();
+		copy.paints.addAll(paints);
+		copy.strokes.addAll(strokes);
+		copy.extent = extent;
+		copy.size = size;
+		copy.frozen = true;
+		return copy;
+	}
+
+	// ------------------------------------------------------------------------
+	// Lectures
+	// ------------------------------------------------------------------------
+
+	/**
+	 * Accesseur du type d'une figure
+	 * @param index l'indice de la figure
+	 * @return le type de la figure
+	 */
+	public FigureType getType(int index)
+	{
+		checkIndex(index);
+		return type(index);
+	}
+
+	/**
+	 * Matérialisation d'une figure sous forme d'une vue {@link Figure}
+	 * éphémère, dont les modifications sont recopiées dans le stockage (et
+	 * notifiées au dessin contenant ce stockage). Deux vues de la même figure
+	 * sont égales ({@link Object#equals(Object)}).
+	 * @param index l'indice de la figure
+	 * @return une nouvelle vue de la figure
+	 */
+	public Figure getFigure(int index)
+	{
+		checkIndex(index);
+		return new StoredFigure(index);
+	}
+
+	/**
+	 * Flux des vues des figures (matérialisées au fur et à mesure du
+	 * parcours), de la plus en dessous à la plus au dessus
+	 * @param filter le prédicat (ne portant que sur le type et le style des
+	 * figures, voir {@link #getIndicesIn(Rectangle2D, Predicate)}) que
+	 * doivent satisfaire les figures ou null pour toutes les figures
+	 * @return un flux (séquentiel) des vues des figures
+	 */
+	public Stream<Figure> stream(Predicate<Figure> filter)
+	{
+		StyleFilter styles = new StyleFilter(filter);
+		return IntStream.range(0, size)
+		                .filter(styles::test)
+		                .mapToObj(i -> new StoredFigure(i));
+	}
+
+	/**
+	 * Obtention du rectangle englobant transformé (trait compris) d'une
+	 * figure, identique à {@link Figure#getTransformedBounds()}
+	 * @param index l'indice de la figure
+	 * @return le rectangle englobant transformé de la figure
+	 */
+	public Rectangle2D getTransformedBounds(int index)
+	{
+		checkIndex(index);
+		double[] b = new double[4];
+		bounds(index, b);
+		return new Rectangle2D.Double(b[0], b[1], b[2] - b[0], b[3] - b[1]);
+	}
+
+	/**
+	 * Étendue des figures : rectangle englobant l'ensemble des rectangles
+	 * englobants transformés des figures (qui n'est pas réduit lors des
+	 * retraits ou des modifications)
+	 * @return l'étendue des figures ou null si le stockage est vide
+	 */
+	public Rectangle2D getExtent()
+	{
+		double[] e = extent;
+		if ((size == 0) || (e == null))
+		{
+			return null;
+		}
+		return new Rectangle2D.Double(e[0], e[1], e[2] - e[0], e[3] - e[1]);
+	}
+
+	/**
+	 * Recherche des figures contenant un point, selon les mêmes règles que
+	 * {@link Figure#contains(Point2D)}
+	 * @param p le point (dans le repère du dessin)
+	 * @param filter le prédicat (ne portant que sur le type et le style des
+	 * figures) que doivent satisfaire les figures ou null
+	 * @param all true pour obtenir toutes les figures contenant le point,
+	 * false pour s'arrêter à la plus au dessus
+	 * @return les indices des figures contenant le point de la plus au
+	 * dessus à la plus en dessous
+	 */
+	public int[] getIndicesAt(Point2D p, Predicate<Figure> filter,
+		boolean all)
+	{
+		StyleFilter styles = new StyleFilter(filter);
+		Rectangle2D.Float rectangle = new Rectangle2D.Float();
+		Ellipse2D.Float ellipse = new Ellipse2D.Float();
+		RoundRectangle2D.Float roundRectangle = new RoundRectangle2D.Float();
+		double px = p.getX();
+		double py = p.getY();
+		double[] b = new double[4];
+		int[] candidates = getCandidates(px, py, px, py);
+		IntStream.Builder result = IntStream.builder();
+		for (int k = candidates.length - 1; k >= 0; k--)
+		{
+			int i = candidates[k];
+			bounds(i, b);
+			if ((px < b[0]) || (px > b[2]) || (py < b[1]) || (py > b[3]))
+			{
+				continue;
+			}
+			double sx = scaleXAt(i);
+			double sy = scaleYAt(i);
+			if ((sx == 0.0) || (sy == 0.0) || !styles.test(i))
+			{
+				continue;
+			}
+			// même calcul que l'inverse de la transformation de la figure
+			double localX = (1.0 / sx) * px + (-translateXAt(i) / sx);
+			double localY = (1.0 / sy) * py + (-translateYAt(i) / sy);
+			boolean inside = containsLocal(i, localX, localY, roundRectangle);
+			if (!inside && (edgeAt(i) != noStyle) && (strokeAt(i) != noStyle))
+			{
+				Shape s = shape(i, rectangle, ellipse, roundRectangle);
+				inside = strokes.get(strokeAt(i))
+				                .createStrokedShape(s)
+				                .contains(localX, localY);
+			}
+			if (inside)
+			{
+				result.add(i);
+				if (!all)
+				{
+					break;
+				}
+			}
+		}
+		return result.build().toArray();
+	}
+
+	/**
+	 * Recherche des figures dont le rectangle englobant transformé (trait
+	 * compris) intersecte une zone (bords compris, comme l'index spatial de
+	 * {@link Drawing})
+	 * @param area la zone (dans le repère du dessin)
+	 * @param filter le prédicat que doivent satisfaire les figures ou null.
+	 * Celui-ci ne doit porter que sur le type et le style des figures (comme
+	 * les filtres du package filters) : il n'est évalué qu'une fois par
+	 * combinaison distincte de type et de styles.
+	 * @return les indices des figures intersectant la zone dans l'ordre de
+	 * dessin
+	 */
+	public int[] getIndicesIn(Rectangle2D area, Predicate<Figure> filter)
+	{
+		StyleFilter styles = new StyleFilter(filter);
+		double minX = area.getMinX();
+		double minY = area.getMinY();
+		double maxX = area.getMaxX();
+		double maxY = area.getMaxY();
+		double[] b = new double[4];
+		IntStream.Builder result = IntStream.builder();
+		for (int i : getCandidates(minX, minY, maxX, maxY))
+		{
+			bounds(i, b);
+			if ((b[0] <= maxX) && (b[2] >= minX) && (b[1] <= maxY)
+				&& (b[3] >= minY) && styles.test(i))
+			{
+				result.add(i);
+			}
+		}
+		return result.build().toArray();
+	}
+
+	/**
+	 * Sélection des figures satisfaisant un prédicat qui ne dépend que du
+	 * type et du style des figures (tels que les filtres du package filters).
+	 * Le prédicat n'est évalué qu'une fois par combinaison distincte de type
+	 * et de styles et non pour chaque figure.
+	 * @param predicate le prédicat portant sur le type et le style des
+	 * figures
+	 * @return les indices des figures satisfaisant le prédicat dans l'ordre
+	 * de dessin
+	 */
+	public int[] selectByStyle(Predicate<Figure> predicate)
+	{
+		StyleFilter styles = new StyleFilter(predicate);
+		return IntStream.range(0, size).filter(styles::test).toArray();
+	}
+
+	/**
+	 * Dessin des figures intersectant une zone directement à partir des
+	 * enregistrements (sans créer de vues), de la même manière que
+	 * {@link Figure#draw(Graphics2D)} : les bordures pointillées ou épaisses
+	 * sont dessinées en remplissant leur contour lorsque le contexte
+	 * graphique le permet ({@link Figure#usesStrokedShape(Graphics2D)}).
+	 * @param g2D le contexte graphique (dans le repère du dessin)
+	 * @param area la zone à dessiner (dans le repère du dessin) ou null pour
+	 * dessiner toutes les figures
+	 */
+	public void draw(Graphics2D g2D, Rectangle2D area)
+	{
+		int[] indices = (area != null ? getIndicesIn(area, null)
+			: IntStream.range(0, size).toArray());
+		AffineTransform base = g2D.getTransform();
+		AffineTransform transform = new AffineTransform();
+		Rectangle2D.Float rectangle = new Rectangle2D.Float();
+		Ellipse2D.Float ellipse = new Ellipse2D.Float();
+		RoundRectangle2D.Float roundRectangle = new RoundRectangle2D.Float();
+		for (int i : indices)
+		{
+			transform.setTransform(scaleXAt(i), 0.0, 0.0, scaleYAt(i),
+			                       translateXAt(i), translateYAt(i));
+			g2D.transform(transform);
+			Shape s = shape(i, rectangle, ellipse, roundRectangle);
+			short fillId = fillAt(i);
+			short edgeId = edgeAt(i);
+			short strokeId = strokeAt(i);
+			if (fillId != noStyle)
+			{
+				g2D.setPaint(paints.get(fillId));
+				g2D.fill(s);
+			}
+			if ((edgeId != noStyle) && (strokeId != noStyle))
+			{
+				Paint edge = paints.get(edgeId);
+				BasicStroke stroke = strokes.get(strokeId);
+				g2D.setPaint(edge);
+				if (Figure.usesStrokedShape(stroke, edge, g2D))
+				{
+					g2D.fill(stroke.createStrokedShape(s));
+				}
+				else
+				{
+					g2D.setStroke(stroke);
+					g2D.draw(s);
+				}
+			}
+			g2D.setTransform(base);
+		}
+	}
+
+	// ------------------------------------------------------------------------
+	// Traitements des enregistrements
+	// ------------------------------------------------------------------------
+
+	/**
+	 * Type d'un enregistrement
+	 * @param i l'indice de l'enregistrement
+	 * @return le type de la figure
+	 */
+	private FigureType type(int i)
+	{
+		return FigureType.values()[typeAt(i)];
+	}
+
+	/**
+	 * Calcul du rectangle englobant transformé (trait compris) d'une figure
+	 * de la même manière que {@link Figure#getTransformedBounds()}
+	 * @param i l'indice de la figure
+	 * @param b le tableau recevant minX, minY, maxX et maxY
+	 */
+	void bounds(int i, double[] b)
+	{
+		float x = xAt(i);
+		float y = yAt(i);
+		float w = widthAt(i);
+		float h = heightAt(i);
+		double x0 = Math.min(x, x + w);
+		double y0 = Math.min(y, y + h);
+		double x1 = Math.max(x, x + w);
+		double y1 = Math.max(y, y + h);
+		short strokeId = strokeAt(i);
+		if ((edgeAt(i) != noStyle) && (strokeId != noStyle))
+		{
+			double halfWidth = strokes.get(strokeId).getLineWidth() / 2.0;
+			x0 -= halfWidth;
+			y0 -= halfWidth;
+			x1 += halfWidth;
+			y1 += halfWidth;
+		}
+		double sx = scaleXAt(i);
+		double sy = scaleYAt(i);
+		double tx = translateXAt(i);
+		double ty = translateYAt(i);
+		double tx0 = sx * x0 + tx;
+		double tx1 = sx * x1 + tx;
+		double ty0 = sy * y0 + ty;
+		double ty1 = sy * y1 + ty;
+		b[0] = Math.min(tx0, tx1);
+		b[1] = Math.min(ty0, ty1);
+		b[2] = Math.max(tx0, tx1);
+		b[3] = Math.max(ty0, ty1);
+	}
+
+	/**
+	 * Obtention des figures candidates à une recherche par zone grâce à
+	 * l'index spatial
+	 * @param minX l'abcisse minimale de la zone
+	 * @param minY l'ordonnée minimale de la zone
+	 * @param maxX l'abcisse maximale de la zone
+	 * @param maxY l'ordonnée maximale de la zone
+	 * @return les indices (triés) des figures susceptibles d'intersecter la
+	 * zone
+	 */
+	private int[] getCandidates(double minX, double minY, double maxX,
+		double maxY)
+	{
+		int n = size;
+		PackedRTree tree = getIndex(n);
+		IntStream.Builder candidates = IntStream.builder();
+		int indexed = 0;
+		if (tree != null)
+		{
+			tree.search(minX, minY, maxX, maxY, (int i) ->
+			{
+				if (i < n)
+				{
+					candidates.add(i);
+				}
+			});
+			indexed = tree.size();
+		}
+		for (int i = indexed; i < n; i++)
+		{
+			candidates.add(i);
+		}
+		int[] result = candidates.build().toArray();
+		Arrays.sort(result);
+		return result;
+	}
+
+	/**
+	 * Accès à l'index spatial, reconstruit lorsque le nombre de figures non
+	 * indexées dépasse {@link #minUnindexed} et un huitième des figures
+	 * @param n le nombre de figures
+	 * @return l'index spatial des premières figures ou null si les figures
+	 * sont trop peu nombreuses pour être indexées
+	 */
+	private PackedRTree getIndex(int n)
+	{
+		PackedRTree tree = index;
+		int indexed = (tree != null ? tree.size() : 0);
+		if ((n - indexed) > Math.max(minUnindexed, n >> 3))
+		{
+			synchronized (this)
+			{
+				tree = index;
+				indexed = (tree != null ? tree.size() : 0);
+				if ((n - indexed) > Math.max(minUnindexed, n >> 3))
+				{
+					tree = new PackedRTree(n, this::bounds);
+					index = tree;
+				}
+			}
+		}
+		return tree;
+	}
+
+	/**
+	 * Agrandissement de l'{@link #extent} et des noeuds de l'index spatial
+	 * au rectangle englobant d'une figure ajoutée ou modifiée
+	 * @param i l'indice de la figure
+	 */
+	private void growExtent(int i)
+	{
+		double[] b = new double[4];
+		bounds(i, b);
+		PackedRTree tree = index;
+		if ((tree != null) && (i < tree.size()))
+		{
+			tree.enlarge(i, b);
+		}
+		double[] e = extent;
+		if (e == null)
+		{
+			extent = b;
+		}
+		else
+		{
+			extent = new double[] {
+				Math.min(e[0], b[0]), Math.min(e[1], b[1]),
+				Math.max(e[2], b[2]), Math.max(e[3], b[3])
+			};
+		}
+	}
+
+	/**
+	 * Teste si un point exprimé dans le repère de la forme d'une figure est
+	 * contenu dans celle ci (mêmes calculs que les containsLocal de
+	 * {@link Rectangle}, {@link RoundedRectangle}, {@link Ellipse} et
+	 * {@link Circle})
+	 * @param i l'indice de la figure
+	 * @param lx l'abcisse du point dans le repère de la forme
+	 * @param ly l'ordonnée du point dans le repère de la forme
+	 * @param roundRectangle rectangle arrondi à utiliser pour les coins des
+	 * rectangles arrondis
+	 * @return true si le point est contenu dans la forme
+	 */
+	private boolean containsLocal(int i, double lx, double ly,
+		RoundRectangle2D.Float roundRectangle)
+	{
+		float x = xAt(i);
+		float y = yAt(i);
+		float w = widthAt(i);
+		float h = heightAt(i);
+		switch (type(i))
+		{
+			case RECTANGLE:
+				return (lx >= x) && (ly >= y) && (lx < x + w) && (ly < y + h);
+			case ROUNDED_RECTANGLE:
+			{
+				if ((lx < x) || (ly < y) || (lx >= x + w) || (ly >= y + h))
+				{
+					return false;
+				}
+				float arc = arcAt(i);
+				double aw = Math.min(w, Math.abs(arc)) / 2.0;
+				double ah = Math.min(h, Math.abs(arc)) / 2.0;
+				if (((lx >= x + aw) && (lx < x + w - aw))
+					|| ((ly >= y + ah) && (ly < y + h - ah)))
+				{
+					return true;
+				}
+				roundRectangle.setRoundRect(x, y, w, h, arc, arc);
+				return roundRectangle.contains(lx, ly);
+			}
+			case CIRCLE:
+			{
+				double rayon = w / 2.0;
+				if (rayon <= 0.0)
+				{
+					return false;
+				}
+				double dx = lx - (x + rayon);
+				double dy = ly - (y + rayon);
+				return (dx * dx + dy * dy) < (rayon * rayon);
+			}
+			default:
+			{
+				if ((w <= 0.0f) || (h <= 0.0f))
+				{
+					return false;
+				}
+				double nx = (lx - x) / w - 0.5;
+				double ny = (ly - y) / h - 0.5;
+				return (nx * nx + ny * ny) < 0.25;
+			}
+		}
+	}
+
+	/**
+	 * Forme d'une figure placée dans l'une des formes fournies
+	 * @param i l'indice de la figure
+	 * @param rectangle le rectangle à utiliser pour les rectangles
+	 * @param ellipse l'ellipse à utiliser pour les ellipses et les cercles
+	 * @param roundRectangle le rectangle arrondi à utiliser pour les
+	 * rectangles arrondis
+	 * @return la forme (fournie) positionnée sur la forme de la figure
+	 */
+	private Shape shape(int i, Rectangle2D.Float rectangle,
+		Ellipse2D.Float ellipse, RoundRectangle2D.Float roundRectangle)
+	{
+		float x = xAt(i);
+		float y = yAt(i);
+		float w = widthAt(i);
+		float h = heightAt(i);
+		switch (type(i))
+		{
+			case RECTANGLE:
+				rectangle.setRect(x, y, w, h);
+				return rectangle;
+			case ROUNDED_RECTANGLE:
+				float arc = arcAt(i);
+				roundRectangle.setRoundRect(x, y, w, h, arc, arc);
+				return roundRectangle;
+			default:
+				ellipse.setFrame(x, y, w, h);
+				return ellipse;
+		}
+	}
+
+	/**
+	 * Indice d'une couleur dans la table des couleurs (ajoutée si besoin)
+	 * @param paint la couleur
+	 * @return l'indice de la couleur, {@link #noStyle} si elle est null ou
+	 * une valeur inférieure si la table est pleine
+	 */
+	private short getPaintId(Paint paint)
+	{
+		if (paint == null)
+		{
+			return noStyle;
+		}
+		Short id = paintIds.get(paint);
+		if (id == null)
+		{
+			if (paints.size() >= maxStyles)
+			{
+				return noStyle - 1;
+			}
+			id = Short.valueOf((short) paints.size());
+			paints.add(paint);
+			paintIds.put(paint, id);
+		}
+		return id.shortValue();
+	}
+
+	/**
+	 * Indice d'un trait dans la table des traits (ajouté si besoin)
+	 * @param stroke le trait
+	 * @return l'indice du trait, {@link #noStyle} s'il est null ou une valeur
+	 * inférieure si la table est pleine
+	 */
+	private short getStrokeId(BasicStroke stroke)
+	{
+		if (stroke == null)
+		{
+			return noStyle;
+		}
+		Short id = strokeIndices.get(stroke);
+		if (id == null)
+		{
+			if (strokes.size() >= maxStyles)
+			{
+				return noStyle - 1;
+			}
+			id = Short.valueOf((short) strokes.size());
+			strokes.add(stroke);
+			strokeIndices.put(stroke, id);
+		}
+		return id.shortValue();
+	}
+
+	/**
+	 * Vérification d'un indice de figure
+	 * @param index l'indice à vérifier
+	 * @throws IndexOutOfBoundsException si l'indice est invalide
+	 */
+	private void checkIndex(int index) throws IndexOutOfBoundsException
+	{
+		if ((index < 0) || (index >= size))
+		{
+			throw new IndexOutOfBoundsException(getClass().getSimpleName()
+				+ ": index " + index + " out of " + size);
+		}
+	}
+
+	/**
+	 * Évaluation d'un prédicat ne portant que sur le type et le style des
+	 * figures : le prédicat n'est évalué (sur une vue) qu'une fois par
+	 * combinaison distincte de type et de styles
+	 */
+	private class StyleFilter
+	{
+		/**
+		 * Le prédicat (ou null pour accepter toutes les figures)
+		 */
+		private final Predicate<Figure> predicate;
+
+		/**
+		 * Résultats du prédicat par combinaison de type et de styles
+		 */
+		private final Map<Long, Boolean> results;
+
+		/**
+		 * Constructeur
+		 * @param predicate le prédicat (ou null)
+		 */
+		public StyleFilter(Predicate<Figure> predicate)
+		{
+			this.predicate = predicate;
+			results = new HashMap<Long, Boolean>();
+		}
+
+		/**
+		 * Test d'une figure
+		 * @param i l'indice de la figure
+		 * @return true si la figure satisfait le prédicat
+		 */
+		public boolean test(int i)
+		{
+			if (predicate == null)
+			{
+				return true;
+			}
+			long key = ((long) typeAt(i) << 48)
+				| ((long) (fillAt(i) & 0xFFFF) << 32)
+				| ((long) (edgeAt(i) & 0xFFFF) << 16)
+				| (strokeAt(i) & 0xFFFF);
+			Boolean accepted = results.get(key);
+			if (accepted == null)
+			{
+				accepted = Boolean.valueOf(predicate.test(new StoredFigure(i)));
+				results.put(key, accepted);
+			}
+			return accepted.booleanValue();
+		}
+	}
+
+	/**
+	 * Vue {@link Figure} d'une figure du stockage : la forme et la
+	 * transformation sont construites à partir de l'enregistrement et leurs
+	 * modifications y sont recopiées (sauf dans une copie figée).
+	 */
+	final class StoredFigure extends Figure
+	{
+		/**
+		 * Indice de la figure dans le stockage
+		 */
+		private final int index;
+
+		/**
+		 * Rectangle englobant transformé de la figure avant sa dernière
+		 * modification
+		 * @see Drawing#figureChanged(Figure)
+		 */
+		private Rectangle2D previousBounds;
+
+		/**
+		 * Constructeur
+		 * @param index l'indice de la figure dans le stockage
+		 */
+		public StoredFigure(int index)
+		{
+			super(null, null, null);
+			this.index = index;
+			instanceNumber = index + 1;
+			drawing = FigureStore.this.drawing;
+			zOrder = -1;
+			short strokeId = strokeAt(index);
+			short edgeId = edgeAt(index);
+			short fillId = fillAt(index);
+			stroke = (strokeId != noStyle ? strokes.get(strokeId) : null);
+			edge = (edgeId != noStyle ? paints.get(edgeId) : null);
+			fill = (fillId != noStyle ? paints.get(fillId) : null);
+			shape = shape(index, new Rectangle2D.Float(),
+			              new Ellipse2D.Float(), new RoundRectangle2D.Float());
+			transformation.setTransform(scaleXAt(index), 0.0, 0.0,
+			                            scaleYAt(index), translateXAt(index),
+			                            translateYAt(index));
+			previousBounds = null;
+		}
+
+		/**
+		 * Accesseur de l'indice de la figure dans le stockage
+		 * @return l'indice de la figure
+		 */
+		int getIndex()
+		{
+			return index;
+		}
+
+		/**
+		 * Accesseur du rectangle englobant transformé de la figure avant sa
+		 * dernière modification
+		 * @return le rectangle englobant avant la dernière modification (ou
+		 * null si la figure n'a pas été modifiée)
+		 */
+		Rectangle2D getPreviousBounds()
+		{
+			return previousBounds;
+		}
+
+		/**
+		 * Déplacement du dernier point selon les règles de la figure
+		 * d'origine puis recopie dans le stockage
+		 * @param p la nouvelle position du dernier point
+		 */
+		@Override
+		public void setLastPoint(Point2D p)
+		{
+			RectangularShape s = (RectangularShape) shape;
+			float newWidth = (float) (p.getX() - s.getX());
+			float newHeight = (float) (p.getY() - s.getY());
+			if (getType() == FigureType.CIRCLE)
+			{
+				float size = (Math.abs(newWidth) < Math.abs(newHeight)
+					? newWidth : newHeight);
+				newWidth = size;
+				newHeight = size;
+			}
+			previousBounds = getTransformedBounds();
+			if (s instanceof RoundRectangle2D.Float)
+			{
+				((RoundRectangle2D.Float) s).width = newWidth;
+				((RoundRectangle2D.Float) s).height = newHeight;
+			}
+			else
+			{
+				s.setFrame(s.getX(), s.getY(), newWidth, newHeight);
+			}
+			if ((index < size) && !frozen)
+			{
+				resize(index, newWidth, newHeight);
+				growExtent(index);
+			}
+			changed();
+		}
+
+		@Override
+		public void translate(double dx, double dy)
+		{
+			previousBounds = getTransformedBounds();
+			super.translate(dx, dy);
+			writeTransform();
+		}
+
+		@Override
+		public void scale(double sx, double sy)
+		{
+			previousBounds = getTransformedBounds();
+			super.scale(sx, sy);
+			writeTransform();
+		}
+
+		/**
+		 * Recopie de la transformation dans le stockage
+		 */
+		private void writeTransform()
+		{
+			if ((index < size) && !frozen)
+			{
+				setTransform(index, transformation.getScaleX(),
+				             transformation.getScaleY(),
+				             transformation.getTranslateX(),
+				             transformation.getTranslateY());
+				growExtent(index);
+			}
+		}
+
+		/**
+		 * Numéro de version de la forme enregistré dans le stockage, commun
+		 * à toutes les vues de la figure
+		 */
+		@Override
+		public long getVersion()
+		{
+			return (index < size ? versionAt(index) : -1);
+		}
+
+		@Override
+		protected boolean containsLocal(double lx, double ly)
+		{
+			return FigureStore.this.containsLocal(index, lx, ly,
+				new RoundRectangle2D.Float());
+		}
+
+		@Override
+		public Point2D getCenter()
+		{
+			RectangularShape s = (RectangularShape) shape;
+			return new Point2D.Double(s.getCenterX(), s.getCenterY());
+		}
+
+		@Override
+		public FigureType getType()
+		{
+			return type(index);
+		}
+
+		/**
+		 * Nom de la figure : nom de la classe de la figure d'origine suivi de
+		 * son rang dans le stockage
+		 */
+		@Override
+		public String getName()
+		{
+			switch (getType())
+			{
+				case CIRCLE:
+					return "Circle " + instanceNumber;
+				case ELLIPSE:
+					return "Ellipse " + instanceNumber;
+				case ROUNDED_RECTANGLE:
+					return "RoundedRectangle " + instanceNumber;
+				default:
+					return "Rectangle " + instanceNumber;
+			}
+		}
+
+		/**
+		 * Deux vues sont égales si elles représentent la même figure du même
+		 * stockage
+		 */
+		@Override
+		public boolean equals(Object obj)
+		{
+			if (!(obj instanceof StoredFigure))
+			{
+				return false;
+			}
+			StoredFigure other = (StoredFigure) obj;
+			return (other.store() == FigureStore.this)
+				&& (other.index == index);
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return (31 * System.identityHashCode(FigureStore.this)) + index;
+		}
+
+		/**
+		 * Accesseur du stockage de cette vue
+		 * @return le stockage contenant la figure
+		 */
+		FigureStore store()
+		{
+			return FigureStore.this;
+		}
+	}
+}
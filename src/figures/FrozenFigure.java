@@ -0,0 +1,169 @@
+package figures;
+
+import java.awt.Polygon;
+import java.awt.Shape;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Path2D;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.geom.RectangularShape;
+import java.util.Arrays;
+
+import figures.enums.FigureType;
+
+/**
+ * Copie immuable d'une figure à un instant donné, utilisée par les
+ * {@link DrawingSnapshot} : la forme et la transformation sont recopiées,
+ * les styles (flyweights) sont partagés avec la figure d'origine. Toute
+ * tentative de modification lève une {@link UnsupportedOperationException}.
+ * Les valeurs que {@link Figure} calcule à la demande (rectangle englobant
+ * transformé, inverse de la transformation) sont calculées dès la
+ * construction et rangées dans des champs final : une copie peut ainsi être
+ * lue par plusieurs threads sans qu'aucun d'eux n'écrive dans la figure.
+ *
+ * @author davidroussel
+ */
+final class FrozenFigure extends Figure
+{
+	/**
+	 * Le type de la figure d'origine
+	 */
+	private final FigureType type;
+
+	/**
+	 * Le nom de la figure d'origine
+	 */
+	private final String name;
+
+	/**
+	 * Le barycentre de la figure d'origine
+	 */
+	private final Point2D center;
+
+	/**
+	 * Le numéro de version de la forme de la figure d'origine
+	 */
+	private final long version;
+
+	/**
+	 * Le rectangle englobant transformé (trait compris) de la copie
+	 */
+	private final Rectangle2D transformedBounds;
+
+	/**
+	 * L'inverse de la transformation de la copie (null si elle n'est pas
+	 * inversible)
+	 */
+	private final AffineTransform inverse;
+
+	/**
+	 * Constructeur d'une copie immuable d'une figure
+	 * @param figure la figure à copier
+	 */
+	FrozenFigure(Figure figure)
+	{
+		super(figure.getStroke(), figure.getEdgePaint(),
+		      figure.getFillPaint());
+		instanceNumber = figure.instanceNumber;
+		shape = copy(figure.getShape());
+		transformation = new AffineTransform(figure.getTransformation());
+		type = figure.getType();
+		name = figure.getName();
+		Point2D c = figure.getCenter();
+		center = (c != null ? new Point2D.Double(c.getX(), c.getY()) : null);
+		version = figure.getVersion();
+		transformedBounds = super.getTransformedBounds();
+		inverse = super.getInverseTransformation();
+	}
+
+	/**
+	 * Copie d'une forme
+	 * @param shape la forme à copier
+	 * @return une copie de la forme de même classe lorsque c'est possible
+	 */
+	private static Shape copy(Shape shape)
+	{
+		if (shape instanceof RectangularShape)
+		{
+			return (Shape) ((RectangularShape) shape).clone();
+		}
+		if (shape instanceof Polygon)
+		{
+			Polygon p = (Polygon) shape;
+			return new Polygon(Arrays.copyOf(p.xpoints, p.npoints),
+			                   Arrays.copyOf(p.ypoints, p.npoints),
+			                   p.npoints);
+		}
+		return (shape != null ? new Path2D.Double(shape) : null);
+	}
+
+	@Override
+	public void setLastPoint(Point2D p)
+	{
+		throw new UnsupportedOperationException("FrozenFigure: " + name
+			+ " is immutable");
+	}
+
+	@Override
+	public void translate(double x, double y)
+	{
+		throw new UnsupportedOperationException("FrozenFigure: " + name
+			+ " is immutable");
+	}
+
+	@Override
+	public void scale(double x, double y)
+	{
+		throw new UnsupportedOperationException("FrozenFigure: " + name
+			+ " is immutable");
+	}
+
+	/**
+	 * Accesseur du barycentre de la figure d'origine lors de la copie
+	 */
+	@Override
+	public Point2D getCenter()
+	{
+		return (center != null ? (Point2D) center.clone() : null);
+	}
+
+	/**
+	 * Accesseur du rectangle englobant transformé calculé à la construction
+	 */
+	@Override
+	public Rectangle2D getTransformedBounds()
+	{
+		return transformedBounds;
+	}
+
+	/**
+	 * Accesseur de l'inverse de la transformation calculée à la construction
+	 */
+	@Override
+	protected AffineTransform getInverseTransformation()
+	{
+		return inverse;
+	}
+
+	@Override
+	public FigureType getType()
+	{
+		return type;
+	}
+
+	@Override
+	public String getName()
+	{
+		return name;
+	}
+
+	/**
+	 * Accesseur du numéro de version de la forme de la figure d'origine lors
+	 * de la copie
+	 */
+	@Override
+	public long getVersion()
+	{
+		return version;
+	}
+}
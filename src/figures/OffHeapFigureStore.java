@@ -0,0 +1,292 @@
+package figures;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Stockage hors tas de figures destiné aux très grands dessins (importés par
+ * exemple) : chaque figure est un enregistrement de {@link #RecordBytes}
+ * octets (type, indices de style, géométrie et transformation) rangé dans
+ * des {@link ByteBuffer} directs, donc hors du tas et ignoré par le
+ * ramasse-miettes. Les traitements des enregistrements sont ceux de
+ * {@link FigureStore}.
+ *
+ * @author davidroussel
+ */
+public class OffHeapFigureStore extends FigureStore
+{
+	/**
+	 * Nombre d'octets d'un enregistrement
+	 */
+	public final static int RecordBytes = 64;
+
+	/**
+	 * Position des champs dans un enregistrement
+	 */
+	private final static int typeOffset = 0;
+	private final static int fillOffset = 2;
+	private final static int edgeOffset = 4;
+	private final static int strokeOffset = 6;
+	private final static int versionOffset = 8;
+	private final static int xOffset = 12;
+	private final static int yOffset = 16;
+	private final static int widthOffset = 20;
+	private final static int heightOffset = 24;
+	private final static int arcOffset = 28;
+	private final static int scaleXOffset = 32;
+	private final static int scaleYOffset = 40;
+	private final static int translateXOffset = 48;
+	private final static int translateYOffset = 56;
+
+	/**
+	 * Nombre d'enregistrements par bloc (puissance de 2)
+	 */
+	private final static int chunkShift = 15;
+	private final static int chunkRecords = 1 << chunkShift;
+	private final static int chunkMask = chunkRecords - 1;
+
+	/**
+	 * Blocs d'enregistrements (alloués au fur et à mesure des ajouts). Le
+	 * tableau est remplacé (et non modifié) lors de l'ajout d'un bloc afin
+	 * de pouvoir être lu sans verrou.
+	 */
+	private volatile ByteBuffer[] chunks;
+
+	/**
+	 * Blocs partagés avec une copie figée ({@link #freeze()}) et devant être
+	 * recopiés avant d'être modifiés
+	 */
+	private boolean[] shared;
+
+	/**
+	 * Constructeur d'un stockage vide (aucune mémoire hors tas n'est allouée
+	 * avant le premier ajout)
+	 */
+	public OffHeapFigureStore()
+	{
+		chunks = new ByteBuffer[0];
+		shared = new boolean[0];
+	}
+
+	/**
+	 * Mémoire hors tas allouée
+	 * @return le nombre d'octets des blocs d'enregistrements
+	 */
+	@Override
+	public long getBytes()
+	{
+		return (long) chunks.length * chunkRecords * RecordBytes;
+	}
+
+	@Override
+	void allocate(int i)
+	{
+		if ((i >> chunkShift) == chunks.length)
+		{
+			ByteBuffer[] grown = Arrays.copyOf(chunks, chunks.length + 1);
+			grown[chunks.length] =
+				ByteBuffer.allocateDirect(chunkRecords * RecordBytes)
+				          .order(ByteOrder.nativeOrder());
+			shared = Arrays.copyOf(shared, grown.length);
+			chunks = grown;
+		}
+	}
+
+	/**
+	 * Partage des blocs avec une copie figée : ils seront recopiés par ce
+	 * stockage lors de leur prochaine modification
+	 */
+	@Override
+	FigureStore share()
+	{
+		OffHeapFigureStore copy = new OffHeapFigureStore();
+		copy.chunks = chunks;
+		copy.shared = new boolean[chunks.length];
+		Arrays.fill(shared, true);
+		return copy;
+	}
+
+	/**
+	 * Libération des blocs (la mémoire hors tas est rendue lorsque le
+	 * ramasse-miettes collecte les blocs)
+	 */
+	@Override
+	void release()
+	{
+		chunks = new ByteBuffer[0];
+		shared = new boolean[0];
+	}
+
+	@Override
+	void setRecord(int i, byte type, short fill, short edge, short stroke,
+		float x, float y, float w, float h, float arc, double sx, double sy,
+		double tx, double ty)
+	{
+		ByteBuffer b = writableChunk(i);
+		int o = offset(i);
+		b.put(o + typeOffset, type);
+		b.putShort(o + fillOffset, fill);
+		b.putShort(o + edgeOffset, edge);
+		b.putShort(o + strokeOffset, stroke);
+		b.putInt(o + versionOffset, 0);
+		b.putFloat(o + xOffset, x);
+		b.putFloat(o + yOffset, y);
+		b.putFloat(o + widthOffset, w);
+		b.putFloat(o + heightOffset, h);
+		b.putFloat(o + arcOffset, arc);
+		b.putDouble(o + scaleXOffset, sx);
+		b.putDouble(o + scaleYOffset, sy);
+		b.putDouble(o + translateXOffset, tx);
+		b.putDouble(o + translateYOffset, ty);
+	}
+
+	@Override
+	void resize(int i, float w, float h)
+	{
+		ByteBuffer b = writableChunk(i);
+		int o = offset(i);
+		b.putFloat(o + widthOffset, w);
+		b.putFloat(o + heightOffset, h);
+		b.putInt(o + versionOffset, b.getInt(o + versionOffset) + 1);
+	}
+
+	@Override
+	void setTransform(int i, double sx, double sy, double tx, double ty)
+	{
+		ByteBuffer b = writableChunk(i);
+		int o = offset(i);
+		b.putDouble(o + scaleXOffset, sx);
+		b.putDouble(o + scaleYOffset, sy);
+		b.putDouble(o + translateXOffset, tx);
+		b.putDouble(o + translateYOffset, ty);
+	}
+
+	@Override
+	byte typeAt(int i)
+	{
+		return chunk(i).get(offset(i) + typeOffset);
+	}
+
+	@Override
+	short fillAt(int i)
+	{
+		return chunk(i).getShort(offset(i) + fillOffset);
+	}
+
+	@Override
+	short edgeAt(int i)
+	{
+		return chunk(i).getShort(offset(i) + edgeOffset);
+	}
+
+	@Override
+	short strokeAt(int i)
+	{
+		return chunk(i).getShort(offset(i) + strokeOffset);
+	}
+
+	@Override
+	int versionAt(int i)
+	{
+		return chunk(i).getInt(offset(i) + versionOffset);
+	}
+
+	@Override
+	float xAt(int i)
+	{
+		return chunk(i).getFloat(offset(i) + xOffset);
+	}
+
+	@Override
+	float yAt(int i)
+	{
+		return chunk(i).getFloat(offset(i) + yOffset);
+	}
+
+	@Override
+	float widthAt(int i)
+	{
+		return chunk(i).getFloat(offset(i) + widthOffset);
+	}
+
+	@Override
+	float heightAt(int i)
+	{
+		return chunk(i).getFloat(offset(i) + heightOffset);
+	}
+
+	@Override
+	float arcAt(int i)
+	{
+		return chunk(i).getFloat(offset(i) + arcOffset);
+	}
+
+	@Override
+	double scaleXAt(int i)
+	{
+		return chunk(i).getDouble(offset(i) + scaleXOffset);
+	}
+
+	@Override
+	double scaleYAt(int i)
+	{
+		return chunk(i).getDouble(offset(i) + scaleYOffset);
+	}
+
+	@Override
+	double translateXAt(int i)
+	{
+		return chunk(i).getDouble(offset(i) + translateXOffset);
+	}
+
+	@Override
+	double translateYAt(int i)
+	{
+		return chunk(i).getDouble(offset(i) + translateYOffset);
+	}
+
+	/**
+	 * Bloc contenant un enregistrement
+	 * @param i l'indice de l'enregistrement
+	 * @return le bloc contenant l'enregistrement
+	 */
+	private ByteBuffer chunk(int i)
+	{
+		return chunks[i >> chunkShift];
+	}
+
+	/**
+	 * Bloc contenant un enregistrement à modifier, recopié au préalable s'il
+	 * est partagé avec une copie figée (le tableau des blocs est alors
+	 * remplacé)
+	 * @param i l'indice de l'enregistrement
+	 * @return le bloc (non partagé) contenant l'enregistrement
+	 */
+	private ByteBuffer writableChunk(int i)
+	{
+		int k = i >> chunkShift;
+		if (shared[k])
+		{
+			ByteBuffer copy =
+				ByteBuffer.allocateDirect(chunkRecords * RecordBytes)
+				          .order(ByteOrder.nativeOrder());
+			copy.put(chunks[k].duplicate());
+			ByteBuffer[] replaced = chunks.clone();
+			replaced[k] = copy;
+			chunks = replaced;
+			shared[k] = false;
+		}
+		return chunks[k];
+	}
+
+	/**
+	 * Position d'un enregistrement dans son bloc
+	 * @param i l'indice de l'enregistrement
+	 * @return la position (en octets) de l'enregistrement dans son bloc
+	 */
+	private static int offset(int i)
+	{
+		return (i & chunkMask) * RecordBytes;
+	}
+}
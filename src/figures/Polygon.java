@@ -49,6 +49,7 @@ public class Polygon extends Figure
 	{
 		java.awt.Polygon poly = (java.awt.Polygon) shape;
 		poly.addPoint(x, y);
+		changed();
 	}
 
 	/**
@@ -78,6 +79,7 @@ public class Polygon extends Figure
 			{
 				poly.addPoint(xs[i], ys[i]);
 			}
+			changed();
 		}
 	}
 
@@ -95,6 +97,10 @@ public class Polygon extends Figure
 		{
 			poly.xpoints[lastIndex] = Double.valueOf(p.getX()).intValue();
 			poly.ypoints[lastIndex] = Double.valueOf(p.getY()).intValue();
+			// les coordonnées ont été modifiées directement : le rectangle
+			// englobant mémorisé par le polygone doit être recalculé
+			poly.invalidate();
+			changed();
 		}
 	}
 
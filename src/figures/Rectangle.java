@@ -79,9 +79,27 @@ public class Rectangle extends Figure
 			float newHeight = (float) (p.getY() - rect.y);
 			rect.width = newWidth;
 			rect.height = newHeight;
+			changed();
 		}
 	}
 
+	/**
+	 * Teste si un point exprimé dans le repère du rectangle est contenu dans
+	 * celui ci par simple comparaison aux bornes du rectangle (mêmes règles
+	 * que {@link Rectangle2D#contains(double, double)})
+	 * @param x l'abcisse du point dans le repère de la forme
+	 * @param y l'ordonnée du point dans le repère de la forme
+	 * @return true si le point est contenu dans le rectangle, false sinon
+	 * @see figures.Figure#containsLocal(double, double)
+	 */
+	@Override
+	protected boolean containsLocal(double x, double y)
+	{
+		Rectangle2D.Float rect = (Rectangle2D.Float) shape;
+		return (x >= rect.x) && (y >= rect.y) && (x < rect.x + rect.width)
+			&& (y < rect.y + rect.height);
+	}
+
 	/**
 	 * Obtention du barycentre de la figure.
 	 * @return le point correspondant au barycentre de la figure
@@ -0,0 +1,315 @@
+package figures;
+
+import java.util.Arrays;
+
+/**
+ * Stockage compact de figures rectangulaires sous forme de tableaux
+ * parallèles de types primitifs sur le tas : type, indices de style,
+ * géométrie et transformation (limitée à une échelle et une translation).
+ * Une figure n'occupe ainsi que {@link #RecordBytes} octets au lieu d'un
+ * graphe d'objets (figure, forme, transformation) de plusieurs centaines
+ * d'octets, et les parcours (rectangles englobants, filtres, recherche de la
+ * figure sous un point, dessin) sont de simples boucles sur des tableaux.
+ * Les traitements des enregistrements sont ceux de {@link FigureStore}.
+ *
+ * @author davidroussel
+ */
+public class RectangularFigureStore extends FigureStore
+{
+	/**
+	 * Capacité initiale des tableaux
+	 */
+	private final static int initialCapacity = 64;
+
+	/**
+	 * Nombre d'octets occupés par une figure dans les tableaux
+	 */
+	public final static int RecordBytes = 1 + (3 * 2) + 4 + (5 * 4)
+		+ (4 * 8);
+
+	/**
+	 * Types des figures ({@link figures.enums.FigureType#ordinal()})
+	 */
+	private byte[] types;
+
+	/**
+	 * Indices des couleurs de remplissage et de bordure et des traits des
+	 * figures dans les tables de styles ({@link FigureStore#noStyle} si
+	 * absents)
+	 */
+	private short[] fills, edges, strokeIds;
+
+	/**
+	 * Numéros de version des formes des figures
+	 */
+	private int[] versions;
+
+	/**
+	 * Coin supérieur gauche, largeur, hauteur et arrondis des formes des
+	 * figures (avant transformation)
+	 */
+	private float[] x, y, width, height, arcs;
+
+	/**
+	 * Facteurs d'échelle des transformations des figures
+	 */
+	private double[] scaleX, scaleY;
+
+	/**
+	 * Translations des transformations des figures
+	 */
+	private double[] translateX, translateY;
+
+	/**
+	 * Tableaux partagés avec une copie figée ({@link #freeze()}) et devant
+	 * être recopiés avant d'être modifiés
+	 */
+	private boolean shared;
+
+	/**
+	 * Constructeur d'un stockage vide
+	 */
+	public RectangularFigureStore()
+	{
+		reallocate(initialCapacity);
+	}
+
+	/**
+	 * Constructeur d'un stockage partageant les tableaux d'un autre
+	 * @param store le stockage dont on partage les tableaux
+	 */
+	private RectangularFigureStore(RectangularFigureStore store)
+	{
+		types = store.types;
+		fills = store.fills;
+		edges = store.edges;
+		strokeIds = store.strokeIds;
+		versions = store.versions;
+		x = store.x;
+		y = store.y;
+		width = store.width;
+		height = store.height;
+		arcs = store.arcs;
+		scaleX = store.scaleX;
+		scaleY = store.scaleY;
+		translateX = store.translateX;
+		translateY = store.translateY;
+		shared = false;
+	}
+
+	/**
+	 * Estimation de la mémoire occupée par les figures
+	 * @return le nombre d'octets des tableaux (capacité comprise)
+	 */
+	@Override
+	public long getBytes()
+	{
+		return (long) types.length * RecordBytes;
+	}
+
+	@Override
+	void allocate(int i)
+	{
+		if (i == types.length)
+		{
+			reallocate(i + (i >> 1));
+		}
+	}
+
+	/**
+	 * Partage des tableaux avec une copie figée : ils seront recopiés par ce
+	 * stockage lors de sa prochaine modification
+	 */
+	@Override
+	FigureStore share()
+	{
+		shared = true;
+		return new RectangularFigureStore(this);
+	}
+
+	@Override
+	void release()
+	{
+		types = null;
+		reallocate(initialCapacity);
+	}
+
+	@Override
+	void setRecord(int i, byte type, short fill, short edge, short stroke,
+		float x, float y, float w, float h, float arc, double sx, double sy,
+		double tx, double ty)
+	{
+		unshare();
+		types[i] = type;
+		fills[i] = fill;
+		edges[i] = edge;
+		strokeIds[i] = stroke;
+		versions[i] = 0;
+		this.x[i] = x;
+		this.y[i] = y;
+		width[i] = w;
+		height[i] = h;
+		arcs[i] = arc;
+		scaleX[i] = sx;
+		scaleY[i] = sy;
+		translateX[i] = tx;
+		translateY[i] = ty;
+	}
+
+	@Override
+	void resize(int i, float w, float h)
+	{
+		unshare();
+		width[i] = w;
+		height[i] = h;
+		versions[i]++;
+	}
+
+	@Override
+	void setTransform(int i, double sx, double sy, double tx, double ty)
+	{
+		unshare();
+		scaleX[i] = sx;
+		scaleY[i] = sy;
+		translateX[i] = tx;
+		translateY[i] = ty;
+	}
+
+	@Override
+	byte typeAt(int i)
+	{
+		return types[i];
+	}
+
+	@Override
+	short fillAt(int i)
+	{
+		return fills[i];
+	}
+
+	@Override
+	short edgeAt(int i)
+	{
+		return edges[i];
+	}
+
+	@Override
+	short strokeAt(int i)
+	{
+		return strokeIds[i];
+	}
+
+	@Override
+	int versionAt(int i)
+	{
+		return versions[i];
+	}
+
+	@Override
+	float xAt(int i)
+	{
+		return x[i];
+	}
+
+	@Override
+	float yAt(int i)
+	{
+		return y[i];
+	}
+
+	@Override
+	float widthAt(int i)
+	{
+		return width[i];
+	}
+
+	@Override
+	float heightAt(int i)
+	{
+		return height[i];
+	}
+
+	@Override
+	float arcAt(int i)
+	{
+		return arcs[i];
+	}
+
+	@Override
+	double scaleXAt(int i)
+	{
+		return scaleX[i];
+	}
+
+	@Override
+	double scaleYAt(int i)
+	{
+		return scaleY[i];
+	}
+
+	@Override
+	double translateXAt(int i)
+	{
+		return translateX[i];
+	}
+
+	@Override
+	double translateYAt(int i)
+	{
+		return translateY[i];
+	}
+
+	/**
+	 * Recopie des tableaux s'ils sont partagés avec une copie figée
+	 */
+	private void unshare()
+	{
+		if (shared)
+		{
+			reallocate(types.length);
+		}
+	}
+
+	/**
+	 * (Ré)allocation des tableaux avec une nouvelle capacité
+	 * @param capacity la nouvelle capacité
+	 */
+	private void reallocate(int capacity)
+	{
+		if (types == null)
+		{
+			types = new byte[capacity];
+			fills = new short[capacity];
+			edges = new short[capacity];
+			strokeIds = new short[capacity];
+			versions = new int[capacity];
+			x = new float[capacity];
+			y = new float[capacity];
+			width = new float[capacity];
+			height = new float[capacity];
+			arcs = new float[capacity];
+			scaleX = new double[capacity];
+			scaleY = new double[capacity];
+			translateX = new double[capacity];
+			translateY = new double[capacity];
+		}
+		else
+		{
+			types = Arrays.copyOf(types, capacity);
+			fills = Arrays.copyOf(fills, capacity);
+			edges = Arrays.copyOf(edges, capacity);
+			strokeIds = Arrays.copyOf(strokeIds, capacity);
+			versions = Arrays.copyOf(versions, capacity);
+			x = Arrays.copyOf(x, capacity);
+			y = Arrays.copyOf(y, capacity);
+			width = Arrays.copyOf(width, capacity);
+			height = Arrays.copyOf(height, capacity);
+			arcs = Arrays.copyOf(arcs, capacity);
+			scaleX = Arrays.copyOf(scaleX, capacity);
+			scaleY = Arrays.copyOf(scaleY, capacity);
+			translateX = Arrays.copyOf(translateX, capacity);
+			translateY = Arrays.copyOf(translateY, capacity);
+		}
+		shared = false;
+	}
+}
@@ -50,6 +50,7 @@ public class RegularPolygon extends Figure
 				getXCoordinates(center, rayon, vertexCount), 
 				getYCoordinates(center, rayon, vertexCount), 
 				vertexCount);
+		changed();
 	}
 	
 	private int[] getXCoordinates(Point center, int rayon, int vertexCount)
@@ -92,6 +93,10 @@ public class RegularPolygon extends Figure
 		{
 			poly.xpoints[lastIndex] = Double.valueOf(p.getX()).intValue();
 			poly.ypoints[lastIndex] = Double.valueOf(p.getY()).intValue();
+			// les coordonnées ont été modifiées directement : le rectangle
+			// englobant mémorisé par le polygone doit être recalculé
+			poly.invalidate();
+			changed();
 		}
 	}
 	
@@ -55,6 +55,37 @@ public class RoundedRectangle extends Rectangle
 		RoundRectangle2D.Float rect = (RoundRectangle2D.Float) shape;
 		rect.width = (float) (p.getX() - rect.x);;
 		rect.height = (float) (p.getY() - rect.y);
+		changed();
+	}
+
+	/**
+	 * Teste si un point exprimé dans le repère du rectangle arrondi est
+	 * contenu dans celui ci. Les points hors du rectangle ou dans la croix
+	 * centrale (hors des coins) sont traités par simple comparaison, seuls les
+	 * points situés dans les coins arrondis sont testés par
+	 * {@link RoundRectangle2D#contains(double, double)}
+	 * @param x l'abcisse du point dans le repère de la forme
+	 * @param y l'ordonnée du point dans le repère de la forme
+	 * @return true si le point est contenu dans le rectangle arrondi
+	 * @see figures.Rectangle#containsLocal(double, double)
+	 */
+	@Override
+	protected boolean containsLocal(double x, double y)
+	{
+		RoundRectangle2D.Float rect = (RoundRectangle2D.Float) shape;
+		if ((x < rect.x) || (y < rect.y) || (x >= rect.x + rect.width)
+			|| (y >= rect.y + rect.height))
+		{
+			return false;
+		}
+		double aw = Math.min(rect.width, Math.abs(rect.arcwidth)) / 2.0;
+		double ah = Math.min(rect.height, Math.abs(rect.archeight)) / 2.0;
+		if (((x >= rect.x + aw) && (x < rect.x + rect.width - aw))
+			|| ((y >= rect.y + ah) && (y < rect.y + rect.height - ah)))
+		{
+			return true;
+		}
+		return rect.contains(x, y);
 	}
 
 	/**
@@ -97,6 +128,7 @@ public class RoundedRectangle extends Rectangle
 				rect.archeight = 0;
 			}
 		}
+		changed();
 	}
 	
  	/**
@@ -4,6 +4,7 @@ import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
 import java.awt.event.MouseMotionListener;
 import java.awt.geom.Point2D;
+import java.util.function.Function;
 
 import javax.swing.JLabel;
 
@@ -17,6 +18,10 @@ import figures.Drawing;
  * chaque type de figure. Aussi les classes filles devront implémenter leur
  * propre xxxCreationListener assurant la gestion de la création d'une nouvelle
  * figure.
+ * Les positions des évènements souris (dans le repère du composant) sont
+ * converties dans le repère du dessin ({@link #getDrawingPoint(MouseEvent)})
+ * en double précision par le convertisseur mis en place par la vue
+ * ({@link #setViewConverter(Function)}).
  *
  * @author davidroussel
  */
@@ -58,6 +63,13 @@ public abstract class AbstractCreationListener implements MouseListener,
 	 */
 	protected Point2D endPoint;
 
+	/**
+	 * Conversion d'un point du repère du composant recevant les évènements
+	 * souris dans le repère du dessin (null si les deux repères sont
+	 * identiques)
+	 */
+	private Function<Point2D, Point2D> viewConverter;
+
 	/**
 	 * le conseil par défaut à afficher dans le {@link #tipLabel}
 	 */
@@ -94,6 +106,7 @@ public abstract class AbstractCreationListener implements MouseListener,
 			int nbSteps)
 	{
 		drawingModel = model;
+		viewConverter = null;
 		currentFigure = null;
 		tipLabel = infoLabel;
 		this.nbSteps = nbSteps;
@@ -125,11 +138,34 @@ public abstract class AbstractCreationListener implements MouseListener,
 //		tipLabel = label;
 //	}
 
+	/**
+	 * Mise en place de la conversion des positions des évènements souris
+	 * dans le repère du dessin (par la vue à laquelle est ajouté ce listener)
+	 * @param converter la conversion d'un point du repère du composant dans
+	 * le repère du dessin ou null si les deux repères sont identiques
+	 */
+	public void setViewConverter(Function<Point2D, Point2D> converter)
+	{
+		viewConverter = converter;
+	}
+
+	/**
+	 * Position d'un évènement souris dans le repère du dessin
+	 * @param e l'évènement souris
+	 * @return la position (non arrondie) de l'évènement dans le repère du
+	 * dessin
+	 */
+	protected Point2D getDrawingPoint(MouseEvent e)
+	{
+		Point2D p = new Point2D.Double(e.getX(), e.getY());
+		return (viewConverter != null ? viewConverter.apply(p) : p);
+	}
+
 	/**
 	 * Initialisation de la création d'une nouvelle figure. détermine le point
 	 * de départ de la figure ({@link #startPoint}), initie une nouvelle figure
-	 * à la position de l'évènement ({@link Drawing#initiateFigure(Point2D)}),
-	 * met à jour le dessin {@link Drawing#update()}, puis passe à l'étape
+	 * à la position de l'évènement ({@link Drawing#initiateFigure(Point2D)},
+	 * qui notifie elle même les observateurs du dessin), puis passe à l'étape
 	 * suivante en mettant à jour les conseils utilisateurs (
 	 * {@link #updateTip()}). Pour la plupart des figures la création commence
 	 * par un appui sur le bouton gauche de la souris. A utiliser dans
@@ -141,20 +177,21 @@ public abstract class AbstractCreationListener implements MouseListener,
 	 */
 	public void startFigure(MouseEvent e)
 	{
-		startPoint = e.getPoint();
-		currentFigure = drawingModel.initiateFigure(e.getPoint());
+		startPoint = getDrawingPoint(e);
+		currentFigure = drawingModel.initiateFigure(startPoint);
+		drawingModel.setActiveFigure(currentFigure);
 
 		nextStep();
-
-		drawingModel.update();
 	}
 
 	/**
-	 * Terminaison de la création d'une figure. remet l'étape courante à 0,
+	 * Terminaison de la création d'une figure. La figure n'est plus en cours
+	 * d'édition ({@link Drawing#setActiveFigure(Figure)}), remet l'étape
+	 * courante à 0,
 	 * détermine la position du point de terminaison de la figure (
 	 * {@link #endPoint}), vérifie que la figure ainsi terminée n'est pas de
-	 * taille 0 ({@link #checkZeroSizeFigure()}), puis met à jour le dessin (
-	 * {@link Drawing#update()}) et les conseils utilisateurs (
+	 * taille 0 ({@link #checkZeroSizeFigure()}, qui la retire du dessin le
+	 * cas échéant), puis met à jour les conseils utilisateurs (
 	 * {@link #updateTip()}). A utiliser dans un
 	 * {@link MouseListener#mousePressed(MouseEvent)} ou bien dans un
 	 * {@link MouseListener#mouseClicked(MouseEvent)} suivant la figure à créer.
@@ -163,15 +200,15 @@ public abstract class AbstractCreationListener implements MouseListener,
 	 */
 	public void endFigure(MouseEvent e)
 	{
+		drawingModel.setActiveFigure(null);
+
 		// Remise à zéro de currentStep pour pouvoir réutiliser ce
 		// listener sur une autre figure
 		nextStep();
 
-		endPoint = e.getPoint();
+		endPoint = getDrawingPoint(e);
 
 		checkZeroSizeFigure();
-
-		drawingModel.update();
 	}
 
 	/**
@@ -1,15 +1,16 @@
 package figures.creationListeners;
 
-import java.awt.Point;
 import java.awt.event.KeyEvent;
 import java.awt.event.KeyListener;
 import java.awt.event.MouseEvent;
 import java.awt.geom.NoninvertibleTransformException;
 import java.awt.geom.Point2D;
+import java.util.function.Function;
 
 import javax.swing.JLabel;
 
 import figures.Drawing;
+import figures.Figure;
 
 /**
  * Listener permettant de déplacer une figure
@@ -20,6 +21,10 @@ import figures.Drawing;
  */
 public class MoveShapeListener extends AbstractCreationListener implements KeyListener
 {
+	/**
+	 * Recherche de la figure située sous un point (dans le repère du dessin)
+	 */
+	private final Function<Point2D, Figure> picker;
 
 	/**
 	 * Constructeur d'un Listener pour créer un polygon en plusieurs clicks
@@ -28,8 +33,26 @@ public class MoveShapeListener extends AbstractCreationListener implements KeyLi
 	 * @param infoLabel le label dans lequel afficher les conseils utilisateurs
 	 */
 	public MoveShapeListener(Drawing model, JLabel infoLabel)
+	{
+		this(model, infoLabel, null);
+	}
+
+	/**
+	 * Constructeur d'un Listener de déplacement utilisant un moyen
+	 * particulier de rechercher la figure sous un point (le tampon
+	 * d'identifiants d'une vue par exemple)
+	 *
+	 * @param model le modèle de dessin à modifier
+	 * @param infoLabel le label dans lequel afficher les conseils utilisateurs
+	 * @param picker la recherche de la figure située sous un point (dans le
+	 * repère du dessin) ou null pour utiliser
+	 * {@link Drawing#getFigureAt(Point2D)}
+	 */
+	public MoveShapeListener(Drawing model, JLabel infoLabel,
+		Function<Point2D, Figure> picker)
 	{
 		super(model, infoLabel, 2);
+		this.picker = (picker != null ? picker : model::getFigureAt);
 
 		tips[0] = new String("Maintenez clic gauche pour déplacer");
 		tips[1] = new String("Relachez pour...relacher");
@@ -50,10 +73,9 @@ public class MoveShapeListener extends AbstractCreationListener implements KeyLi
 	{		
 		if (e.getButton() == MouseEvent.BUTTON1)
 		{
-			currentFigure = drawingModel.getFigureAt(e.getPoint());
-			startPoint = e.getPoint();
-			
-			drawingModel.update();
+			currentFigure = getFigureAt(e);
+			startPoint = getDrawingPoint(e);
+			drawingModel.setActiveFigure(currentFigure);
 			nextStep();
 		}
 	}
@@ -67,8 +89,8 @@ public class MoveShapeListener extends AbstractCreationListener implements KeyLi
 	@Override
 	public void mouseReleased(MouseEvent e)
 	{
-		// Rien
 //		currentFigure = null;
+		drawingModel.setActiveFigure(null);
 		nextStep();
 	}
 
@@ -86,7 +108,18 @@ public class MoveShapeListener extends AbstractCreationListener implements KeyLi
 	@Override
 	public void mouseClicked(MouseEvent e)
 	{
-		currentFigure = drawingModel.getFigureAt(e.getPoint());		
+		currentFigure = getFigureAt(e);
+	}
+
+	/**
+	 * Recherche de la figure située sous un évènement souris au travers du
+	 * {@link #picker}
+	 * @param e l'évènement souris
+	 * @return la figure située sous l'évènement ou null
+	 */
+	private Figure getFigureAt(MouseEvent e)
+	{
+		return picker.apply(getDrawingPoint(e));
 	}
 
 	/*
@@ -120,7 +153,7 @@ public class MoveShapeListener extends AbstractCreationListener implements KeyLi
 	{
 		if (currentFigure != null)
 		{
-			Point p = e.getPoint();
+			Point2D p = getDrawingPoint(e);
 			Point2D center = currentFigure.getCenter();
 			try {
 				currentFigure.getTransformation().inverseTransform(p, p);
@@ -128,7 +161,8 @@ public class MoveShapeListener extends AbstractCreationListener implements KeyLi
 				// TODO Auto-generated catch block
 				e1.printStackTrace();
 			}
-			currentFigure.translate(p.x - center.getX(), p.y - center.getY());
+			currentFigure.translate(p.getX() - center.getX(),
+			                        p.getY() - center.getY());
 			drawingModel.update();
 		}		
 	}
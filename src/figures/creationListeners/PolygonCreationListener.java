@@ -1,7 +1,7 @@
 package figures.creationListeners;
 
-import java.awt.Point;
 import java.awt.event.MouseEvent;
+import java.awt.geom.Point2D;
 
 import javax.swing.JLabel;
 
@@ -86,7 +86,7 @@ public class PolygonCreationListener extends AbstractCreationListener
 	@Override
 	public void mouseClicked(MouseEvent e)
 	{
-		Point p = e.getPoint();
+		Point2D p = getDrawingPoint(e);
 		/*
 		 * Initie la création d'un premier point fixé à l'endroit du click
 		 * puis d'un deuxième point (créé au même endroit) qui se déplacera avec
@@ -114,11 +114,13 @@ public class PolygonCreationListener extends AbstractCreationListener
 			{
 				case MouseEvent.BUTTON1:
 					// On ajoute un point au polygone
-					poly.addPoint(p.x, p.y);
+					poly.addPoint((int) p.getX(), (int) p.getY());
+					drawingModel.update();
 					break;
 				case MouseEvent.BUTTON2:
 					// On supprime le dernier point
 					poly.removeLastPoint();
+					drawingModel.update();
 					break;
 				case MouseEvent.BUTTON3:
 					// On termine le polygone
@@ -127,7 +129,6 @@ public class PolygonCreationListener extends AbstractCreationListener
 			}
 		}
 
-		drawingModel.update();
 		updateTip();
 	}
 
@@ -183,7 +184,7 @@ public class PolygonCreationListener extends AbstractCreationListener
 			Figure figure = currentFigure;
 			if (figure != null)
 			{
-				figure.setLastPoint(e.getPoint());
+				figure.setLastPoint(getDrawingPoint(e));
 			}
 			drawingModel.update();
 		}
@@ -124,7 +124,7 @@ public class RectangularShapeCreationListener extends AbstractCreationListener
 			Figure figure = currentFigure;
 			if (figure != null)
 			{
-				figure.setLastPoint(e.getPoint());
+				figure.setLastPoint(getDrawingPoint(e));
 			}
 			drawingModel.update();
 		}
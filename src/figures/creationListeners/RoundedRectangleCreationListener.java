@@ -118,7 +118,7 @@ public class RoundedRectangleCreationListener extends AbstractCreationListener
 		if (currentStep == 2)
 		{
 			RoundedRectangle rect = (RoundedRectangle) currentFigure;
-			rect.setArc(e.getPoint());
+			rect.setArc(getDrawingPoint(e));
 
 			drawingModel.update();
 		}
@@ -137,7 +137,7 @@ public class RoundedRectangleCreationListener extends AbstractCreationListener
 		if (currentStep == 1)
 		{
 			// déplacement du coin inférieur droit du rectangle
-			currentFigure.setLastPoint(e.getPoint());
+			currentFigure.setLastPoint(getDrawingPoint(e));
 			drawingModel.update();
 		}
 	}
@@ -0,0 +1,260 @@
+package rendering;
+
+import java.awt.BasicStroke;
+import java.awt.Graphics2D;
+import java.awt.Paint;
+import java.awt.Shape;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.List;
+
+import figures.Figure;
+
+/**
+ * Dessin d'une liste de figures regroupées par style afin de limiter les
+ * changements d'état du contexte graphique.
+ * Les couleurs et traits des figures provenant des flyweights
+ * ({@link utils.PaintFactory}, {@link utils.StrokeFactory}), deux figures ont
+ * le même style lorsque leurs remplissage, bordure et trait sont identiques.
+ * Les figures sont réparties en lots de figures de même style ne se
+ * chevauchant pas : chaque lot est dessiné en mettant en place une seule fois
+ * la couleur de remplissage pour remplir toutes ses figures, puis une seule
+ * fois la couleur de bordure et le trait pour dessiner toutes leurs bordures.
+ * Une figure n'est avancée dans un lot précédent que si son rectangle
+ * englobant n'intersecte celui d'aucune des figures dessinées entre temps :
+ * le résultat est donc identique à celui d'un dessin dans l'ordre z.
+ *
+ * @author davidroussel
+ */
+public class BatchRenderer
+{
+	/**
+	 * Nombre maximum par défaut de lots examinés pour placer une figure
+	 */
+	public final static int DefaultLookBack = 16;
+
+	/**
+	 * Marge ajoutée autour des rectangles englobants des figures afin que
+	 * deux figures partageant un pixel (antialiasing) soient considérées
+	 * comme se chevauchant
+	 */
+	private final static double margin = 1.0;
+
+	/**
+	 * Lot de figures de même style ne se chevauchant pas
+	 */
+	private static class Batch
+	{
+		/**
+		 * Style commun des figures du lot
+		 */
+		final Paint fill, edge;
+		final BasicStroke stroke;
+
+		/**
+		 * Les figures du lot dans l'ordre z
+		 */
+		final List<Figure> figures;
+
+		/**
+		 * Rectangles englobants (élargis) des figures du lot
+		 */
+		final List<Rectangle2D> bounds;
+
+		/**
+		 * Union des rectangles englobants des figures du lot
+		 */
+		final Rectangle2D extent;
+
+		/**
+		 * Constructeur d'un lot à partir de sa première figure
+		 */
+		Batch(Figure figure, Rectangle2D box)
+		{
+			fill = figure.getFillPaint();
+			edge = figure.getEdgePaint();
+			stroke = figure.getStroke();
+			figures = new ArrayList<Figure>();
+			bounds = new ArrayList<Rectangle2D>();
+			extent = new Rectangle2D.Double();
+			extent.setRect(box);
+			add(figure, box);
+		}
+
+		/**
+		 * Teste si une figure a le même style que celles du lot
+		 */
+		boolean hasStyle(Figure figure)
+		{
+			return (figure.getFillPaint() == fill)
+				&& (figure.getEdgePaint() == edge)
+				&& (figure.getStroke() == stroke);
+		}
+
+		/**
+		 * Teste si un rectangle intersecte celui d'une des figures du lot
+		 */
+		boolean overlaps(Rectangle2D box)
+		{
+			if (!extent.intersects(box))
+			{
+				return false;
+			}
+			for (Rectangle2D b : bounds)
+			{
+				if (b.intersects(box))
+				{
+					return true;
+				}
+			}
+			return false;
+		}
+
+		/**
+		 * Ajout d'une figure au lot
+		 */
+		void add(Figure figure, Rectangle2D box)
+		{
+			figures.add(figure);
+			bounds.add(box);
+			extent.add(box);
+		}
+	}
+
+	/**
+	 * Nombre maximum de lots examinés pour placer une figure
+	 */
+	private final int lookBack;
+
+	/**
+	 * Nombre de lots lors du dernier dessin
+	 */
+	private int batchCount;
+
+	/**
+	 * Constructeur avec le nombre de lots examinés par défaut
+	 */
+	public BatchRenderer()
+	{
+		this(DefaultLookBack);
+	}
+
+	/**
+	 * Constructeur
+	 * @param lookBack le nombre maximum de lots examinés pour placer une
+	 * figure
+	 */
+	public BatchRenderer(int lookBack)
+	{
+		this.lookBack = lookBack;
+		batchCount = 0;
+	}
+
+	/**
+	 * Accesseur du nombre de lots lors du dernier dessin
+	 * @return le nombre de lots (et donc de mises en place d'un style) lors
+	 * du dernier dessin
+	 */
+	public int getBatchCount()
+	{
+		return batchCount;
+	}
+
+	/**
+	 * Dessin d'une liste de figures par lots de même style
+	 * @param g2D le contexte graphique dans lequel dessiner
+	 * @param figures les figures à dessiner triées dans l'ordre z
+	 */
+	public void paint(Graphics2D g2D, List<Figure> figures)
+	{
+		List<Batch> batches = batch(figures);
+		batchCount = batches.size();
+
+		AffineTransform base = g2D.getTransform();
+		for (Batch batch : batches)
+		{
+			if (batch.fill != null)
+			{
+				g2D.setPaint(batch.fill);
+				for (Figure f : batch.figures)
+				{
+					g2D.transform(f.getTransformation());
+					g2D.fill(f.getShape());
+					g2D.setTransform(base);
+				}
+			}
+			if ((batch.edge != null) && (batch.stroke != null))
+			{
+				g2D.setPaint(batch.edge);
+				g2D.setStroke(batch.stroke);
+				for (Figure f : batch.figures)
+				{
+					g2D.transform(f.getTransformation());
+					if (f.usesStrokedShape(g2D))
+					{
+						g2D.fill(f.getStrokedShape());
+					}
+					else
+					{
+						g2D.draw(f.getShape());
+					}
+					g2D.setTransform(base);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Répartition des figures en lots. Chaque figure est ajoutée au dernier
+	 * lot de même style qu'elle ne chevauche pas, à condition de ne
+	 * chevaucher aucune des figures des lots suivants (qui seront dessinées
+	 * après elle). Sinon un nouveau lot est créé.
+	 * @param figures les figures triées dans l'ordre z
+	 * @return les lots à dessiner dans l'ordre
+	 */
+	private List<Batch> batch(List<Figure> figures)
+	{
+		List<Batch> batches = new ArrayList<Batch>();
+		for (Figure f : figures)
+		{
+			Shape shape = f.getShape();
+			if (shape == null)
+			{
+				continue;
+			}
+			Rectangle2D box = new Rectangle2D.Double();
+			box.setRect(f.getTransformedBounds());
+			box.setRect(box.getX() - margin, box.getY() - margin,
+			            box.getWidth() + (2 * margin),
+			            box.getHeight() + (2 * margin));
+
+			Batch target = null;
+			int last = Math.max(0, batches.size() - lookBack);
+			for (int i = batches.size() - 1; i >= last; i--)
+			{
+				Batch b = batches.get(i);
+				boolean overlaps = b.overlaps(box);
+				if (b.hasStyle(f) && !overlaps)
+				{
+					target = b;
+					break;
+				}
+				if (overlaps)
+				{
+					break;
+				}
+			}
+
+			if (target != null)
+			{
+				target.add(f, box);
+			}
+			else
+			{
+				batches.add(new Batch(f, box));
+			}
+		}
+		return batches;
+	}
+}
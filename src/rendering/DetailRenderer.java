@@ -0,0 +1,228 @@
+package rendering;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Paint;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
+
+import figures.Figure;
+import figures.enums.LineType;
+import utils.StrokeFactory;
+
+/**
+ * Dessin des figures avec un niveau de détail adapté à leur taille à l'écran
+ * (dans le repère du périphérique) :
+ * <ul>
+ * 	<li>une figure plus petite qu'un pixel est réduite à un seul pixel</li>
+ * 	<li>une très petite figure est réduite à un rectangle plein de la taille
+ * 	de son rectangle englobant</li>
+ * 	<li>une petite figure dont le trait est pointillé est dessinée avec un
+ * 	trait plein de même épaisseur</li>
+ * </ul>
+ * L'opacité du pixel ou du rectangle correspond à la proportion de sa surface
+ * couverte par la figure.
+ * Les autres figures sont dessinées par le dessinateur décoré.
+ * Ce dessinateur ne conserve aucun état et peut donc être utilisé depuis
+ * plusieurs threads si le dessinateur décoré le permet.
+ *
+ * @author davidroussel
+ */
+public class DetailRenderer implements FigureRenderer
+{
+	/**
+	 * Taille maximale par défaut (en pixels du périphérique) des figures
+	 * réduites à un rectangle plein
+	 */
+	public final static double DefaultTinySize = 3.0;
+
+	/**
+	 * Taille maximale par défaut (en pixels du périphérique) des figures dont
+	 * le trait pointillé est remplacé par un trait plein
+	 */
+	public final static double DefaultDashedSize = 12.0;
+
+	/**
+	 * Le dessinateur décoré utilisé pour les figures dessinées normalement
+	 */
+	private final FigureRenderer next;
+
+	/**
+	 * Taille maximale des figures réduites à un rectangle plein
+	 */
+	private final double tinySize;
+
+	/**
+	 * Taille maximale des figures dont le trait pointillé est remplacé par un
+	 * trait plein
+	 */
+	private final double dashedSize;
+
+	/**
+	 * Constructeur avec les tailles par défaut
+	 * @param next le dessinateur décoré
+	 */
+	public DetailRenderer(FigureRenderer next)
+	{
+		this(next, DefaultTinySize, DefaultDashedSize);
+	}
+
+	/**
+	 * Constructeur
+	 * @param next le dessinateur décoré
+	 * @param tinySize taille maximale (en pixels du périphérique) des figures
+	 * réduites à un rectangle plein
+	 * @param dashedSize taille maximale (en pixels du périphérique) des
+	 * figures dont le trait pointillé est remplacé par un trait plein
+	 */
+	public DetailRenderer(FigureRenderer next, double tinySize,
+		double dashedSize)
+	{
+		if (next == null)
+		{
+			throw new NullPointerException("DetailRenderer: null renderer");
+		}
+		this.next = next;
+		this.tinySize = tinySize;
+		this.dashedSize = dashedSize;
+	}
+
+	/**
+	 * Dessin d'une figure avec le niveau de détail adapté à sa taille
+	 * @param g2D le contexte graphique dans lequel dessiner
+	 * @param figure la figure à dessiner
+	 */
+	@Override
+	public void draw(Graphics2D g2D, Figure figure)
+	{
+		AffineTransform base = g2D.getTransform();
+		Rectangle2D bounds = figure.getTransformedBounds();
+		if ((base.getType() & ~AffineTransform.TYPE_TRANSLATION) != 0)
+		{
+			bounds = base.createTransformedShape(bounds).getBounds2D();
+		}
+		else
+		{
+			bounds = new Rectangle2D.Double(
+				bounds.getX() + base.getTranslateX(),
+				bounds.getY() + base.getTranslateY(),
+				bounds.getWidth(), bounds.getHeight());
+		}
+		double width = bounds.getWidth();
+		double height = bounds.getHeight();
+		double size = Math.max(width, height);
+
+		if (size <= tinySize)
+		{
+			Paint paint = getPaint(figure, base, width, height);
+			if (paint == null)
+			{
+				return;
+			}
+
+			/*
+			 * Rectangle de pixels entiers recouvrant la figure (un seul pixel
+			 * pour une figure plus petite qu'un pixel) dont l'opacité
+			 * correspond à la proportion de sa surface couverte par la figure
+			 */
+			int x, y, w, h;
+			if (size < 1.0)
+			{
+				x = (int) Math.floor(bounds.getCenterX());
+				y = (int) Math.floor(bounds.getCenterY());
+				w = 1;
+				h = 1;
+			}
+			else
+			{
+				x = (int) Math.floor(bounds.getMinX());
+				y = (int) Math.floor(bounds.getMinY());
+				w = (int) Math.ceil(bounds.getMaxX()) - x;
+				h = (int) Math.ceil(bounds.getMaxY()) - y;
+			}
+			if (paint instanceof Color)
+			{
+				Color color = (Color) paint;
+				int alpha = (int) Math.round(color.getAlpha() * width * height
+					/ (w * h));
+				paint = new Color(color.getRed(), color.getGreen(),
+				                  color.getBlue(),
+				                  Math.max(Math.min(alpha, 255), 1));
+			}
+			g2D.setTransform(new AffineTransform());
+			g2D.setPaint(paint);
+			g2D.fillRect(x, y, w, h);
+			g2D.setTransform(base);
+			return;
+		}
+
+		BasicStroke stroke = figure.getStroke();
+		if ((size <= dashedSize) && (stroke != null)
+			&& (stroke.getDashArray() != null))
+		{
+			figure.draw(g2D, StrokeFactory.getStroke(LineType.SOLID,
+			                                         stroke.getLineWidth()));
+			return;
+		}
+
+		next.draw(g2D, figure);
+	}
+
+	/**
+	 * Obtention de la couleur dominante d'une figure réduite à un rectangle :
+	 * mélange des couleurs de remplissage et de bordure selon la proportion
+	 * de la surface couverte par le trait (lorsqu'il s'agit de couleurs
+	 * unies), ou bien couleur de la partie la plus couvrante sinon.
+	 * @param figure la figure
+	 * @param base la transformation du contexte graphique
+	 * @param width la largeur de la figure dans le repère du périphérique
+	 * @param height la hauteur de la figure dans le repère du périphérique
+	 * @return la couleur dominante de la figure ou null si elle n'est pas
+	 * visible
+	 */
+	private static Paint getPaint(Figure figure, AffineTransform base,
+		double width, double height)
+	{
+		Paint fill = figure.getFillPaint();
+		Paint edge = figure.getEdgePaint();
+		BasicStroke stroke = figure.getStroke();
+		if ((edge == null) || (stroke == null))
+		{
+			return fill;
+		}
+
+		AffineTransform t = new AffineTransform(base);
+		t.concatenate(figure.getTransformation());
+		double strokeWidth =
+			stroke.getLineWidth() * Math.sqrt(Math.abs(t.getDeterminant()));
+		double area = width * height;
+		double edgeRatio = (area > 0.0 ? Math.min(1.0, strokeWidth
+			* (width + height) * 2.0 / area) : 1.0);
+
+		if (fill == null)
+		{
+			if (edge instanceof Color)
+			{
+				Color e = (Color) edge;
+				return new Color(e.getRed(), e.getGreen(), e.getBlue(),
+				                 (int) Math.round(e.getAlpha() * edgeRatio));
+			}
+			return edge;
+		}
+
+		if ((fill instanceof Color) && (edge instanceof Color))
+		{
+			Color f = (Color) fill;
+			Color e = (Color) edge;
+			double r = 1.0 - edgeRatio;
+			return new Color(
+				(int) Math.round((e.getRed() * edgeRatio) + (f.getRed() * r)),
+				(int) Math.round((e.getGreen() * edgeRatio) + (f.getGreen() * r)),
+				(int) Math.round((e.getBlue() * edgeRatio) + (f.getBlue() * r)),
+				(int) Math.round((e.getAlpha() * edgeRatio) + (f.getAlpha() * r)));
+		}
+
+		return (edgeRatio >= 0.5 ? edge : fill);
+	}
+}
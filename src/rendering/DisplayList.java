@@ -0,0 +1,149 @@
+package rendering;
+
+import java.awt.BasicStroke;
+import java.awt.Graphics2D;
+import java.awt.Paint;
+import java.awt.Polygon;
+import java.awt.Shape;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Path2D;
+import java.awt.geom.RectangularShape;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import figures.Figure;
+
+/**
+ * Liste d'affichage immuable : copie des éléments nécessaires au dessin des
+ * figures d'un dessin (formes, transformations et références vers les
+ * couleurs et traits issus des flyweights) dans l'ordre de dessin.
+ * Une liste d'affichage ne dépend plus des figures dont elle est issue et
+ * peut donc être dessinée par un autre thread pendant que le dessin est
+ * modifié par l'EDT. Les éléments sont indexés par l'ordre de dessin des
+ * figures et valent null pour les figures rejetées par les filtres du
+ * dessin.
+ *
+ * @author davidroussel
+ * @see DisplayListCompiler
+ */
+public class DisplayList
+{
+	/**
+	 * Élément immuable de la liste d'affichage correspondant à une figure
+	 */
+	public static final class Item
+	{
+		/**
+		 * Copie de la forme de la figure
+		 */
+		private final Shape shape;
+
+		/**
+		 * Copie de la transformation de la figure
+		 */
+		private final AffineTransform transform;
+
+		/**
+		 * Couleurs de remplissage et de bordure de la figure (flyweights
+		 * immuables)
+		 */
+		private final Paint fill, edge;
+
+		/**
+		 * Trait de la figure (flyweight immuable)
+		 */
+		private final BasicStroke stroke;
+
+		/**
+		 * Constructeur d'un élément à partir de l'état courant d'une figure
+		 * @param figure la figure à copier
+		 */
+		Item(Figure figure)
+		{
+			shape = copy(figure.getShape());
+			transform = new AffineTransform(figure.getTransformation());
+			fill = figure.getFillPaint();
+			edge = figure.getEdgePaint();
+			stroke = figure.getStroke();
+		}
+
+		/**
+		 * Dessin de l'élément (comme {@link Figure#draw(Graphics2D)})
+		 * @param g2D le contexte graphique dans lequel dessiner
+		 */
+		public void draw(Graphics2D g2D)
+		{
+			AffineTransform base = g2D.getTransform();
+			g2D.transform(transform);
+			if (fill != null)
+			{
+				g2D.setPaint(fill);
+				g2D.fill(shape);
+			}
+			if ((edge != null) && (stroke != null))
+			{
+				g2D.setStroke(stroke);
+				g2D.setPaint(edge);
+				g2D.draw(shape);
+			}
+			g2D.setTransform(base);
+		}
+
+		/**
+		 * Copie d'une forme mutable
+		 * @param shape la forme à copier
+		 * @return une copie indépendante de la forme
+		 */
+		private static Shape copy(Shape shape)
+		{
+			if (shape instanceof RectangularShape)
+			{
+				return (Shape) ((RectangularShape) shape).clone();
+			}
+			if (shape instanceof Polygon)
+			{
+				Polygon p = (Polygon) shape;
+				return new Polygon(Arrays.copyOf(p.xpoints, p.npoints),
+				                   Arrays.copyOf(p.ypoints, p.npoints),
+				                   p.npoints);
+			}
+			return new Path2D.Double(shape);
+		}
+	}
+
+	/**
+	 * Les éléments dans l'ordre de dessin (null pour les figures filtrées)
+	 */
+	private final List<Item> items;
+
+	/**
+	 * Constructeur
+	 * @param items les éléments dans l'ordre de dessin (non copiés, ne doivent
+	 * plus être modifiés)
+	 */
+	DisplayList(List<Item> items)
+	{
+		this.items = Collections.unmodifiableList(items);
+	}
+
+	/**
+	 * Accesseur des éléments
+	 * @return la liste (non modifiable) des éléments dans l'ordre de dessin,
+	 * contenant null pour les figures rejetées par les filtres
+	 */
+	public List<Item> getItems()
+	{
+		return items;
+	}
+
+	/**
+	 * Nombre d'éléments
+	 * @return le nombre d'éléments de la liste d'affichage (figures filtrées
+	 * comprises)
+	 */
+	public int size()
+	{
+		return items.size();
+	}
+}
@@ -0,0 +1,136 @@
+package rendering;
+
+import figures.Drawing;
+import figures.DrawingChange;
+import figures.Figure;
+import utils.PersistentVector;
+
+/**
+ * Compilateur de {@link DisplayList} à partir d'un {@link Drawing}.
+ * Les éléments sont rangés dans un {@link PersistentVector} selon l'ordre de
+ * dessin des figures ({@link Drawing#getOrder(Figure)}), avec null pour les
+ * figures rejetées par les filtres du dessin. Lors d'une modification locale
+ * ({@link #update(Drawing, DrawingChange)}) seuls les éléments des figures
+ * modifiées, ajoutées ou retirées sont recompilés, les autres étant partagés
+ * avec la liste précédente : une liste publiée reste donc inchangée pendant
+ * qu'elle est dessinée par un autre thread. Doit être utilisé par le thread
+ * qui modifie le dessin (l'EDT).
+ *
+ * @author davidroussel
+ */
+public class DisplayListCompiler
+{
+	/**
+	 * Le dessin dont sont issus les éléments (ou null)
+	 */
+	private Drawing drawing;
+
+	/**
+	 * Les éléments de la dernière liste compilée dans l'ordre de dessin (ou
+	 * null si aucune liste n'a encore été compilée)
+	 */
+	private PersistentVector<DisplayList.Item> items;
+
+	/**
+	 * Constructeur
+	 */
+	public DisplayListCompiler()
+	{
+		drawing = null;
+		items = null;
+	}
+
+	/**
+	 * Obtention de la liste d'affichage des figures (filtrées) d'un dessin :
+	 * la dernière liste compilée ou bien une nouvelle liste si le dessin a
+	 * changé
+	 * @param drawing le dessin
+	 * @return la liste d'affichage des figures du dessin dans l'ordre de
+	 * dessin
+	 */
+	public DisplayList compile(Drawing drawing)
+	{
+		if ((items == null) || (drawing != this.drawing))
+		{
+			rebuild(drawing);
+		}
+		return new DisplayList(items);
+	}
+
+	/**
+	 * Mise à jour des éléments suite à une modification du dessin : seuls
+	 * les éléments des figures de la modification sont recompilés, les
+	 * figures retirées (toujours les dernières) étant retirées de la fin de
+	 * la liste et les figures ajoutées (toujours à la fin) y étant ajoutées.
+	 * @param drawing le dessin modifié
+	 * @param change la modification ou null si elle est inconnue (auquel cas
+	 * la liste est entièrement recompilée, comme pour une modification
+	 * globale)
+	 */
+	public void update(Drawing drawing, DrawingChange change)
+	{
+		if ((items == null) || (drawing != this.drawing) || (change == null)
+			|| change.isGlobal())
+		{
+			rebuild(drawing);
+			return;
+		}
+
+		int count = drawing.getFigureCount();
+		while (items.size() > count)
+		{
+			items = items.dropLast();
+		}
+		int size = items.size();
+		for (Figure f : change.getFigures())
+		{
+			int order = drawing.getOrder(f);
+			if ((order >= 0) && (order < size))
+			{
+				items = items.update(order, compile(drawing, f));
+			}
+		}
+		for (int order = size; order < count; order++)
+		{
+			items = items.append(compile(drawing, drawing.getFigure(order)));
+		}
+	}
+
+	/**
+	 * Oubli des éléments mémorisés (changement de dessin)
+	 */
+	public void clear()
+	{
+		drawing = null;
+		items = null;
+	}
+
+	/**
+	 * Compilation de l'ensemble des figures d'un dessin
+	 * @param drawing le dessin
+	 */
+	private void rebuild(Drawing drawing)
+	{
+		PersistentVector<DisplayList.Item> compiled = PersistentVector.empty();
+		final int count = drawing.getFigureCount();
+		for (int order = 0; order < count; order++)
+		{
+			compiled = compiled.append(compile(drawing,
+			                                   drawing.getFigure(order)));
+		}
+		this.drawing = drawing;
+		items = compiled;
+	}
+
+	/**
+	 * Compilation d'une figure
+	 * @param drawing le dessin contenant la figure
+	 * @param figure la figure
+	 * @return l'élément de la figure ou null si elle est rejetée par les
+	 * filtres du dessin
+	 */
+	private static DisplayList.Item compile(Drawing drawing, Figure figure)
+	{
+		return (drawing.accept(figure) ? new DisplayList.Item(figure) : null);
+	}
+}
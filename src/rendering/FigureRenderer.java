@@ -0,0 +1,29 @@
+package rendering;
+
+import java.awt.Graphics2D;
+
+import figures.Figure;
+
+/**
+ * Stratégie de dessin d'une figure dans un contexte graphique. Le dessin par
+ * défaut est celui de la figure elle même ({@link #Default}) mais il peut être
+ * remplacé par des variantes utilisant des caches ou des simplifications.
+ *
+ * @author davidroussel
+ */
+@FunctionalInterface
+public interface FigureRenderer
+{
+	/**
+	 * Le dessin par défaut : {@link Figure#draw(Graphics2D)}
+	 */
+	public static final FigureRenderer Default = (Graphics2D g2D,
+		Figure f) -> f.draw(g2D);
+
+	/**
+	 * Dessin d'une figure
+	 * @param g2D le contexte graphique dans lequel dessiner
+	 * @param figure la figure à dessiner
+	 */
+	public void draw(Graphics2D g2D, Figure figure);
+}
@@ -0,0 +1,228 @@
+package rendering;
+
+import java.awt.AlphaComposite;
+import java.awt.Color;
+import java.awt.Composite;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.util.List;
+
+import figures.Drawing;
+import figures.DrawingChange;
+import figures.Figure;
+
+/**
+ * Cache des figures figées autour de la figure en cours d'édition
+ * ({@link Drawing#getActiveFigure()}).
+ * Toutes les figures situées en dessous de la figure active sont dessinées une
+ * fois pour toutes (avec le fond) dans une première image, et celles situées
+ * au dessus dans une seconde image transparente. Tant que seule la figure
+ * active est modifiée, chaque rafraichissement se résume à copier la première
+ * image, dessiner la figure active puis copier la seconde image.
+ * Le cache est invalidé par toute autre modification du dessin
+ * ({@link #update(DrawingChange)}), par le changement de figure active, de
+ * taille ou de caractéristiques de rendu. Les figures sont comparées par
+ * {@link Object#equals(Object)} : deux vues d'une même figure du stockage
+ * compact du dessin ({@link Drawing#getStore()}) désignent la même figure.
+ *
+ * @author davidroussel
+ */
+public class LayerCache
+{
+	/**
+	 * Image contenant le fond et les figures situées en dessous de la figure
+	 * active
+	 */
+	private BufferedImage below;
+
+	/**
+	 * Image (transparente) contenant les figures situées au dessus de la
+	 * figure active ou null s'il n'y en a pas
+	 */
+	private BufferedImage above;
+
+	/**
+	 * La figure active autour de laquelle les images ont été construites
+	 */
+	private Figure layerFigure;
+
+	/**
+	 * Indique si la figure active fait partie des figures (filtrées) à
+	 * dessiner
+	 */
+	private boolean layerFigureVisible;
+
+	/**
+	 * Indique si les images correspondent à l'état courant du dessin
+	 */
+	private boolean valid;
+
+	/**
+	 * Les caractéristiques de rendu avec lesquelles les images ont été
+	 * construites
+	 */
+	private RenderingHints hints;
+
+	/**
+	 * Constructeur d'un cache vide
+	 */
+	public LayerCache()
+	{
+		below = null;
+		above = null;
+		layerFigure = null;
+		layerFigureVisible = false;
+		valid = false;
+		hints = null;
+	}
+
+	/**
+	 * Invalidation du cache
+	 */
+	public void invalidate()
+	{
+		valid = false;
+	}
+
+	/**
+	 * Prise en compte d'une modification du dessin : le cache n'est conservé
+	 * que si la modification est locale et ne concerne que la figure active
+	 * @param change la modification du dessin
+	 */
+	public void update(DrawingChange change)
+	{
+		if ((change == null) || change.isGlobal())
+		{
+			valid = false;
+			return;
+		}
+
+		for (Figure f : change.getFigures())
+		{
+			if (!f.equals(layerFigure))
+			{
+				valid = false;
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Dessin du dessin à l'aide du cache (reconstruit si nécessaire)
+	 * @param g2D le contexte graphique dans lequel dessiner
+	 * @param drawing le dessin
+	 * @param active la figure active (non null)
+	 * @param width la largeur de la zone de dessin
+	 * @param height la hauteur de la zone de dessin
+	 * @param background la couleur de fond de la zone de dessin
+	 * @param renderer le moyen de dessiner chacune des figures
+	 */
+	public void paint(Graphics2D g2D, Drawing drawing, Figure active,
+		int width, int height, Color background, FigureRenderer renderer)
+	{
+		/*
+		 * Les images sont construites à la résolution du périphérique (écrans
+		 * HiDPI) puis ramenées à la taille de la zone de dessin
+		 */
+		AffineTransform t = g2D.getTransform();
+		double sx = Math.max(Math.abs(t.getScaleX()), 1.0);
+		double sy = Math.max(Math.abs(t.getScaleY()), 1.0);
+		int w = (int) Math.ceil(width * sx);
+		int h = (int) Math.ceil(height * sy);
+
+		RenderingHints current = g2D.getRenderingHints();
+		if (!valid || !active.equals(layerFigure) || (below == null)
+			|| (below.getWidth() != w) || (below.getHeight() != h)
+			|| !current.equals(hints))
+		{
+			build(g2D, drawing, active, width, height, w, h, sx, sy,
+			      background, renderer);
+		}
+
+		AffineTransform toPanel = AffineTransform.getScaleInstance(1.0 / sx,
+		                                                           1.0 / sy);
+		g2D.drawImage(below, toPanel, null);
+		if (layerFigureVisible)
+		{
+			renderer.draw(g2D, active);
+		}
+		if (above != null)
+		{
+			g2D.drawImage(above, toPanel, null);
+		}
+	}
+
+	/**
+	 * Reconstruction des images autour de la figure active
+	 */
+	private void build(Graphics2D g2D, Drawing drawing, Figure active,
+		int width, int height, int w, int h, double sx, double sy,
+		Color background, FigureRenderer renderer)
+	{
+		List<Figure> figures =
+			drawing.getFiguresIn(new Rectangle(0, 0, width, height));
+		int split = figures.indexOf(active);
+		layerFigure = active;
+		layerFigureVisible = split >= 0;
+		if (split < 0)
+		{
+			split = figures.size();
+		}
+
+		if ((below == null) || (below.getWidth() != w)
+			|| (below.getHeight() != h))
+		{
+			below = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+			above = null;
+		}
+		Graphics2D lg = createGraphics(g2D, below, sx, sy);
+		lg.setColor(background);
+		lg.fillRect(0, 0, width, height);
+		for (Figure f : figures.subList(0, split))
+		{
+			renderer.draw(lg, f);
+		}
+		lg.dispose();
+
+		if (split < figures.size() - 1)
+		{
+			if (above == null)
+			{
+				above = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+			}
+			lg = createGraphics(g2D, above, sx, sy);
+			Composite composite = lg.getComposite();
+			lg.setComposite(AlphaComposite.Clear);
+			lg.fillRect(0, 0, width, height);
+			lg.setComposite(composite);
+			for (Figure f : figures.subList(split + 1, figures.size()))
+			{
+				renderer.draw(lg, f);
+			}
+			lg.dispose();
+		}
+		else
+		{
+			above = null;
+		}
+
+		hints = g2D.getRenderingHints();
+		valid = true;
+	}
+
+	/**
+	 * Création d'un contexte graphique dans une image de cache avec les mêmes
+	 * caractéristiques de rendu que le contexte graphique de la zone de dessin
+	 */
+	private static Graphics2D createGraphics(Graphics2D g2D,
+		BufferedImage image, double sx, double sy)
+	{
+		Graphics2D lg = image.createGraphics();
+		lg.setRenderingHints(g2D.getRenderingHints());
+		lg.scale(sx, sy);
+		return lg;
+	}
+}
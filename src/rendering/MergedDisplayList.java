@@ -0,0 +1,450 @@
+package rendering;
+
+import java.awt.BasicStroke;
+import java.awt.Graphics2D;
+import java.awt.Paint;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Path2D;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+
+import figures.Drawing;
+import figures.DrawingChange;
+import figures.Figure;
+
+/**
+ * Liste d'affichage compilée dans laquelle les figures consécutives (dans
+ * l'ordre z) de même style sont fusionnées en un seul {@link Path2D} :
+ * chaque lot est alors dessiné par un seul remplissage et un seul tracé
+ * quel que soit le nombre de figures qu'il contient.
+ * Une figure ne peut rejoindre le lot précédent que si elle a le même style
+ * (remplissage, bordure et trait issus des flyweights) et la même règle de
+ * remplissage que ses figures, que sa transformation est une simple
+ * translation (le trait n'est ainsi pas déformé) et que son rectangle
+ * englobant n'intersecte celui d'aucune figure du lot : le résultat est donc
+ * identique à celui d'un dessin figure par figure.
+ * Chaque lot couvre une plage de l'ordre de dessin
+ * ({@link Drawing#getOrder(Figure)}) allant de son début à celui du lot
+ * suivant. Les lots sont conservés d'un dessin à l'autre et, lors d'une
+ * modification locale du dessin ({@link DrawingChange}), seules les plages
+ * contenant les figures modifiées (retrouvées par leur rang) sont
+ * recompilées à partir des figures du dessin
+ * ({@link Drawing#getFigure(int)}) : la liste ne conserve aucune référence
+ * vers les figures fusionnées.
+ * Doit être utilisée par le thread qui modifie le dessin (l'EDT).
+ *
+ * @author davidroussel
+ */
+public class MergedDisplayList
+{
+	/**
+	 * Nombre maximum de figures par lot (afin que les lots restent
+	 * suffisamment localisés pour ne dessiner que ceux qui intersectent la
+	 * zone à redessiner)
+	 */
+	public final static int MaxBatchSize = 256;
+
+	/**
+	 * Marge ajoutée autour des rectangles englobants des figures afin que
+	 * deux figures partageant un pixel (antialiasing) ne soient pas
+	 * fusionnées
+	 */
+	private final static double margin = 1.0;
+
+	/**
+	 * Lot de figures fusionnées
+	 */
+	private static class Batch
+	{
+		/**
+		 * Style commun des figures du lot
+		 */
+		final Paint fill, edge;
+		final BasicStroke stroke;
+
+		/**
+		 * Règle de remplissage commune des figures du lot
+		 */
+		final int windingRule;
+
+		/**
+		 * Indique si les figures du lot peuvent être fusionnées (sinon le lot
+		 * ne contient qu'une seule figure dessinée normalement)
+		 */
+		final boolean mergeable;
+
+		/**
+		 * Rang dans l'ordre de dessin du début de la plage couverte par le
+		 * lot
+		 */
+		final int start;
+
+		/**
+		 * La figure d'un lot non fusionnable (null pour un lot fusionnable)
+		 */
+		final Figure figure;
+
+		/**
+		 * Nombre de figures du lot
+		 */
+		int size;
+
+		/**
+		 * Rectangles englobants (élargis) des figures du lot pendant sa
+		 * compilation (null une fois le lot terminé)
+		 */
+		List<Rectangle2D> bounds;
+
+		/**
+		 * Union des rectangles englobants des figures du lot
+		 */
+		final Rectangle2D extent;
+
+		/**
+		 * Formes fusionnées des figures (dans le repère du dessin)
+		 */
+		final Path2D path;
+
+		/**
+		 * Constructeur d'un lot à partir de sa première figure
+		 */
+		Batch(int start, Figure figure, Rectangle2D box)
+		{
+			this.start = start;
+			fill = figure.getFillPaint();
+			edge = figure.getEdgePaint();
+			stroke = figure.getStroke();
+			windingRule = windingRule(figure);
+			mergeable = isMergeable(figure);
+			this.figure = (mergeable ? null : figure);
+			size = 0;
+			bounds = new ArrayList<Rectangle2D>();
+			extent = new Rectangle2D.Double();
+			extent.setRect(box);
+			path = (mergeable ? new Path2D.Double(windingRule) : null);
+			add(figure, box);
+		}
+
+		/**
+		 * Teste si une figure peut être fusionnée dans ce lot
+		 */
+		boolean accepts(Figure figure, Rectangle2D box)
+		{
+			if (!mergeable || (size >= MaxBatchSize)
+				|| (figure.getFillPaint() != fill)
+				|| (figure.getEdgePaint() != edge)
+				|| (figure.getStroke() != stroke)
+				|| (windingRule(figure) != windingRule)
+				|| !isMergeable(figure))
+			{
+				return false;
+			}
+			if (extent.intersects(box))
+			{
+				for (Rectangle2D b : bounds)
+				{
+					if (b.intersects(box))
+					{
+						return false;
+					}
+				}
+			}
+			return true;
+		}
+
+		/**
+		 * Ajout d'une figure au lot
+		 */
+		void add(Figure figure, Rectangle2D box)
+		{
+			size++;
+			bounds.add(box);
+			extent.add(box);
+			if (path != null)
+			{
+				path.append(figure.getShape().getPathIterator(
+					figure.getTransformation()), false);
+			}
+		}
+
+		/**
+		 * Fin de la compilation du lot : les rectangles des figures ne sont
+		 * plus nécessaires
+		 */
+		void seal()
+		{
+			bounds = null;
+		}
+
+		/**
+		 * Dessin du lot
+		 */
+		void draw(Graphics2D g2D)
+		{
+			if (path == null)
+			{
+				figure.draw(g2D);
+				return;
+			}
+			if (fill != null)
+			{
+				g2D.setPaint(fill);
+				g2D.fill(path);
+			}
+			if ((edge != null) && (stroke != null))
+			{
+				g2D.setStroke(stroke);
+				g2D.setPaint(edge);
+				g2D.draw(path);
+			}
+		}
+
+		/**
+		 * Règle de remplissage de la forme d'une figure
+		 */
+		static int windingRule(Figure figure)
+		{
+			return figure.getShape().getPathIterator(null).getWindingRule();
+		}
+
+		/**
+		 * Teste si une figure peut être fusionnée avec d'autres : sa
+		 * transformation doit être une simple translation
+		 */
+		static boolean isMergeable(Figure figure)
+		{
+			int type = figure.getTransformation().getType();
+			return (type & ~AffineTransform.TYPE_TRANSLATION) == 0;
+		}
+	}
+
+	/**
+	 * Les lots dans l'ordre de dessin, null si la liste doit être entièrement
+	 * recompilée
+	 */
+	private List<Batch> batches;
+
+	/**
+	 * Nombre de figures du dessin (filtrées comprises) lors de la dernière
+	 * compilation
+	 */
+	private int orderCount;
+
+	/**
+	 * Nombre de figures dessinées par la liste
+	 */
+	private int figureCount;
+
+	/**
+	 * Constructeur d'une liste vide qui sera compilée lors du premier dessin
+	 */
+	public MergedDisplayList()
+	{
+		batches = null;
+		orderCount = 0;
+		figureCount = 0;
+	}
+
+	/**
+	 * Invalidation complète de la liste (changement de dessin)
+	 */
+	public void invalidate()
+	{
+		batches = null;
+	}
+
+	/**
+	 * Nombre de lots
+	 * @return le nombre de lots (et donc d'appels de dessin) de la liste
+	 */
+	public int getBatchCount()
+	{
+		return (batches == null ? 0 : batches.size());
+	}
+
+	/**
+	 * Nombre de figures
+	 * @return le nombre de figures dessinées par la liste
+	 */
+	public int getFigureCount()
+	{
+		return figureCount;
+	}
+
+	/**
+	 * Prise en compte d'une modification du dessin : une modification
+	 * globale invalide toute la liste, une modification locale ne recompile
+	 * que les plages contenant les figures modifiées ainsi que la dernière
+	 * plage lorsque des figures ont été ajoutées ou retirées (toujours à la
+	 * fin du dessin).
+	 * @param drawing le dessin
+	 * @param change la modification du dessin
+	 */
+	public void update(Drawing drawing, DrawingChange change)
+	{
+		if ((batches == null) || (change == null) || change.isGlobal())
+		{
+			batches = null;
+			return;
+		}
+
+		int count = drawing.getFigureCount();
+		if (count < orderCount)
+		{
+			// les lots des figures retirées disparaissent
+			while (!batches.isEmpty()
+				&& (batches.get(batches.size() - 1).start >= count))
+			{
+				figureCount -= batches.remove(batches.size() - 1).size;
+			}
+		}
+
+		// lots (par indice, -1 pour la plage précédant le premier lot) à
+		// recompiler
+		TreeSet<Integer> affected = new TreeSet<Integer>();
+		int known = Math.min(count, orderCount);
+		for (Figure f : change.getFigures())
+		{
+			int order = drawing.getOrder(f);
+			if ((order >= 0) && (order < known))
+			{
+				affected.add(Integer.valueOf(batchAt(order)));
+			}
+		}
+		if (count != orderCount)
+		{
+			affected.add(Integer.valueOf(batches.size() - 1));
+		}
+
+		// du dernier au premier afin que les indices restent valides
+		for (Integer k : affected.descendingSet())
+		{
+			recompile(drawing, k.intValue(), count);
+		}
+		orderCount = count;
+	}
+
+	/**
+	 * Dessin des lots intersectant une zone (la liste est compilée si
+	 * nécessaire)
+	 * @param g2D le contexte graphique dans lequel dessiner
+	 * @param drawing le dessin
+	 * @param area la zone à redessiner
+	 */
+	public void paint(Graphics2D g2D, Drawing drawing, Rectangle2D area)
+	{
+		if (batches == null)
+		{
+			orderCount = drawing.getFigureCount();
+			batches = merge(drawing, 0, orderCount);
+			figureCount = 0;
+			for (Batch b : batches)
+			{
+				figureCount += b.size;
+			}
+		}
+		for (Batch b : batches)
+		{
+			if (b.extent.intersects(area))
+			{
+				b.draw(g2D);
+			}
+		}
+	}
+
+	/**
+	 * Recherche du lot dont la plage contient un rang
+	 * @param order le rang d'une figure dans l'ordre de dessin
+	 * @return l'indice du dernier lot commençant avant (ou à) ce rang ou -1
+	 * si le rang précède le premier lot
+	 */
+	private int batchAt(int order)
+	{
+		int low = 0;
+		int high = batches.size() - 1;
+		while (low <= high)
+		{
+			int mid = (low + high) >>> 1;
+			if (batches.get(mid).start <= order)
+			{
+				low = mid + 1;
+			}
+			else
+			{
+				high = mid - 1;
+			}
+		}
+		return high;
+	}
+
+	/**
+	 * Recompilation de la plage d'un lot, qui est remplacé par les nouveaux
+	 * lots de sa plage
+	 * @param drawing le dessin
+	 * @param k l'indice du lot ou -1 pour la plage précédant le premier lot
+	 * @param count le nombre de figures du dessin
+	 */
+	private void recompile(Drawing drawing, int k, int count)
+	{
+		int from = (k < 0 ? 0 : batches.get(k).start);
+		int to = (k + 1 < batches.size() ? batches.get(k + 1).start : count);
+		List<Batch> compiled = merge(drawing, from, to);
+		if (k >= 0)
+		{
+			figureCount -= batches.remove(k).size;
+		}
+		for (Batch b : compiled)
+		{
+			figureCount += b.size;
+		}
+		batches.addAll(Math.max(k, 0), compiled);
+	}
+
+	/**
+	 * Regroupement d'une plage de figures (filtrées) du dessin en nouveaux
+	 * lots
+	 * @param drawing le dessin
+	 * @param from le rang de la première figure de la plage
+	 * @param to le rang suivant la dernière figure de la plage
+	 * @return les nouveaux lots, le premier commençant au début de la plage
+	 */
+	private static List<Batch> merge(Drawing drawing, int from, int to)
+	{
+		List<Batch> compiled = new ArrayList<Batch>();
+		Batch current = null;
+		for (int order = from; order < to; order++)
+		{
+			Figure f = drawing.getFigure(order);
+			if (!drawing.accept(f) || (f.getShape() == null))
+			{
+				continue;
+			}
+			Rectangle2D box = new Rectangle2D.Double();
+			box.setRect(f.getTransformedBounds());
+			box.setRect(box.getX() - margin, box.getY() - margin,
+			            box.getWidth() + (2 * margin),
+			            box.getHeight() + (2 * margin));
+
+			if ((current != null) && current.accepts(f, box))
+			{
+				current.add(f, box);
+			}
+			else
+			{
+				if (current != null)
+				{
+					current.seal();
+				}
+				current = new Batch(compiled.isEmpty() ? from : order, f, box);
+				compiled.add(current);
+			}
+		}
+		if (current != null)
+		{
+			current.seal();
+		}
+		return compiled;
+	}
+}
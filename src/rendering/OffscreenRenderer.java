@@ -0,0 +1,228 @@
+package rendering;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.NoninvertibleTransformException;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+
+import figures.Drawing;
+
+/**
+ * Dessin d'un {@link Drawing} dans une image hors écran, indépendamment de
+ * tout composant graphique : utilisable en mode headless
+ * (java.awt.headless=true) pour produire des vignettes, des exports ou des
+ * mesures de performances.
+ * Les figures sont obtenues au travers de {@link Drawing#stream()} (et donc
+ * filtrées comme dans la zone de dessin), seules celles dont le rectangle
+ * englobant intersecte l'image étant dessinées par {@link FigureRenderer}
+ * (par défaut {@link figures.Figure#draw(Graphics2D)}).
+ *
+ * @author davidroussel
+ */
+public class OffscreenRenderer
+{
+	/**
+	 * Les caractéristiques de rendu
+	 */
+	private RenderingHints hints;
+
+	/**
+	 * La couleur de fond (ou null pour un fond transparent)
+	 */
+	private Color background;
+
+	/**
+	 * Le moyen de dessiner chacune des figures
+	 */
+	private FigureRenderer renderer;
+
+	/**
+	 * Constructeur d'un dessinateur anti-aliasé sur fond blanc
+	 */
+	public OffscreenRenderer()
+	{
+		this(new RenderingHints(RenderingHints.KEY_ANTIALIASING,
+		                        RenderingHints.VALUE_ANTIALIAS_ON),
+		     Color.WHITE);
+	}
+
+	/**
+	 * Constructeur
+	 * @param hints les caractéristiques de rendu
+	 * @param background la couleur de fond (ou null pour un fond
+	 * transparent)
+	 */
+	public OffscreenRenderer(RenderingHints hints, Color background)
+	{
+		this.hints = hints;
+		this.background = background;
+		renderer = FigureRenderer.Default;
+	}
+
+	/**
+	 * Accesseur des caractéristiques de rendu
+	 * @return les caractéristiques de rendu
+	 */
+	public RenderingHints getHints()
+	{
+		return hints;
+	}
+
+	/**
+	 * Mise en place des caractéristiques de rendu
+	 * @param hints les nouvelles caractéristiques de rendu
+	 */
+	public void setHints(RenderingHints hints)
+	{
+		this.hints = hints;
+	}
+
+	/**
+	 * Accesseur de la couleur de fond
+	 * @return la couleur de fond (ou null pour un fond transparent)
+	 */
+	public Color getBackground()
+	{
+		return background;
+	}
+
+	/**
+	 * Mise en place de la couleur de fond
+	 * @param background la nouvelle couleur de fond (ou null pour un fond
+	 * transparent)
+	 */
+	public void setBackground(Color background)
+	{
+		this.background = background;
+	}
+
+	/**
+	 * Mise en place du moyen de dessiner chacune des figures
+	 * @param renderer le moyen de dessiner chacune des figures (
+	 * {@link FigureRenderer#Default} si null)
+	 */
+	public void setRenderer(FigureRenderer renderer)
+	{
+		this.renderer = (renderer != null ? renderer : FigureRenderer.Default);
+	}
+
+	/**
+	 * Dessin d'un dessin dans une nouvelle image
+	 * @param drawing le dessin
+	 * @param width la largeur de l'image
+	 * @param height la hauteur de l'image
+	 * @param transform la transformation du repère du dessin vers celui de
+	 * l'image (ou null pour l'identité)
+	 * @return une nouvelle image (opaque si une couleur de fond est définie)
+	 * contenant le dessin
+	 */
+	public BufferedImage render(Drawing drawing, int width, int height,
+		AffineTransform transform)
+	{
+		BufferedImage image = new BufferedImage(width, height,
+			background != null ? BufferedImage.TYPE_INT_RGB
+			                   : BufferedImage.TYPE_INT_ARGB);
+		render(drawing, image, transform);
+		return image;
+	}
+
+	/**
+	 * Dessin d'un dessin dans une image existante (réutilisée d'un dessin à
+	 * l'autre par exemple)
+	 * @param drawing le dessin
+	 * @param image l'image dans laquelle dessiner (entièrement redessinée)
+	 * @param transform la transformation du repère du dessin vers celui de
+	 * l'image (ou null pour l'identité)
+	 */
+	public void render(Drawing drawing, BufferedImage image,
+		AffineTransform transform)
+	{
+		Graphics2D g2D = image.createGraphics();
+		g2D.setRenderingHints(hints);
+		if (background != null)
+		{
+			g2D.setColor(background);
+			g2D.fillRect(0, 0, image.getWidth(), image.getHeight());
+		}
+		if (transform != null)
+		{
+			g2D.transform(transform);
+		}
+		render(drawing, g2D, new Rectangle2D.Double(0, 0, image.getWidth(),
+		                                           image.getHeight()));
+		g2D.dispose();
+	}
+
+	/**
+	 * Dessin des figures d'un dessin intersectant une zone dans un contexte
+	 * graphique (dont le fond a déjà été effacé)
+	 * @param drawing le dessin
+	 * @param g2D le contexte graphique déjà transformé dans le repère du
+	 * dessin
+	 * @param area la zone à dessiner (en pixels du périphérique, c'est à dire
+	 * de l'image)
+	 */
+	public void render(Drawing drawing, final Graphics2D g2D,
+		Rectangle2D area)
+	{
+		final Rectangle2D visible = toDrawing(g2D.getTransform(), area);
+		drawing.stream()
+		       .filter(f -> (visible == null)
+		                    || f.getTransformedBounds().intersects(visible))
+		       .forEachOrdered(f -> renderer.draw(g2D, f));
+	}
+
+	/**
+	 * Transformation pour faire tenir l'ensemble d'un dessin (centré et en
+	 * conservant ses proportions) dans une image, pour les vignettes par
+	 * exemple
+	 * @param drawing le dessin
+	 * @param width la largeur de l'image
+	 * @param height la hauteur de l'image
+	 * @return la transformation du repère du dessin vers celui de l'image
+	 * (l'identité si le dessin est vide)
+	 */
+	public static AffineTransform fit(Drawing drawing, int width, int height)
+	{
+		Rectangle2D extent = drawing.getExtent();
+		if ((extent == null) || extent.isEmpty())
+		{
+			return new AffineTransform();
+		}
+		double scale = Math.min(width / extent.getWidth(),
+		                        height / extent.getHeight());
+		AffineTransform t = AffineTransform.getTranslateInstance(width / 2.0,
+		                                                         height / 2.0);
+		t.scale(scale, scale);
+		t.translate(-extent.getCenterX(), -extent.getCenterY());
+		return t;
+	}
+
+	/**
+	 * Zone du dessin visible au travers d'une transformation
+	 * @param t la transformation du repère du dessin vers l'image
+	 * @param area la zone de l'image
+	 * @return la zone correspondante du dessin (élargie d'un pixel pour
+	 * l'anti-aliasing) ou null si la transformation n'est pas inversible
+	 */
+	private static Rectangle2D toDrawing(AffineTransform t, Rectangle2D area)
+	{
+		Rectangle2D grown = new Rectangle2D.Double(area.getX() - 1.0,
+		                                           area.getY() - 1.0,
+		                                           area.getWidth() + 2.0,
+		                                           area.getHeight() + 2.0);
+		try
+		{
+			return t.createInverse().createTransformedShape(grown)
+			        .getBounds2D();
+		}
+		catch (NoninvertibleTransformException e)
+		{
+			System.err.println("OffscreenRenderer: non invertible transform");
+			return null;
+		}
+	}
+}
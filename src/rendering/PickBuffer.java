@@ -0,0 +1,171 @@
+package rendering;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.Shape;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+
+import figures.Drawing;
+import figures.Figure;
+
+/**
+ * Tampon d'identifiants permettant de retrouver la figure située sous un
+ * pixel par une simple lecture dans une image.
+ * Chaque figure visible du dessin est dessinée (sans antialiasing) dans une
+ * image hors écran avec une couleur correspondant à son identifiant (son rang
+ * dans l'ordre de dessin {@link Drawing#getOrder(Figure)} + 1, 0
+ * correspondant au fond). Seules les figures de la zone du tampon sont
+ * dessinées ({@link Drawing#getFiguresIn(Rectangle2D)}) et les figures
+ * trouvées sont relues auprès du dessin ({@link Drawing#getFigure(int)}) :
+ * le tampon ne conserve aucune liste des figures. L'image n'est
+ * reconstruite que lorsque le dessin a été modifié ({@link #invalidate()}) ou
+ * que la taille demandée change.
+ *
+ * @author davidroussel
+ */
+public class PickBuffer
+{
+	/**
+	 * Nombre maximum de figures identifiables (couleurs sur 24 bits, 0 étant
+	 * réservé au fond)
+	 */
+	public static final int MaxFigures = 0xFFFFFF;
+
+	/**
+	 * L'image contenant les identifiants des figures
+	 */
+	private BufferedImage image;
+
+	/**
+	 * Indique si l'image correspond à l'état courant du dessin
+	 */
+	private boolean valid;
+
+	/**
+	 * Constructeur d'un tampon d'identifiants vide
+	 */
+	public PickBuffer()
+	{
+		image = null;
+		valid = false;
+	}
+
+	/**
+	 * Invalidation du tampon (à appeler lorsque le dessin a changé). Le
+	 * tampon sera reconstruit lors de la prochaine recherche.
+	 */
+	public void invalidate()
+	{
+		valid = false;
+	}
+
+	/**
+	 * Obtention de la figure située sous un point
+	 * @param drawing le dessin à partir duquel (re)construire le tampon si
+	 * nécessaire
+	 * @param width la largeur de la zone de dessin
+	 * @param height la hauteur de la zone de dessin
+	 * @param p le point recherché
+	 * @return la figure la plus au dessus dessinée sous le point p ou null
+	 * s'il n'y en a pas
+	 */
+	public Figure getFigureAt(Drawing drawing, int width, int height,
+		Point2D p)
+	{
+		validate(drawing, width, height);
+
+		int x = (int) Math.floor(p.getX());
+		int y = (int) Math.floor(p.getY());
+		if ((image == null) || (x < 0) || (y < 0) || (x >= image.getWidth())
+			|| (y >= image.getHeight()))
+		{
+			return null;
+		}
+
+		int id = image.getRGB(x, y) & 0xFFFFFF;
+		if ((drawing != null) && (id > 0) && (id <= drawing.getFigureCount()))
+		{
+			return drawing.getFigure(id - 1);
+		}
+
+		return null;
+	}
+
+	/**
+	 * Reconstruction du tampon si celui ci n'est plus valide
+	 * @param drawing le dessin dont on dessine les figures
+	 * @param width la largeur du tampon
+	 * @param height la hauteur du tampon
+	 */
+	private void validate(Drawing drawing, int width, int height)
+	{
+		if ((image == null) || (image.getWidth() != width)
+			|| (image.getHeight() != height))
+		{
+			image = ((width > 0) && (height > 0)
+				? new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB)
+				: null);
+			valid = false;
+		}
+
+		if (valid)
+		{
+			return;
+		}
+
+		if ((image != null) && (drawing != null))
+		{
+			Graphics2D g2D = image.createGraphics();
+			g2D.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+			                     RenderingHints.VALUE_ANTIALIAS_OFF);
+			g2D.setRenderingHint(RenderingHints.KEY_RENDERING,
+			                     RenderingHints.VALUE_RENDER_SPEED);
+			g2D.setColor(Color.black);
+			g2D.fillRect(0, 0, width, height);
+
+			AffineTransform base = g2D.getTransform();
+			for (Figure f : drawing.getFiguresIn(
+				new Rectangle2D.Double(0, 0, width, height)))
+			{
+				int id = drawing.getOrder(f) + 1;
+				if ((id > 0) && (id <= MaxFigures))
+				{
+					drawId(g2D, base, f, id);
+				}
+			}
+			g2D.dispose();
+		}
+
+		valid = true;
+	}
+
+	/**
+	 * Dessin d'une figure avec la couleur de son identifiant : intérieur de
+	 * la forme (comme pour {@link Figure#contains(Point2D)}) puis trait s'il
+	 * y en a un
+	 * @param g2D le contexte graphique du tampon
+	 * @param base la transformation de base du contexte graphique
+	 * @param f la figure à dessiner
+	 * @param id l'identifiant de la figure
+	 */
+	private static void drawId(Graphics2D g2D, AffineTransform base, Figure f,
+		int id)
+	{
+		Shape shape = f.getShape();
+		BasicStroke stroke = f.getStroke();
+		g2D.setTransform(base);
+		g2D.transform(f.getTransformation());
+		g2D.setColor(new Color(id));
+		g2D.fill(shape);
+		if ((f.getEdgePaint() != null) && (stroke != null))
+		{
+			g2D.setStroke(stroke);
+			g2D.draw(shape);
+		}
+	}
+}
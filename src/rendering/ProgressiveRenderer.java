@@ -0,0 +1,156 @@
+package rendering;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.util.List;
+
+import figures.Drawing;
+import figures.Figure;
+
+/**
+ * Dessin progressif d'un dessin dans une image persistante.
+ * Chaque appel à {@link #paint} poursuit le dessin des figures (dans l'ordre
+ * z) là où le précédent s'était arrêté, pendant au plus une durée donnée, puis
+ * recopie l'image (partiellement) dessinée. Le dessin de très grands dessins
+ * est ainsi réparti sur plusieurs rafraichissements sans bloquer l'EDT.
+ * Toute modification du dessin doit être signalée par {@link #restart()} afin
+ * de reprendre le dessin depuis le début.
+ *
+ * @author davidroussel
+ */
+public class ProgressiveRenderer
+{
+	/**
+	 * Durée par défaut allouée à chaque rafraichissement (en millisecondes)
+	 */
+	public final static long DefaultBudget = 20;
+
+	/**
+	 * Nombre de figures dessinées entre deux consultations de l'horloge
+	 */
+	private final static int checkInterval = 32;
+
+	/**
+	 * L'image dans laquelle sont dessinées les figures
+	 */
+	private BufferedImage buffer;
+
+	/**
+	 * Les figures à dessiner dans l'ordre de dessin
+	 */
+	private List<Figure> figures;
+
+	/**
+	 * Indice de la prochaine figure à dessiner dans {@link #figures}
+	 */
+	private int next;
+
+	/**
+	 * Durée allouée à chaque rafraichissement (en nanosecondes)
+	 */
+	private long budget;
+
+	/**
+	 * Constructeur d'un dessinateur progressif avec la durée par défaut
+	 */
+	public ProgressiveRenderer()
+	{
+		this(DefaultBudget);
+	}
+
+	/**
+	 * Constructeur d'un dessinateur progressif
+	 * @param budget la durée allouée à chaque rafraichissement (en
+	 * millisecondes)
+	 */
+	public ProgressiveRenderer(long budget)
+	{
+		buffer = null;
+		figures = null;
+		next = 0;
+		this.budget = budget * 1000000L;
+	}
+
+	/**
+	 * Reprise du dessin depuis le début lors du prochain rafraichissement
+	 */
+	public void restart()
+	{
+		figures = null;
+	}
+
+	/**
+	 * Teste si toutes les figures ont été dessinées
+	 * @return true si l'image est complète
+	 */
+	public boolean isComplete()
+	{
+		return (figures != null) && (next >= figures.size());
+	}
+
+	/**
+	 * Poursuite du dessin puis recopie de l'image
+	 * @param g2D le contexte graphique dans lequel dessiner
+	 * @param drawing le dessin
+	 * @param width la largeur de la zone de dessin
+	 * @param height la hauteur de la zone de dessin
+	 * @param background la couleur de fond de la zone de dessin
+	 * @param renderer le moyen de dessiner chacune des figures
+	 * @return true si l'image est complète, false s'il reste des figures à
+	 * dessiner lors d'un prochain rafraichissement
+	 */
+	public boolean paint(Graphics2D g2D, Drawing drawing, int width,
+		int height, Color background, FigureRenderer renderer)
+	{
+		long start = System.nanoTime();
+
+		/*
+		 * L'image est construite à la résolution du périphérique (écrans
+		 * HiDPI) puis ramenée à la taille de la zone de dessin
+		 */
+		AffineTransform t = g2D.getTransform();
+		double sx = Math.max(Math.abs(t.getScaleX()), 1.0);
+		double sy = Math.max(Math.abs(t.getScaleY()), 1.0);
+		int w = (int) Math.ceil(width * sx);
+		int h = (int) Math.ceil(height * sy);
+
+		if ((buffer == null) || (buffer.getWidth() != w)
+			|| (buffer.getHeight() != h))
+		{
+			buffer = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+			figures = null;
+		}
+
+		Graphics2D bg = buffer.createGraphics();
+		bg.setRenderingHints(g2D.getRenderingHints());
+		bg.scale(sx, sy);
+		if (figures == null)
+		{
+			figures = drawing.getFiguresIn(new Rectangle(0, 0, width, height));
+			next = 0;
+			bg.setColor(background);
+			bg.fillRect(0, 0, width, height);
+		}
+
+		final int size = figures.size();
+		while (next < size)
+		{
+			renderer.draw(bg, figures.get(next++));
+			if (((next % checkInterval) == 0)
+				&& ((System.nanoTime() - start) >= budget))
+			{
+				break;
+			}
+		}
+		bg.dispose();
+
+		g2D.drawImage(buffer,
+		              AffineTransform.getScaleInstance(1.0 / sx, 1.0 / sy),
+		              null);
+
+		return next >= size;
+	}
+}
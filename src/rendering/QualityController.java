@@ -0,0 +1,169 @@
+package rendering;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+
+import javax.swing.Timer;
+
+/**
+ * Contrôleur de la qualité de rendu en fonction de la durée des
+ * rafraichissements.
+ * Pendant une interaction (création ou déplacement d'une figure) ou lorsqu'un
+ * rafraichissement a dépassé la durée qui lui est allouée, les
+ * rafraichissements suivants sont effectués sans antialiasing et en
+ * privilégiant la vitesse. Lorsqu'aucun rafraichissement dégradé n'a eu lieu
+ * pendant un certain délai, un dernier rafraichissement est demandé en
+ * qualité maximale.
+ * Chaque rafraichissement doit être encadré par {@link #begin(Graphics2D,
+ * boolean)} et {@link #end()}.
+ *
+ * @author davidroussel
+ */
+public class QualityController
+{
+	/**
+	 * Durée allouée par défaut à un rafraichissement (en millisecondes)
+	 */
+	public final static int DefaultBudget = 16;
+
+	/**
+	 * Délai par défaut après le dernier rafraichissement dégradé avant de
+	 * redessiner en qualité maximale (en millisecondes)
+	 */
+	public final static int DefaultIdleDelay = 250;
+
+	/**
+	 * Durée allouée à un rafraichissement (en nanosecondes)
+	 */
+	private final long budget;
+
+	/**
+	 * Timer déclenchant le rafraichissement en qualité maximale
+	 */
+	private final Timer idleTimer;
+
+	/**
+	 * Indique si le dernier rafraichissement en qualité maximale a dépassé
+	 * la durée allouée
+	 */
+	private boolean overBudget;
+
+	/**
+	 * Indique si le prochain rafraichissement doit être effectué en qualité
+	 * maximale quoi qu'il arrive (après le délai d'inactivité)
+	 */
+	private boolean forceQuality;
+
+	/**
+	 * Indique si le rafraichissement en cours est dégradé
+	 */
+	private boolean degraded;
+
+	/**
+	 * Date de début du rafraichissement en cours (en nanosecondes)
+	 */
+	private long start;
+
+	/**
+	 * Constructeur d'un contrôleur avec la durée et le délai par défaut
+	 * @param repaint la requête de rafraichissement en qualité maximale
+	 * après le délai d'inactivité
+	 */
+	public QualityController(Runnable repaint)
+	{
+		this(repaint, DefaultBudget, DefaultIdleDelay);
+	}
+
+	/**
+	 * Constructeur d'un contrôleur
+	 * @param repaint la requête de rafraichissement en qualité maximale
+	 * après le délai d'inactivité
+	 * @param budget la durée allouée à un rafraichissement (en
+	 * millisecondes)
+	 * @param idleDelay le délai après le dernier rafraichissement dégradé
+	 * avant de redessiner en qualité maximale (en millisecondes)
+	 */
+	public QualityController(final Runnable repaint, int budget,
+		int idleDelay)
+	{
+		this.budget = budget * 1000000L;
+		overBudget = false;
+		forceQuality = false;
+		degraded = false;
+		idleTimer = new Timer(idleDelay, new ActionListener()
+		{
+			@Override
+			public void actionPerformed(ActionEvent e)
+			{
+				forceQuality = true;
+				repaint.run();
+			}
+		});
+		idleTimer.setRepeats(false);
+	}
+
+	/**
+	 * Début d'un rafraichissement : mise en place des caractéristiques de
+	 * rendu en fonction de la qualité choisie
+	 * @param g2D le contexte graphique du rafraichissement
+	 * @param interacting indique si une interaction est en cours
+	 */
+	public void begin(Graphics2D g2D, boolean interacting)
+	{
+		degraded = !forceQuality && (interacting || overBudget);
+		forceQuality = false;
+
+		if (degraded)
+		{
+			g2D.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+			                     RenderingHints.VALUE_ANTIALIAS_OFF);
+			g2D.setRenderingHint(RenderingHints.KEY_RENDERING,
+			                     RenderingHints.VALUE_RENDER_SPEED);
+		}
+		else
+		{
+			g2D.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+			                     RenderingHints.VALUE_ANTIALIAS_ON);
+			g2D.setRenderingHint(RenderingHints.KEY_RENDERING,
+			                     RenderingHints.VALUE_RENDER_QUALITY);
+		}
+		start = System.nanoTime();
+	}
+
+	/**
+	 * Fin d'un rafraichissement : mesure de sa durée. Un rafraichissement en
+	 * qualité maximale trop long dégrade les suivants et tout
+	 * rafraichissement dégradé (re)lance le délai d'inactivité.
+	 */
+	public void end()
+	{
+		long duration = System.nanoTime() - start;
+		if (degraded)
+		{
+			idleTimer.restart();
+		}
+		else
+		{
+			overBudget = duration > budget;
+		}
+	}
+
+	/**
+	 * Teste si le rafraichissement en cours (ou le dernier) est dégradé
+	 * @return true si le rafraichissement est effectué sans antialiasing
+	 */
+	public boolean isDegraded()
+	{
+		return degraded;
+	}
+
+	/**
+	 * Arrêt du contrôleur (annule le rafraichissement en attente)
+	 */
+	public void stop()
+	{
+		idleTimer.stop();
+	}
+}
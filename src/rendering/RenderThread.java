@@ -0,0 +1,249 @@
+package rendering;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+
+/**
+ * Thread de dessin des {@link DisplayList} dans une image hors écran.
+ * L'EDT publie une nouvelle tâche (liste d'affichage, taille, couleur de fond
+ * et caractéristiques de rendu) à chaque modification du dessin au travers de
+ * {@link #publish(DisplayList, int, int, double, double, Color,
+ * RenderingHints)}. Le thread dessine la dernière tâche publiée dans une image
+ * de travail puis l'échange avec l'image affichée et prévient l'EDT qui n'a
+ * plus qu'à recopier cette dernière ({@link #paint(Graphics2D)}).
+ * Les tâches publiées pendant le dessin d'une image se remplacent dans
+ * l'unique emplacement en attente : l'image en cours est toujours terminée
+ * (et affichée) puis seule la tâche la plus récente est dessinée, de sorte
+ * que l'affichage suit un déplacement continu au rythme du dessin au lieu de
+ * rester figé tant que de nouvelles tâches arrivent.
+ *
+ * @author davidroussel
+ */
+public class RenderThread extends Thread
+{
+	/**
+	 * Nombre d'éléments dessinés entre deux vérifications de l'arrêt du
+	 * thread
+	 */
+	private final static int checkInterval = 256;
+
+	/**
+	 * Tâche de dessin
+	 */
+	private static class Job
+	{
+		final DisplayList list;
+		final int width, height;
+		final double sx, sy;
+		final Color background;
+		final RenderingHints hints;
+
+		Job(DisplayList list, int width, int height, double sx, double sy,
+			Color background, RenderingHints hints)
+		{
+			this.list = list;
+			this.width = width;
+			this.height = height;
+			this.sx = sx;
+			this.sy = sy;
+			this.background = background;
+			this.hints = hints;
+		}
+	}
+
+	/**
+	 * La requête de rafraichissement adressée à l'EDT lorsqu'une nouvelle
+	 * image est disponible
+	 */
+	private final Runnable frameReady;
+
+	/**
+	 * La dernière tâche publiée et pas encore prise en charge (ou null)
+	 */
+	private Job pending;
+
+	/**
+	 * Indique si le thread doit s'arrêter
+	 */
+	private boolean stopped;
+
+	/**
+	 * L'image affichée (protégée par {@link #frameLock})
+	 */
+	private BufferedImage front;
+
+	/**
+	 * Échelle de l'image affichée par rapport à la zone de dessin
+	 */
+	private double frontSx, frontSy;
+
+	/**
+	 * L'image de travail
+	 */
+	private BufferedImage back;
+
+	/**
+	 * Verrou protégeant l'image affichée
+	 */
+	private final Object frameLock;
+
+	/**
+	 * Constructeur
+	 * @param frameReady la requête de rafraichissement adressée à l'EDT
+	 * lorsqu'une nouvelle image est disponible (appelée par ce thread)
+	 */
+	public RenderThread(Runnable frameReady)
+	{
+		super("RenderThread");
+		setDaemon(true);
+		this.frameReady = frameReady;
+		pending = null;
+		stopped = false;
+		front = null;
+		back = null;
+		frameLock = new Object();
+	}
+
+	/**
+	 * Publication d'une nouvelle tâche remplaçant celle en attente (la
+	 * tâche en cours de dessin est terminée)
+	 * @param list la liste d'affichage à dessiner
+	 * @param width la largeur de la zone de dessin
+	 * @param height la hauteur de la zone de dessin
+	 * @param sx l'échelle horizontale du périphérique
+	 * @param sy l'échelle verticale du périphérique
+	 * @param background la couleur de fond
+	 * @param hints les caractéristiques de rendu
+	 */
+	public synchronized void publish(DisplayList list, int width, int height,
+		double sx, double sy, Color background, RenderingHints hints)
+	{
+		pending = new Job(list, width, height, sx, sy, background, hints);
+		notifyAll();
+	}
+
+	/**
+	 * Arrêt du thread (la tâche en cours est abandonnée)
+	 */
+	public synchronized void shutdown()
+	{
+		stopped = true;
+		notifyAll();
+	}
+
+	/**
+	 * Recopie de la dernière image dessinée
+	 * @param g2D le contexte graphique dans lequel recopier l'image
+	 * @return true si une image a été recopiée, false si aucune image n'est
+	 * encore disponible
+	 */
+	public boolean paint(Graphics2D g2D)
+	{
+		synchronized (frameLock)
+		{
+			if (front == null)
+			{
+				return false;
+			}
+			g2D.drawImage(front, AffineTransform.getScaleInstance(
+				1.0 / frontSx, 1.0 / frontSy), null);
+			return true;
+		}
+	}
+
+	/**
+	 * Boucle du thread : attente puis dessin de la dernière tâche publiée
+	 */
+	@Override
+	public void run()
+	{
+		while (true)
+		{
+			Job job;
+			synchronized (this)
+			{
+				while ((pending == null) && !stopped)
+				{
+					try
+					{
+						wait();
+					}
+					catch (InterruptedException e)
+					{
+						return;
+					}
+				}
+				if (stopped)
+				{
+					return;
+				}
+				job = pending;
+				pending = null;
+			}
+
+			if (render(job))
+			{
+				frameReady.run();
+			}
+		}
+	}
+
+	/**
+	 * Teste si le thread a été arrêté
+	 */
+	private synchronized boolean isStopped()
+	{
+		return stopped;
+	}
+
+	/**
+	 * Dessin d'une tâche dans l'image de travail puis échange avec l'image
+	 * affichée
+	 * @param job la tâche à dessiner
+	 * @return true si la tâche a été dessinée, false si elle a été abandonnée
+	 * suite à l'arrêt du thread
+	 */
+	private boolean render(Job job)
+	{
+		int w = Math.max(1, (int) Math.ceil(job.width * job.sx));
+		int h = Math.max(1, (int) Math.ceil(job.height * job.sy));
+		if ((back == null) || (back.getWidth() != w)
+			|| (back.getHeight() != h))
+		{
+			back = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+		}
+
+		Graphics2D bg = back.createGraphics();
+		bg.setRenderingHints(job.hints);
+		bg.scale(job.sx, job.sy);
+		bg.setColor(job.background);
+		bg.fillRect(0, 0, job.width, job.height);
+		int i = 0;
+		for (DisplayList.Item item : job.list.getItems())
+		{
+			if (((i++ % checkInterval) == 0) && isStopped())
+			{
+				bg.dispose();
+				return false;
+			}
+			if (item != null)
+			{
+				item.draw(bg);
+			}
+		}
+		bg.dispose();
+
+		synchronized (frameLock)
+		{
+			BufferedImage done = back;
+			back = front;
+			front = done;
+			frontSx = job.sx;
+			frontSy = job.sy;
+		}
+		return true;
+	}
+}
@@ -0,0 +1,365 @@
+package rendering;
+
+import java.awt.BasicStroke;
+import java.awt.Graphics2D;
+import java.awt.Polygon;
+import java.awt.RenderingHints;
+import java.awt.Shape;
+import java.awt.Stroke;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import figures.Figure;
+
+/**
+ * Cache d'images (sprites) des figures coûteuses à dessiner (traits
+ * pointillés, grands polygones, courbes anti-aliasées).
+ * Chaque figure mise en cache est dessinée une fois dans une image à la
+ * résolution du périphérique, puis simplement recopiée à une position entière
+ * tant que sa forme ({@link Figure#getVersion()}), l'antialiasing et la partie
+ * linéaire de sa transformation vers le périphérique (échelle, rotation) sont
+ * inchangés : une figure que l'on déplace n'est donc pas redessinée.
+ * La taille totale des images est limitée par un budget mémoire, les images
+ * les moins récemment utilisées étant évincées en premier.
+ *
+ * @author davidroussel
+ */
+public class SpriteCache implements FigureRenderer
+{
+	/**
+	 * Budget mémoire par défaut (en octets)
+	 */
+	public final static long DefaultMaxBytes = 32L * 1024L * 1024L;
+
+	/**
+	 * Nombre minimum de sommets à partir duquel un polygone est considéré
+	 * comme coûteux
+	 */
+	public final static int MinPolygonPoints = 16;
+
+	/**
+	 * Marge (en pixels du périphérique) autour des images pour
+	 * l'anti-aliasing
+	 */
+	private final static int margin = 1;
+
+	/**
+	 * Image d'une figure et caractéristiques avec lesquelles elle a été
+	 * dessinée
+	 */
+	private static class Sprite
+	{
+		/**
+		 * L'image de la figure
+		 */
+		final BufferedImage image;
+
+		/**
+		 * Version de la forme de la figure lors de la création de l'image
+		 */
+		final long version;
+
+		/**
+		 * Partie linéaire de la transformation figure -> périphérique
+		 */
+		final double m00, m10, m01, m11;
+
+		/**
+		 * Antialiasing avec lequel l'image a été dessinée
+		 */
+		final Object antialiasing;
+
+		/**
+		 * Position du coin supérieur gauche de l'image relativement à la
+		 * translation de la transformation figure -> périphérique
+		 */
+		final double dx, dy;
+
+		/**
+		 * Constructeur
+		 */
+		Sprite(BufferedImage image, long version, Object antialiasing,
+			AffineTransform t, double x, double y)
+		{
+			this.image = image;
+			this.version = version;
+			this.antialiasing = antialiasing;
+			m00 = t.getScaleX();
+			m10 = t.getShearY();
+			m01 = t.getShearX();
+			m11 = t.getScaleY();
+			dx = x - t.getTranslateX();
+			dy = y - t.getTranslateY();
+		}
+
+		/**
+		 * Teste si l'image est toujours valable pour une figure dans une
+		 * version donnée, avec un antialiasing donné et une transformation
+		 * donnée
+		 */
+		boolean matches(long version, Object antialiasing, AffineTransform t)
+		{
+			return (this.version == version)
+				&& (this.antialiasing == antialiasing)
+				&& (m00 == t.getScaleX())
+				&& (m10 == t.getShearY()) && (m01 == t.getShearX())
+				&& (m11 == t.getScaleY());
+		}
+
+		/**
+		 * Taille de l'image en octets
+		 */
+		long bytes()
+		{
+			return bytes(image.getWidth(), image.getHeight());
+		}
+
+		/**
+		 * Taille d'une image ARGB en octets
+		 */
+		static long bytes(int width, int height)
+		{
+			return 4L * width * height;
+		}
+	}
+
+	/**
+	 * Les images par figure, dans l'ordre d'utilisation (la moins récemment
+	 * utilisée en premier)
+	 */
+	private final LinkedHashMap<Figure, Sprite> sprites;
+
+	/**
+	 * Budget mémoire (en octets)
+	 */
+	private long maxBytes;
+
+	/**
+	 * Taille totale des images en cache (en octets)
+	 */
+	private long bytes;
+
+	/**
+	 * Constructeur d'un cache avec le budget mémoire par défaut
+	 */
+	public SpriteCache()
+	{
+		this(DefaultMaxBytes);
+	}
+
+	/**
+	 * Constructeur d'un cache avec un budget mémoire
+	 * @param maxBytes le budget mémoire (en octets)
+	 */
+	public SpriteCache(long maxBytes)
+	{
+		sprites = new LinkedHashMap<Figure, Sprite>(64, 0.75f, true);
+		this.maxBytes = maxBytes;
+		bytes = 0;
+	}
+
+	/**
+	 * Accesseur du budget mémoire
+	 * @return le budget mémoire (en octets)
+	 */
+	public long getMaxBytes()
+	{
+		return maxBytes;
+	}
+
+	/**
+	 * Mise en place d'un nouveau budget mémoire (évince les images les moins
+	 * récemment utilisées si nécessaire)
+	 * @param maxBytes le nouveau budget mémoire (en octets)
+	 */
+	public void setMaxBytes(long maxBytes)
+	{
+		this.maxBytes = maxBytes;
+		evict(0);
+	}
+
+	/**
+	 * Accesseur de la taille totale des images en cache
+	 * @return la taille totale des images en cache (en octets)
+	 */
+	public long getBytes()
+	{
+		return bytes;
+	}
+
+	/**
+	 * Vidage du cache
+	 */
+	public void clear()
+	{
+		sprites.clear();
+		bytes = 0;
+	}
+
+	/**
+	 * Retrait de l'image d'une figure (retirée du dessin par exemple)
+	 * @param figure la figure
+	 */
+	public void remove(Figure figure)
+	{
+		Sprite sprite = sprites.remove(figure);
+		if (sprite != null)
+		{
+			bytes -= sprite.bytes();
+		}
+	}
+
+	/**
+	 * Dessin d'une figure : à partir de son image si elle est coûteuse à
+	 * dessiner et que son image tient dans le budget, directement sinon.
+	 * @param g2D le contexte graphique dans lequel dessiner
+	 * @param figure la figure à dessiner
+	 */
+	@Override
+	public void draw(Graphics2D g2D, Figure figure)
+	{
+		if (!isExpensive(g2D, figure))
+		{
+			figure.draw(g2D);
+			return;
+		}
+
+		AffineTransform base = g2D.getTransform();
+		AffineTransform t = new AffineTransform(base);
+		t.concatenate(figure.getTransformation());
+
+		Sprite sprite = sprites.get(figure);
+		Object antialiasing =
+			g2D.getRenderingHint(RenderingHints.KEY_ANTIALIASING);
+		if ((sprite == null)
+			|| !sprite.matches(figure.getVersion(), antialiasing, t))
+		{
+			remove(figure);
+			sprite = createSprite(g2D, figure, base, t);
+			if (sprite == null)
+			{
+				figure.draw(g2D);
+				return;
+			}
+			evict(sprite.bytes());
+			sprites.put(figure, sprite);
+			bytes += sprite.bytes();
+		}
+
+		int x = (int) Math.round(t.getTranslateX() + sprite.dx);
+		int y = (int) Math.round(t.getTranslateY() + sprite.dy);
+		g2D.setTransform(new AffineTransform());
+		g2D.drawImage(sprite.image, x, y, null);
+		g2D.setTransform(base);
+	}
+
+	/**
+	 * Teste si une figure mérite d'être mise en cache : trait pointillé,
+	 * polygone comportant beaucoup de sommets ou forme courbe anti-aliasée.
+	 * @param g2D le contexte graphique dans lequel dessiner
+	 * @param figure la figure à tester
+	 * @return true si la figure est coûteuse à dessiner
+	 */
+	protected boolean isExpensive(Graphics2D g2D, Figure figure)
+	{
+		Stroke stroke = figure.getStroke();
+		if ((figure.getEdgePaint() != null) && (stroke instanceof BasicStroke)
+			&& (((BasicStroke) stroke).getDashArray() != null))
+		{
+			return true;
+		}
+
+		Shape shape = figure.getShape();
+		if (shape instanceof Polygon)
+		{
+			return ((Polygon) shape).npoints >= MinPolygonPoints;
+		}
+
+		return !(shape instanceof Rectangle2D)
+			&& (g2D.getRenderingHint(RenderingHints.KEY_ANTIALIASING) ==
+				RenderingHints.VALUE_ANTIALIAS_ON);
+	}
+
+	/**
+	 * Création de l'image d'une figure
+	 * @param g2D le contexte graphique dont on reprend les caractéristiques
+	 * de rendu
+	 * @param figure la figure
+	 * @param base la transformation du contexte graphique
+	 * @param t la transformation figure -> périphérique
+	 * @return l'image de la figure ou null si celle ci est vide ou dépasse le
+	 * budget mémoire
+	 */
+	private Sprite createSprite(Graphics2D g2D, Figure figure,
+		AffineTransform base, AffineTransform t)
+	{
+		Rectangle2D local = figure.getShape().getBounds2D();
+		double half = 0.0;
+		Stroke stroke = figure.getStroke();
+		if ((figure.getEdgePaint() != null) && (stroke instanceof BasicStroke))
+		{
+			half = ((BasicStroke) stroke).getLineWidth() / 2.0;
+		}
+		double[] corners = new double[] {
+			local.getMinX() - half, local.getMinY() - half,
+			local.getMaxX() + half, local.getMinY() - half,
+			local.getMaxX() + half, local.getMaxY() + half,
+			local.getMinX() - half, local.getMaxY() + half
+		};
+		t.transform(corners, 0, corners, 0, 4);
+		double minX = Double.POSITIVE_INFINITY;
+		double minY = Double.POSITIVE_INFINITY;
+		double maxX = Double.NEGATIVE_INFINITY;
+		double maxY = Double.NEGATIVE_INFINITY;
+		for (int i = 0; i < corners.length; i += 2)
+		{
+			minX = Math.min(minX, corners[i]);
+			minY = Math.min(minY, corners[i + 1]);
+			maxX = Math.max(maxX, corners[i]);
+			maxY = Math.max(maxY, corners[i + 1]);
+		}
+
+		Point2D origin = new Point2D.Double(Math.floor(minX) - margin,
+		                                    Math.floor(minY) - margin);
+		int width = (int) Math.ceil(maxX) + margin - (int) origin.getX();
+		int height = (int) Math.ceil(maxY) + margin - (int) origin.getY();
+		if ((width <= 0) || (height <= 0)
+			|| (Sprite.bytes(width, height) > maxBytes))
+		{
+			return null;
+		}
+
+		BufferedImage image =
+			new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+		Graphics2D sg = image.createGraphics();
+		sg.setRenderingHints(g2D.getRenderingHints());
+		sg.translate(-origin.getX(), -origin.getY());
+		sg.transform(base);
+		figure.draw(sg);
+		sg.dispose();
+
+		return new Sprite(image, figure.getVersion(),
+		                  g2D.getRenderingHint(RenderingHints.KEY_ANTIALIASING),
+		                  t, origin.getX(), origin.getY());
+	}
+
+	/**
+	 * Éviction des images les moins récemment utilisées jusqu'à ce qu'une
+	 * nouvelle image de taille donnée tienne dans le budget
+	 * @param needed la taille de la nouvelle image (en octets)
+	 */
+	private void evict(long needed)
+	{
+		Iterator<Map.Entry<Figure, Sprite>> it = sprites.entrySet().iterator();
+		while ((bytes + needed > maxBytes) && it.hasNext())
+		{
+			bytes -= it.next().getValue().bytes();
+			it.remove();
+		}
+	}
+}
@@ -0,0 +1,411 @@
+package rendering;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import figures.Drawing;
+import figures.DrawingChange;
+import figures.Figure;
+
+/**
+ * Cache des tuiles d'un dessin vu au travers d'une vue zoomée et décalée.
+ * Les zooms possibles forment une pyramide de niveaux discrets (à la manière
+ * d'une mipmap) : le niveau n correspond au zoom 2^(n / {@link
+ * #LevelsPerOctave}). À chaque niveau le dessin est découpé en tuiles
+ * carrées alignées sur les pixels du périphérique, dessinées une fois puis
+ * conservées : un déplacement de la vue ne fait que recopier les tuiles déjà
+ * dessinées et seules les tuiles nouvellement découvertes sont dessinées.
+ * Une modification locale du dessin ({@link DrawingChange}) n'invalide que
+ * les tuiles (de tous les niveaux) qu'elle intersecte.
+ * La taille totale des tuiles est limitée par un budget mémoire, les tuiles
+ * les moins récemment utilisées étant évincées en premier.
+ *
+ * @author davidroussel
+ */
+public class TileCache
+{
+	/**
+	 * Taille par défaut des tuiles (en pixels du périphérique)
+	 */
+	public final static int DefaultTileSize = 256;
+
+	/**
+	 * Budget mémoire par défaut (en octets)
+	 */
+	public final static long DefaultMaxBytes = 64L * 1024L * 1024L;
+
+	/**
+	 * Nombre de niveaux de zoom entre deux puissances de 2
+	 */
+	public final static int LevelsPerOctave = 4;
+
+	/**
+	 * Marge (en pixels du périphérique) ajoutée autour de chaque tuile pour
+	 * la recherche des figures à dessiner (anti-aliasing)
+	 */
+	private final static double margin = 2.0;
+
+	/**
+	 * Identification d'une tuile : niveau de zoom, colonne et rangée
+	 */
+	private static class Key
+	{
+		final int level, col, row;
+
+		Key(int level, int col, int row)
+		{
+			this.level = level;
+			this.col = col;
+			this.row = row;
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return (((level * 31) + col) * 31) + row;
+		}
+
+		@Override
+		public boolean equals(Object obj)
+		{
+			if (!(obj instanceof Key))
+			{
+				return false;
+			}
+			Key k = (Key) obj;
+			return (level == k.level) && (col == k.col) && (row == k.row);
+		}
+	}
+
+	/**
+	 * Tuile dessinée
+	 */
+	private static class Tile
+	{
+		/**
+		 * L'image de la tuile
+		 */
+		final BufferedImage image;
+
+		/**
+		 * La zone du dessin (marge comprise) dont les figures ont été
+		 * dessinées dans la tuile
+		 */
+		final Rectangle2D area;
+
+		Tile(BufferedImage image, Rectangle2D area)
+		{
+			this.image = image;
+			this.area = area;
+		}
+
+		/**
+		 * Taille de l'image en octets
+		 */
+		long bytes()
+		{
+			return 4L * image.getWidth() * image.getHeight();
+		}
+	}
+
+	/**
+	 * Les tuiles, dans l'ordre d'utilisation (la moins récemment utilisée en
+	 * premier)
+	 */
+	private final LinkedHashMap<Key, Tile> tiles;
+
+	/**
+	 * Taille des tuiles (en pixels du périphérique)
+	 */
+	private final int tileSize;
+
+	/**
+	 * Budget mémoire (en octets)
+	 */
+	private long maxBytes;
+
+	/**
+	 * Taille totale des tuiles en cache (en octets)
+	 */
+	private long bytes;
+
+	/**
+	 * Caractéristiques de rendu, couleur de fond et échelle du périphérique
+	 * avec lesquelles les tuiles ont été dessinées
+	 */
+	private RenderingHints hints;
+	private Color background;
+	private double sx, sy;
+
+	/**
+	 * Nombre de tuiles dessinées lors du dernier dessin
+	 */
+	private int renderedTiles;
+
+	/**
+	 * Constructeur d'un cache avec la taille de tuiles et le budget mémoire
+	 * par défaut
+	 */
+	public TileCache()
+	{
+		this(DefaultTileSize, DefaultMaxBytes);
+	}
+
+	/**
+	 * Constructeur d'un cache
+	 * @param tileSize la taille des tuiles (en pixels du périphérique)
+	 * @param maxBytes le budget mémoire (en octets)
+	 */
+	public TileCache(int tileSize, long maxBytes)
+	{
+		tiles = new LinkedHashMap<Key, Tile>(64, 0.75f, true);
+		this.tileSize = tileSize;
+		this.maxBytes = maxBytes;
+		bytes = 0;
+		hints = null;
+		background = null;
+		sx = 1.0;
+		sy = 1.0;
+		renderedTiles = 0;
+	}
+
+	/**
+	 * Zoom correspondant à un niveau de la pyramide
+	 * @param level le niveau (0 pour la taille réelle)
+	 * @return le zoom 2^(level / {@link #LevelsPerOctave})
+	 */
+	public static double getZoom(int level)
+	{
+		return Math.pow(2.0, (double) level / LevelsPerOctave);
+	}
+
+	/**
+	 * Niveau de la pyramide correspondant au plus grand zoom ne dépassant pas
+	 * un zoom donné
+	 * @param zoom le zoom recherché
+	 * @return le niveau correspondant
+	 */
+	public static int getLevel(double zoom)
+	{
+		// petite tolérance pour qu'un zoom exact (1.0, 2.0, ...) donne son
+		// propre niveau malgré les arrondis
+		return (int) Math.floor(
+			(LevelsPerOctave * Math.log(zoom) / Math.log(2.0)) + 1e-9);
+	}
+
+	/**
+	 * Accesseur du budget mémoire
+	 * @return le budget mémoire (en octets)
+	 */
+	public long getMaxBytes()
+	{
+		return maxBytes;
+	}
+
+	/**
+	 * Mise en place d'un nouveau budget mémoire (évince les tuiles les moins
+	 * récemment utilisées si nécessaire)
+	 * @param maxBytes le nouveau budget mémoire (en octets)
+	 */
+	public void setMaxBytes(long maxBytes)
+	{
+		this.maxBytes = maxBytes;
+		evict(0);
+	}
+
+	/**
+	 * Accesseur de la taille totale des tuiles en cache
+	 * @return la taille totale des tuiles en cache (en octets)
+	 */
+	public long getBytes()
+	{
+		return bytes;
+	}
+
+	/**
+	 * Nombre de tuiles dessinées (non trouvées dans le cache) lors du dernier
+	 * dessin
+	 * @return le nombre de tuiles dessinées lors du dernier dessin
+	 */
+	public int getRenderedTiles()
+	{
+		return renderedTiles;
+	}
+
+	/**
+	 * Vidage du cache
+	 */
+	public void clear()
+	{
+		tiles.clear();
+		bytes = 0;
+	}
+
+	/**
+	 * Prise en compte d'une modification du dessin : une modification
+	 * globale vide le cache, une modification locale n'invalide que les
+	 * tuiles qu'elle intersecte
+	 * @param change la modification du dessin (ou null pour une modification
+	 * globale)
+	 */
+	public void update(DrawingChange change)
+	{
+		if ((change == null) || change.isGlobal())
+		{
+			clear();
+			return;
+		}
+
+		Rectangle2D damage = change.getBounds();
+		Iterator<Tile> it = tiles.values().iterator();
+		while (it.hasNext())
+		{
+			Tile tile = it.next();
+			if (tile.area.intersects(damage))
+			{
+				bytes -= tile.bytes();
+				it.remove();
+			}
+		}
+	}
+
+	/**
+	 * Dessin de la zone à redessiner (clip) de la vue à l'aide des tuiles
+	 * (dessinées si nécessaire)
+	 * @param g2D le contexte graphique du panel dans lequel dessiner
+	 * @param drawing le dessin
+	 * @param level le niveau de zoom de la vue
+	 * @param panX l'abscisse (en pixels du panel au zoom de la vue) du point
+	 * du dessin affiché dans le coin supérieur gauche du panel
+	 * @param panY l'ordonnée (en pixels du panel au zoom de la vue) du point
+	 * du dessin affiché dans le coin supérieur gauche du panel
+	 * @param width la largeur du panel
+	 * @param height la hauteur du panel
+	 * @param background la couleur de fond
+	 * @param renderer le moyen de dessiner chacune des figures
+	 */
+	public void paint(Graphics2D g2D, Drawing drawing, int level, int panX,
+		int panY, int width, int height, Color background,
+		FigureRenderer renderer)
+	{
+		/*
+		 * Les tuiles sont construites à la résolution du périphérique (écrans
+		 * HiDPI) et recopiées sans transformation
+		 */
+		AffineTransform t = g2D.getTransform();
+		double tsx = Math.max(Math.abs(t.getScaleX()), 1.0);
+		double tsy = Math.max(Math.abs(t.getScaleY()), 1.0);
+		RenderingHints current = g2D.getRenderingHints();
+		if (!current.equals(hints) || !background.equals(this.background)
+			|| (tsx != sx) || (tsy != sy))
+		{
+			clear();
+			hints = current;
+			this.background = background;
+			sx = tsx;
+			sy = tsy;
+		}
+
+		double zoom = getZoom(level);
+		double scaleX = zoom * sx;
+		double scaleY = zoom * sy;
+
+		// origine du panel et zone à redessiner dans le repère du niveau
+		int ox = (int) Math.round(panX * sx);
+		int oy = (int) Math.round(panY * sy);
+		Rectangle clip = g2D.getClipBounds();
+		if (clip == null)
+		{
+			clip = new Rectangle(0, 0, width, height);
+		}
+		int col0 = Math.floorDiv((int) Math.floor(clip.x * sx) + ox, tileSize);
+		int row0 = Math.floorDiv((int) Math.floor(clip.y * sy) + oy, tileSize);
+		int col1 = Math.floorDiv(
+			(int) Math.ceil((clip.x + clip.width) * sx) + ox - 1, tileSize);
+		int row1 = Math.floorDiv(
+			(int) Math.ceil((clip.y + clip.height) * sy) + oy - 1, tileSize);
+
+		int tx = (int) Math.round(t.getTranslateX()) - ox;
+		int ty = (int) Math.round(t.getTranslateY()) - oy;
+		renderedTiles = 0;
+		g2D.setTransform(new AffineTransform());
+		for (int row = row0; row <= row1; row++)
+		{
+			for (int col = col0; col <= col1; col++)
+			{
+				Key key = new Key(level, col, row);
+				Tile tile = tiles.get(key);
+				if (tile == null)
+				{
+					tile = render(drawing, key, scaleX, scaleY, renderer);
+					renderedTiles++;
+					evict(tile.bytes());
+					tiles.put(key, tile);
+					bytes += tile.bytes();
+				}
+				g2D.drawImage(tile.image, tx + (col * tileSize),
+				              ty + (row * tileSize), null);
+			}
+		}
+		g2D.setTransform(t);
+	}
+
+	/**
+	 * Dessin d'une tuile
+	 * @param drawing le dessin
+	 * @param key l'identification de la tuile
+	 * @param scaleX l'échelle horizontale dessin -> tuile
+	 * @param scaleY l'échelle verticale dessin -> tuile
+	 * @param renderer le moyen de dessiner chacune des figures
+	 * @return la tuile dessinée
+	 */
+	private Tile render(Drawing drawing, Key key, double scaleX,
+		double scaleY, FigureRenderer renderer)
+	{
+		double x = key.col * tileSize;
+		double y = key.row * tileSize;
+		Rectangle2D area = new Rectangle2D.Double(
+			(x - margin) / scaleX, (y - margin) / scaleY,
+			(tileSize + (2 * margin)) / scaleX,
+			(tileSize + (2 * margin)) / scaleY);
+
+		BufferedImage image =
+			new BufferedImage(tileSize, tileSize, BufferedImage.TYPE_INT_RGB);
+		Graphics2D tg = image.createGraphics();
+		tg.setRenderingHints(hints);
+		tg.setColor(background);
+		tg.fillRect(0, 0, tileSize, tileSize);
+		tg.translate(-x, -y);
+		tg.scale(scaleX, scaleY);
+		for (Figure f : drawing.getFiguresIn(area))
+		{
+			renderer.draw(tg, f);
+		}
+		tg.dispose();
+
+		return new Tile(image, area);
+	}
+
+	/**
+	 * Éviction des tuiles les moins récemment utilisées jusqu'à ce qu'une
+	 * nouvelle tuile de taille donnée tienne dans le budget
+	 * @param needed la taille de la nouvelle tuile (en octets)
+	 */
+	private void evict(long needed)
+	{
+		Iterator<Map.Entry<Key, Tile>> it = tiles.entrySet().iterator();
+		while ((bytes + needed > maxBytes) && it.hasNext())
+		{
+			bytes -= it.next().getValue().bytes();
+			it.remove();
+		}
+	}
+}
@@ -0,0 +1,250 @@
+package rendering;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import figures.Figure;
+
+/**
+ * Dessin parallèle d'une liste de figures par tuiles.
+ * La zone à dessiner est découpée (dans le repère du périphérique) en tuiles
+ * carrées alignées sur une grille fixe. Chaque tuile est dessinée dans sa
+ * propre image par une tâche d'un {@link ForkJoinPool} et ne dessine que les
+ * figures qui l'intersectent, dans l'ordre (z) de la liste. Les tuiles sont
+ * ensuite recopiées dans le contexte graphique d'origine par le thread
+ * appelant (l'EDT) qui attend la fin de toutes les tâches : les figures ne
+ * peuvent donc pas être modifiées pendant le dessin.
+ * Les tuiles étant alignées sur des pixels entiers, le résultat est identique
+ * à celui d'un dessin en une seule passe.
+ *
+ * @author davidroussel
+ */
+public class TileRenderer
+{
+	/**
+	 * Taille par défaut des tuiles (en pixels du périphérique)
+	 */
+	public final static int DefaultTileSize = 256;
+
+	/**
+	 * Marge (en pixels) ajoutée autour des tuiles pour sélectionner les
+	 * figures à dessiner afin de tenir compte de l'antialiasing
+	 */
+	private final static int margin = 2;
+
+	/**
+	 * Le pool de threads dessinant les tuiles
+	 */
+	private final ForkJoinPool pool;
+
+	/**
+	 * Taille des tuiles (en pixels du périphérique)
+	 */
+	private final int tileSize;
+
+	/**
+	 * Images des tuiles réutilisées d'un dessin à l'autre
+	 */
+	private final List<BufferedImage> tiles;
+
+	/**
+	 * Constructeur d'un dessinateur par tuiles utilisant le pool commun et la
+	 * taille de tuiles par défaut
+	 */
+	public TileRenderer()
+	{
+		this(ForkJoinPool.commonPool(), DefaultTileSize);
+	}
+
+	/**
+	 * Constructeur d'un dessinateur par tuiles
+	 * @param pool le pool de threads dessinant les tuiles
+	 * @param tileSize la taille des tuiles (en pixels du périphérique)
+	 */
+	public TileRenderer(ForkJoinPool pool, int tileSize)
+	{
+		if (pool == null)
+		{
+			throw new NullPointerException("TileRenderer: null pool");
+		}
+		if (tileSize <= 0)
+		{
+			throw new IllegalArgumentException("TileRenderer: tile size "
+				+ tileSize + " <= 0");
+		}
+		this.pool = pool;
+		this.tileSize = tileSize;
+		tiles = new ArrayList<BufferedImage>();
+	}
+
+	/**
+	 * Dessin d'une zone : effacement avec la couleur de fond puis dessin des
+	 * figures par tuiles
+	 * @param g2D le contexte graphique dans lequel dessiner
+	 * @param figures les figures à dessiner triées dans l'ordre de dessin
+	 * @param area la zone à dessiner (dans le repère de g2D)
+	 * @param background la couleur de fond
+	 * @param renderer le moyen de dessiner chacune des figures, qui doit
+	 * pouvoir être utilisé depuis plusieurs threads simultanément
+	 */
+	public void paint(Graphics2D g2D, List<Figure> figures, Rectangle area,
+		Color background, FigureRenderer renderer)
+	{
+		AffineTransform base = g2D.getTransform();
+		Rectangle device = base.createTransformedShape(area).getBounds();
+		if (device.isEmpty())
+		{
+			return;
+		}
+
+		/*
+		 * Rectangles englobants des figures dans le repère du périphérique,
+		 * calculés par le thread appelant (les figures calculent leur
+		 * rectangle englobant à la demande)
+		 */
+		final int n = figures.size();
+		Rectangle2D[] bounds = new Rectangle2D[n];
+		for (int i = 0; i < n; i++)
+		{
+			bounds[i] = base.createTransformedShape(
+				figures.get(i).getTransformedBounds()).getBounds2D();
+		}
+
+		int col0 = Math.floorDiv(device.x, tileSize);
+		int row0 = Math.floorDiv(device.y, tileSize);
+		int col1 = Math.floorDiv(device.x + device.width - 1, tileSize);
+		int row1 = Math.floorDiv(device.y + device.height - 1, tileSize);
+
+		List<Tile> tasks = new ArrayList<Tile>();
+		for (int row = row0; row <= row1; row++)
+		{
+			for (int col = col0; col <= col1; col++)
+			{
+				int index = tasks.size();
+				if (index == tiles.size())
+				{
+					tiles.add(new BufferedImage(tileSize, tileSize,
+					                            BufferedImage.TYPE_INT_RGB));
+				}
+				tasks.add(new Tile(tiles.get(index), col * tileSize,
+				                   row * tileSize, g2D, base, figures, bounds,
+				                   background, renderer));
+			}
+		}
+
+		pool.invoke(new RecursiveAction()
+		{
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected void compute()
+			{
+				invokeAll(tasks);
+			}
+		});
+
+		g2D.setTransform(new AffineTransform());
+		for (Tile tile : tasks)
+		{
+			g2D.drawImage(tile.image, tile.x, tile.y, null);
+		}
+		g2D.setTransform(base);
+	}
+
+	/**
+	 * Tâche de dessin d'une tuile
+	 */
+	private static class Tile extends RecursiveAction
+	{
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * Image de la tuile
+		 */
+		final BufferedImage image;
+
+		/**
+		 * Position de la tuile dans le repère du périphérique
+		 */
+		final int x, y;
+
+		/**
+		 * Contexte graphique de la tuile (créé par le thread appelant afin
+		 * de recopier les caractéristiques de rendu)
+		 */
+		private final Graphics2D tg;
+
+		/**
+		 * Les figures à dessiner
+		 */
+		private final List<Figure> figures;
+
+		/**
+		 * Rectangles englobants des figures dans le repère du périphérique
+		 */
+		private final Rectangle2D[] bounds;
+
+		/**
+		 * La couleur de fond
+		 */
+		private final Color background;
+
+		/**
+		 * Le moyen de dessiner chacune des figures
+		 */
+		private final FigureRenderer renderer;
+
+		/**
+		 * Constructeur
+		 */
+		Tile(BufferedImage image, int x, int y, Graphics2D g2D,
+			AffineTransform base, List<Figure> figures, Rectangle2D[] bounds,
+			Color background, FigureRenderer renderer)
+		{
+			this.image = image;
+			this.x = x;
+			this.y = y;
+			this.figures = figures;
+			this.bounds = bounds;
+			this.background = background;
+			this.renderer = renderer;
+			tg = image.createGraphics();
+			tg.setRenderingHints(g2D.getRenderingHints());
+			tg.translate(-x, -y);
+			tg.transform(base);
+		}
+
+		/**
+		 * Dessin de la tuile
+		 */
+		@Override
+		protected void compute()
+		{
+			AffineTransform t = tg.getTransform();
+			tg.setTransform(new AffineTransform());
+			tg.setColor(background);
+			tg.fillRect(0, 0, image.getWidth(), image.getHeight());
+			tg.setTransform(t);
+
+			Rectangle2D area = new Rectangle2D.Double(x - margin, y - margin,
+				image.getWidth() + (2 * margin),
+				image.getHeight() + (2 * margin));
+			for (int i = 0; i < bounds.length; i++)
+			{
+				if (bounds[i].intersects(area))
+				{
+					renderer.draw(tg, figures.get(i));
+				}
+			}
+			tg.dispose();
+		}
+	}
+}
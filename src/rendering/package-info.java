@@ -0,0 +1,33 @@
+/**
+ * Package contenant les outils de rendu des figures d'un
+ * {@link figures.Drawing} utilisés par la zone de dessin
+ * ({@link widgets.DrawingPanel}) :
+ * <ul>
+ * 	<li>un tampon d'identifiants pour retrouver la figure sous un pixel :
+ * 	{@link rendering.PickBuffer}</li>
+ * 	<li>un cache des figures figées pendant l'édition d'une figure :
+ * 	{@link rendering.LayerCache}</li>
+ * 	<li>les moyens de dessiner une figure ({@link rendering.FigureRenderer})
+ * 	dont un cache d'images des figures coûteuses :
+ * 	{@link rendering.SpriteCache}</li>
+ * 	<li>un dessin parallèle par tuiles : {@link rendering.TileRenderer}</li>
+ * 	<li>un dessin progressif des très grands dessins :
+ * 	{@link rendering.ProgressiveRenderer}</li>
+ * 	<li>un dessin simplifié des figures minuscules :
+ * 	{@link rendering.DetailRenderer}</li>
+ * 	<li>un dessin des figures par lots de même style :
+ * 	{@link rendering.BatchRenderer}</li>
+ * 	<li>une liste d'affichage compilée fusionnant les figures consécutives
+ * 	de même style : {@link rendering.MergedDisplayList}</li>
+ * 	<li>un contrôle de la qualité de rendu selon la durée des
+ * 	rafraichissements : {@link rendering.QualityController}</li>
+ * 	<li>un dessin par un thread dédié ({@link rendering.RenderThread}) de
+ * 	listes d'affichage immuables ({@link rendering.DisplayList}) compilées
+ * 	à partir du dessin ({@link rendering.DisplayListCompiler})</li>
+ * 	<li>un cache de tuiles par niveau de zoom pour une vue zoomée ou
+ * 	décalée : {@link rendering.TileCache}</li>
+ * 	<li>un dessin hors écran (utilisable en mode headless) :
+ * 	{@link rendering.OffscreenRenderer}</li>
+ * </ul>
+ */
+package rendering;
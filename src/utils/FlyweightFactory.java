@@ -90,8 +90,9 @@ public class FlyweightFactory<T>
 	 * @param element l'élément demandé [celui ci pourra être détruit par le 
 	 * garbage collector si il en existe déjà un équivalent dans la table]
 	 * @return l'élément demandé en provenance de la table
+	 * @note synchronisée car utilisable par les threads de dessin
 	 */
-	public T get(T element)
+	public synchronized T get(T element)
 	{
 		if (element != null)
 		{
@@ -110,7 +111,7 @@ public class FlyweightFactory<T>
 	/**
 	 * Nettoyage de tous les éléments
 	 */
-	public void clear()
+	public synchronized void clear()
 	{
 		map.clear();
 	}
@@ -0,0 +1,246 @@
+package utils;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Index spatial statique (R-tree compacté) d'éléments identifiés par des
+ * entiers de 0 à {@link #size()} - 1, construit en une seule fois par
+ * tri récursif des centres (Sort-Tile-Recursive) : les éléments sont rangés
+ * par tranches verticales puis par ordonnée dans des feuilles de
+ * {@link #NodeSize} éléments, elles-mêmes regroupées par {@link #NodeSize}
+ * dans les niveaux supérieurs. L'index ne conserve que l'ordre des éléments
+ * et les rectangles englobants des noeuds (tableaux de types primitifs) :
+ * les rectangles des éléments sont relus auprès de leur source lors des
+ * recherches, qui ne fournissent que des candidats.
+ * Un élément déplacé après la construction peut être signalé par
+ * {@link #enlarge(int, double[])} qui agrandit les rectangles de ses noeuds.
+ *
+ * @author davidroussel
+ */
+public class PackedRTree
+{
+	/**
+	 * Nombre d'entrées par noeud
+	 */
+	public static final int NodeSize = 32;
+
+	/**
+	 * Source des rectangles englobants des éléments
+	 */
+	public interface BoundsSource
+	{
+		/**
+		 * Obtention du rectangle englobant d'un élément
+		 * @param id l'identifiant de l'élément
+		 * @param b le tableau recevant minX, minY, maxX et maxY
+		 */
+		void bounds(int id, double[] b);
+	}
+
+	/**
+	 * Nombre d'éléments indexés
+	 */
+	private final int size;
+
+	/**
+	 * Identifiants des éléments dans l'ordre des feuilles
+	 */
+	private final int[] ids;
+
+	/**
+	 * Feuille contenant chaque élément
+	 */
+	private final int[] leafOf;
+
+	/**
+	 * Rectangles englobants (minX, minY, maxX, maxY) des noeuds de chaque
+	 * niveau : levels[0] pour les feuilles, le dernier niveau ne contenant
+	 * que quelques noeuds
+	 */
+	private final double[][] levels;
+
+	/**
+	 * Construction de l'index des éléments 0 à size - 1
+	 * @param size le nombre d'éléments
+	 * @param source la source des rectangles englobants des éléments
+	 */
+	public PackedRTree(int size, BoundsSource source)
+	{
+		this.size = size;
+		ids = new int[size];
+		leafOf = new int[size];
+		double[] b = new double[4];
+
+		// tri des éléments par abcisse puis par ordonnée dans chaque tranche
+		long[] keys = new long[size];
+		for (int id = 0; id < size; id++)
+		{
+			source.bounds(id, b);
+			keys[id] = key((b[0] + b[2]) / 2.0, id);
+		}
+		Arrays.sort(keys);
+		int leafCount = (size + NodeSize - 1) / NodeSize;
+		int sliceSize = NodeSize
+			* (int) Math.ceil(Math.sqrt(Math.max(leafCount, 1)));
+		for (int start = 0; start < size; start += sliceSize)
+		{
+			int end = Math.min(size, start + sliceSize);
+			for (int k = start; k < end; k++)
+			{
+				int id = (int) keys[k];
+				source.bounds(id, b);
+				keys[k] = key((b[1] + b[3]) / 2.0, id);
+			}
+			Arrays.sort(keys, start, end);
+		}
+		for (int k = 0; k < size; k++)
+		{
+			ids[k] = (int) keys[k];
+		}
+		keys = null;
+
+		// rectangles des feuilles puis des niveaux supérieurs
+		int depth = 1;
+		for (int n = leafCount; n > NodeSize; n = (n + NodeSize - 1) / NodeSize)
+		{
+			depth++;
+		}
+		levels = new double[depth][];
+		double[] leaves = new double[4 * leafCount];
+		for (int leaf = 0; leaf < leafCount; leaf++)
+		{
+			int o = 4 * leaf;
+			leaves[o] = leaves[o + 1] = Double.POSITIVE_INFINITY;
+			leaves[o + 2] = leaves[o + 3] = Double.NEGATIVE_INFINITY;
+			int end = Math.min(size, (leaf + 1) * NodeSize);
+			for (int k = leaf * NodeSize; k < end; k++)
+			{
+				source.bounds(ids[k], b);
+				leafOf[ids[k]] = leaf;
+				add(leaves, o, b[0], b[1], b[2], b[3]);
+			}
+		}
+		levels[0] = leaves;
+		for (int level = 1; level < depth; level++)
+		{
+			double[] children = levels[level - 1];
+			int childCount = children.length / 4;
+			int count = (childCount + NodeSize - 1) / NodeSize;
+			double[] nodes = new double[4 * count];
+			for (int node = 0; node < count; node++)
+			{
+				int o = 4 * node;
+				nodes[o] = nodes[o + 1] = Double.POSITIVE_INFINITY;
+				nodes[o + 2] = nodes[o + 3] = Double.NEGATIVE_INFINITY;
+				int end = Math.min(childCount, (node + 1) * NodeSize);
+				for (int c = node * NodeSize; c < end; c++)
+				{
+					add(nodes, o, children[4 * c], children[(4 * c) + 1],
+					    children[(4 * c) + 2], children[(4 * c) + 3]);
+				}
+			}
+			levels[level] = nodes;
+		}
+	}
+
+	/**
+	 * Nombre d'éléments indexés
+	 * @return le nombre d'éléments lors de la construction
+	 */
+	public int size()
+	{
+		return size;
+	}
+
+	/**
+	 * Agrandissement des rectangles des noeuds contenant un élément dont le
+	 * rectangle englobant a changé (les rectangles ne sont jamais réduits)
+	 * @param id l'identifiant de l'élément (inférieur à {@link #size()})
+	 * @param b le nouveau rectangle de l'élément (minX, minY, maxX, maxY)
+	 */
+	public void enlarge(int id, double[] b)
+	{
+		int node = leafOf[id];
+		for (double[] nodes : levels)
+		{
+			add(nodes, 4 * node, b[0], b[1], b[2], b[3]);
+			node /= NodeSize;
+		}
+	}
+
+	/**
+	 * Recherche des éléments candidats dont la feuille intersecte une zone
+	 * (bords compris)
+	 * @param minX l'abcisse minimale de la zone
+	 * @param minY l'ordonnée minimale de la zone
+	 * @param maxX l'abcisse maximale de la zone
+	 * @param maxY l'ordonnée maximale de la zone
+	 * @param action l'action appliquée à l'identifiant de chaque candidat
+	 * (dans un ordre quelconque)
+	 */
+	public void search(double minX, double minY, double maxX, double maxY,
+		IntConsumer action)
+	{
+		int top = levels.length - 1;
+		int count = levels[top].length / 4;
+		for (int node = 0; node < count; node++)
+		{
+			search(top, node, minX, minY, maxX, maxY, action);
+		}
+	}
+
+	/**
+	 * Recherche récursive dans un noeud
+	 */
+	private void search(int level, int node, double minX, double minY,
+		double maxX, double maxY, IntConsumer action)
+	{
+		double[] nodes = levels[level];
+		int o = 4 * node;
+		if ((nodes[o] > maxX) || (nodes[o + 2] < minX) || (nodes[o + 1] > maxY)
+			|| (nodes[o + 3] < minY))
+		{
+			return;
+		}
+		if (level == 0)
+		{
+			int end = Math.min(size, (node + 1) * NodeSize);
+			for (int k = node * NodeSize; k < end; k++)
+			{
+				action.accept(ids[k]);
+			}
+			return;
+		}
+		int childCount = levels[level - 1].length / 4;
+		int end = Math.min(childCount, (node + 1) * NodeSize);
+		for (int child = node * NodeSize; child < end; child++)
+		{
+			search(level - 1, child, minX, minY, maxX, maxY, action);
+		}
+	}
+
+	/**
+	 * Clé de tri associant une coordonnée et un identifiant : les clés sont
+	 * ordonnées selon la coordonnée
+	 */
+	private static long key(double coordinate, int id)
+	{
+		int bits = Float.floatToIntBits((float) coordinate);
+		bits ^= (bits >> 31) & 0x7FFFFFFF;
+		return ((long) bits << 32) | (id & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * Agrandissement d'un rectangle (minX, minY, maxX, maxY) rangé dans un
+	 * tableau
+	 */
+	private static void add(double[] nodes, int o, double minX, double minY,
+		double maxX, double maxY)
+	{
+		nodes[o] = Math.min(nodes[o], minX);
+		nodes[o + 1] = Math.min(nodes[o + 1], minY);
+		nodes[o + 2] = Math.max(nodes[o + 2], maxX);
+		nodes[o + 3] = Math.max(nodes[o + 3], maxY);
+	}
+}
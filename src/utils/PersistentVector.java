@@ -0,0 +1,380 @@
+package utils;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+
+/**
+ * Vecteur persistant (immuable) à partage de structure : les éléments sont
+ * rangés dans un arbre de tableaux de {@link #width} cases (plus un tableau
+ * terminal pour les derniers éléments). Chaque modification
+ * ({@link #append(Object)}, {@link #update(int, Object)},
+ * {@link #dropLast()}) renvoie un nouveau vecteur qui ne recopie que le
+ * chemin de la racine à la feuille concernée (O(log32 n)) et partage tout le
+ * reste avec le vecteur d'origine, qui reste inchangé. Conserver une version
+ * ne coûte donc rien et plusieurs threads peuvent parcourir des versions
+ * différentes sans verrou.
+ *
+ * @param <T> le type des éléments
+ * @author davidroussel
+ */
+public final class PersistentVector<T> extends AbstractList<T>
+	implements RandomAccess
+{
+	/**
+	 * Nombre de bits d'indice par niveau de l'arbre
+	 */
+	private final static int bits = 5;
+
+	/**
+	 * Nombre de cases des noeuds de l'arbre
+	 */
+	private final static int width = 1 << bits;
+
+	/**
+	 * Masque d'indice dans un noeud
+	 */
+	private final static int mask = width - 1;
+
+	/**
+	 * Noeud vide
+	 */
+	private final static Object[] emptyNode = new Object[width];
+
+	/**
+	 * Le vecteur vide
+	 */
+	private final static PersistentVector<?> empty =
+		new PersistentVector<Object>(0, bits, emptyNode, new Object[0]);
+
+	/**
+	 * Nombre d'éléments
+	 */
+	private final int size;
+
+	/**
+	 * Décalage (en bits) de l'indice pour la racine de l'arbre
+	 */
+	private final int shift;
+
+	/**
+	 * Racine de l'arbre (noeuds internes de {@link #width} cases dont les
+	 * feuilles contiennent les éléments)
+	 */
+	private final Object[] root;
+
+	/**
+	 * Derniers éléments (pas encore rangés dans l'arbre)
+	 */
+	private final Object[] tail;
+
+	/**
+	 * Constructeur
+	 */
+	private PersistentVector(int size, int shift, Object[] root, Object[] tail)
+	{
+		this.size = size;
+		this.shift = shift;
+		this.root = root;
+		this.tail = tail;
+	}
+
+	/**
+	 * Accès au vecteur vide
+	 * @param <T> le type des éléments
+	 * @return le vecteur vide
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> PersistentVector<T> empty()
+	{
+		return (PersistentVector<T>) empty;
+	}
+
+	@Override
+	public int size()
+	{
+		return size;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public T get(int index)
+	{
+		return (T) leafFor(index)[index & mask];
+	}
+
+	/**
+	 * Ajout d'un élément en fin de vecteur
+	 * @param element l'élément à ajouter
+	 * @return un nouveau vecteur contenant les éléments de ce vecteur suivis
+	 * de element
+	 */
+	public PersistentVector<T> append(T element)
+	{
+		if (size - tailOffset() < width)
+		{
+			Object[] newTail = Arrays.copyOf(tail, tail.length + 1);
+			newTail[tail.length] = element;
+			return new PersistentVector<T>(size + 1, shift, root, newTail);
+		}
+
+		// le tableau terminal est plein : il est rangé dans l'arbre
+		Object[] newRoot;
+		int newShift = shift;
+		if ((size >>> bits) > (1 << shift))
+		{
+			// la racine est pleine : l'arbre grandit d'un niveau
+			newRoot = new Object[width];
+			newRoot[0] = root;
+			newRoot[1] = newPath(shift, tail);
+			newShift += bits;
+		}
+		else
+		{
+			newRoot = pushTail(shift, root, tail);
+		}
+		return new PersistentVector<T>(size + 1, newShift, newRoot,
+		                               new Object[] { element });
+	}
+
+	/**
+	 * Remplacement d'un élément
+	 * @param index l'indice de l'élément à remplacer
+	 * @param element le nouvel élément
+	 * @return un nouveau vecteur identique à celui-ci sauf pour l'élément
+	 * d'indice index
+	 * @throws IndexOutOfBoundsException si l'indice est invalide
+	 */
+	public PersistentVector<T> update(int index, T element)
+		throws IndexOutOfBoundsException
+	{
+		checkIndex(index);
+		if (index >= tailOffset())
+		{
+			Object[] newTail = tail.clone();
+			newTail[index & mask] = element;
+			return new PersistentVector<T>(size, shift, root, newTail);
+		}
+		return new PersistentVector<T>(size, shift,
+		                               update(shift, root, index, element),
+		                               tail);
+	}
+
+	/**
+	 * Retrait du dernier élément
+	 * @return un nouveau vecteur contenant les éléments de ce vecteur sauf le
+	 * dernier
+	 * @throws NoSuchElementException si le vecteur est vide
+	 */
+	public PersistentVector<T> dropLast() throws NoSuchElementException
+	{
+		if (size == 0)
+		{
+			throw new NoSuchElementException("PersistentVector: empty");
+		}
+		if (size == 1)
+		{
+			return empty();
+		}
+		if (size - tailOffset() > 1)
+		{
+			return new PersistentVector<T>(size - 1, shift, root,
+			                               Arrays.copyOf(tail,
+			                                             tail.length - 1));
+		}
+
+		// le tableau terminal devient vide : la dernière feuille le remplace
+		Object[] newTail = leafFor(size - 2);
+		Object[] newRoot = popTail(shift, root);
+		int newShift = shift;
+		if (newRoot == null)
+		{
+			newRoot = emptyNode;
+		}
+		if ((shift > bits) && (newRoot[1] == null))
+		{
+			newRoot = (Object[]) newRoot[0];
+			newShift -= bits;
+		}
+		return new PersistentVector<T>(size - 1, newShift, newRoot, newTail);
+	}
+
+	@Override
+	public Iterator<T> iterator()
+	{
+		return new Iterator<T>()
+		{
+			private int next = 0;
+
+			private Object[] leaf = (size > 0 ? leafFor(0) : null);
+
+			@Override
+			public boolean hasNext()
+			{
+				return next < size;
+			}
+
+			@Override
+			@SuppressWarnings("unchecked")
+			public T next()
+			{
+				if (next >= size)
+				{
+					throw new NoSuchElementException();
+				}
+				if ((next > 0) && ((next & mask) == 0))
+				{
+					leaf = leafFor(next);
+				}
+				return (T) leaf[next++ & mask];
+			}
+		};
+	}
+
+	/**
+	 * Indice du premier élément du tableau terminal
+	 * @return le nombre d'éléments rangés dans l'arbre
+	 */
+	private int tailOffset()
+	{
+		return (size < width ? 0 : ((size - 1) >>> bits) << bits);
+	}
+
+	/**
+	 * Feuille (ou tableau terminal) contenant un élément
+	 * @param index l'indice de l'élément
+	 * @return le tableau contenant l'élément
+	 * @throws IndexOutOfBoundsException si l'indice est invalide
+	 */
+	private Object[] leafFor(int index) throws IndexOutOfBoundsException
+	{
+		checkIndex(index);
+		if (index >= tailOffset())
+		{
+			return tail;
+		}
+		Object[] node = root;
+		for (int level = shift; level > 0; level -= bits)
+		{
+			node = (Object[]) node[(index >>> level) & mask];
+		}
+		return node;
+	}
+
+	/**
+	 * Rangement du tableau terminal (plein) dans l'arbre en recopiant le
+	 * chemin jusqu'à sa position
+	 * @param level le niveau du noeud
+	 * @param parent le noeud
+	 * @param leaf le tableau terminal à ranger
+	 * @return la copie du noeud contenant la nouvelle feuille
+	 */
+	private Object[] pushTail(int level, Object[] parent, Object[] leaf)
+	{
+		int sub = ((size - 1) >>> level) & mask;
+		Object[] node = parent.clone();
+		Object child;
+		if (level == bits)
+		{
+			child = leaf;
+		}
+		else
+		{
+			Object[] existing = (Object[]) parent[sub];
+			child = (existing != null ? pushTail(level - bits, existing, leaf)
+			                          : newPath(level - bits, leaf));
+		}
+		node[sub] = child;
+		return node;
+	}
+
+	/**
+	 * Création d'un chemin de noeuds jusqu'à une feuille
+	 * @param level le niveau du premier noeud
+	 * @param leaf la feuille
+	 * @return le premier noeud du chemin
+	 */
+	private static Object[] newPath(int level, Object[] leaf)
+	{
+		if (level == 0)
+		{
+			return leaf;
+		}
+		Object[] node = new Object[width];
+		node[0] = newPath(level - bits, leaf);
+		return node;
+	}
+
+	/**
+	 * Remplacement d'un élément de l'arbre en recopiant le chemin jusqu'à sa
+	 * feuille
+	 * @param level le niveau du noeud
+	 * @param node le noeud
+	 * @param index l'indice de l'élément
+	 * @param element le nouvel élément
+	 * @return la copie du noeud
+	 */
+	private static Object[] update(int level, Object[] node, int index,
+		Object element)
+	{
+		Object[] copy = node.clone();
+		if (level == 0)
+		{
+			copy[index & mask] = element;
+		}
+		else
+		{
+			int sub = (index >>> level) & mask;
+			copy[sub] = update(level - bits, (Object[]) node[sub], index,
+			                   element);
+		}
+		return copy;
+	}
+
+	/**
+	 * Retrait de la dernière feuille de l'arbre en recopiant le chemin
+	 * jusqu'à celle-ci
+	 * @param level le niveau du noeud
+	 * @param node le noeud
+	 * @return la copie du noeud sans la dernière feuille ou null si le noeud
+	 * devient vide
+	 */
+	private Object[] popTail(int level, Object[] node)
+	{
+		int sub = ((size - 2) >>> level) & mask;
+		if (level > bits)
+		{
+			Object[] child = popTail(level - bits, (Object[]) node[sub]);
+			if ((child == null) && (sub == 0))
+			{
+				return null;
+			}
+			Object[] copy = node.clone();
+			copy[sub] = child;
+			return copy;
+		}
+		if (sub == 0)
+		{
+			return null;
+		}
+		Object[] copy = node.clone();
+		copy[sub] = null;
+		return copy;
+	}
+
+	/**
+	 * Vérification d'un indice
+	 * @param index l'indice à vérifier
+	 * @throws IndexOutOfBoundsException si l'indice est invalide
+	 */
+	private void checkIndex(int index) throws IndexOutOfBoundsException
+	{
+		if ((index < 0) || (index >= size))
+		{
+			throw new IndexOutOfBoundsException("PersistentVector: index "
+				+ index + " out of " + size);
+		}
+	}
+}
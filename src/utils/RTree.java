@@ -0,0 +1,603 @@
+package utils;
+
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Index spatial (R-tree) associant des éléments à leur rectangle englobant
+ * afin de pouvoir retrouver rapidement les éléments dont le rectangle
+ * englobant contient un point ou intersecte une zone.
+ * Les noeuds contiennent entre {@link #MinEntries} et {@link #MaxEntries}
+ * entrées et sont découpés selon l'algorithme quadratique de Guttman.
+ * Les éléments sont identifiés par leur référence (et non par equals) ce qui
+ * permet de mettre à jour le rectangle englobant d'un élément déjà indexé.
+ *
+ * @author davidroussel
+ * @param <T> le type des éléments indexés
+ */
+public class RTree<T>
+{
+	/**
+	 * Nombre maximum d'entrées dans un noeud
+	 */
+	private static final int MaxEntries = 16;
+
+	/**
+	 * Nombre minimum d'entrées dans un noeud (sauf la racine)
+	 */
+	private static final int MinEntries = 6;
+
+	/**
+	 * Entrée d'un noeud : un rectangle englobant associé soit à un noeud fils
+	 * (noeuds internes) soit à un élément (feuilles)
+	 */
+	private static class Entry<T>
+	{
+		double minX, minY, maxX, maxY;
+
+		/**
+		 * Le noeud fils (noeuds internes uniquement)
+		 */
+		Node<T> child;
+
+		/**
+		 * L'élément indexé (feuilles uniquement)
+		 */
+		T item;
+
+		Entry(double minX, double minY, double maxX, double maxY)
+		{
+			this.minX = minX;
+			this.minY = minY;
+			this.maxX = maxX;
+			this.maxY = maxY;
+		}
+
+		double area()
+		{
+			return (maxX - minX) * (maxY - minY);
+		}
+
+		double enlargement(Entry<T> e)
+		{
+			return (Math.max(maxX, e.maxX) - Math.min(minX, e.minX))
+				* (Math.max(maxY, e.maxY) - Math.min(minY, e.minY)) - area();
+		}
+
+		void include(Entry<T> e)
+		{
+			minX = Math.min(minX, e.minX);
+			minY = Math.min(minY, e.minY);
+			maxX = Math.max(maxX, e.maxX);
+			maxY = Math.max(maxY, e.maxY);
+		}
+
+		boolean contains(Entry<T> e)
+		{
+			return e.minX >= minX && e.maxX <= maxX && e.minY >= minY
+				&& e.maxY <= maxY;
+		}
+
+		boolean intersects(double x0, double y0, double x1, double y1)
+		{
+			return x0 <= maxX && x1 >= minX && y0 <= maxY && y1 >= minY;
+		}
+	}
+
+	/**
+	 * Noeud de l'arbre
+	 */
+	private static class Node<T>
+	{
+		final boolean leaf;
+
+		Node<T> parent;
+
+		final List<Entry<T>> entries = new ArrayList<Entry<T>>(MaxEntries + 1);
+
+		Node(boolean leaf)
+		{
+			this.leaf = leaf;
+		}
+
+		/**
+		 * Entrée du noeud parent pointant vers ce noeud
+		 */
+		Entry<T> parentEntry()
+		{
+			for (Entry<T> e : parent.entries)
+			{
+				if (e.child == this)
+				{
+					return e;
+				}
+			}
+			throw new AssertionError("RTree: orphan node");
+		}
+
+		/**
+		 * Recalcul du rectangle englobant les entrées de ce noeud dans e
+		 */
+		void computeBounds(Entry<T> e)
+		{
+			e.minX = Double.POSITIVE_INFINITY;
+			e.minY = Double.POSITIVE_INFINITY;
+			e.maxX = Double.NEGATIVE_INFINITY;
+			e.maxY = Double.NEGATIVE_INFINITY;
+			for (Entry<T> c : entries)
+			{
+				e.include(c);
+			}
+		}
+	}
+
+	/**
+	 * La racine de l'arbre
+	 */
+	private Node<T> root;
+
+	/**
+	 * Les rectangles englobants actuellement indexés pour chaque élément
+	 */
+	private Map<T, Rectangle2D> bounds;
+
+	/**
+	 * Constructeur d'un index vide
+	 */
+	public RTree()
+	{
+		root = new Node<T>(true);
+		bounds = new IdentityHashMap<T, Rectangle2D>();
+	}
+
+	/**
+	 * Nombre d'éléments indexés
+	 * @return le nombre d'éléments indexés
+	 */
+	public int size()
+	{
+		return bounds.size();
+	}
+
+	/**
+	 * Teste si un élément est indexé
+	 * @param item l'élément recherché
+	 * @return true si l'élément est indexé
+	 */
+	public boolean contains(T item)
+	{
+		return bounds.containsKey(item);
+	}
+
+	/**
+	 * Rectangle englobant sous lequel un élément est actuellement indexé
+	 * @param item l'élément recherché
+	 * @return une copie du rectangle englobant de l'élément ou null si
+	 * l'élément n'est pas indexé
+	 */
+	public Rectangle2D getBounds(T item)
+	{
+		Rectangle2D r = bounds.get(item);
+		return (r != null ? (Rectangle2D) r.clone() : null);
+	}
+
+	/**
+	 * Rectangle englobant l'ensemble des éléments indexés
+	 * @return le rectangle englobant tous les éléments ou null si l'index
+	 * est vide
+	 */
+	public Rectangle2D getExtent()
+	{
+		if (root.entries.isEmpty())
+		{
+			return null;
+		}
+		Entry<T> e = new Entry<T>(0, 0, 0, 0);
+		root.computeBounds(e);
+		return new Rectangle2D.Double(e.minX, e.minY, e.maxX - e.minX,
+			e.maxY - e.minY);
+	}
+
+	/**
+	 * Ajout d'un élément à l'index (ou mise à jour s'il est déjà indexé)
+	 * @param item l'élément à indexer
+	 * @param r le rectangle englobant de l'élément
+	 */
+	public void insert(T item, Rectangle2D r)
+	{
+		if (bounds.containsKey(item))
+		{
+			update(item, r);
+			return;
+		}
+		bounds.put(item, (Rectangle2D) r.clone());
+		Entry<T> e = new Entry<T>(r.getMinX(), r.getMinY(), r.getMaxX(),
+			r.getMaxY());
+		e.item = item;
+		insert(e);
+	}
+
+	/**
+	 * Mise à jour du rectangle englobant d'un élément. Ne modifie pas l'arbre
+	 * si le rectangle est inchangé.
+	 * @param item l'élément à mettre à jour
+	 * @param r le nouveau rectangle englobant de l'élément
+	 * @return le rectangle englobant sous lequel l'élément était précédemment
+	 * indexé ou null s'il n'était pas indexé (il est alors ajouté)
+	 */
+	public Rectangle2D update(T item, Rectangle2D r)
+	{
+		Rectangle2D old = bounds.get(item);
+		if (old == null)
+		{
+			insert(item, r);
+			return null;
+		}
+		if (!old.equals(r))
+		{
+			remove(item);
+			insert(item, r);
+		}
+		return old;
+	}
+
+	/**
+	 * Retrait d'un élément de l'index
+	 * @param item l'élément à retirer
+	 * @return true si l'élément était indexé et a été retiré
+	 */
+	public boolean remove(T item)
+	{
+		Rectangle2D r = bounds.remove(item);
+		if (r == null)
+		{
+			return false;
+		}
+		Entry<T> key = new Entry<T>(r.getMinX(), r.getMinY(), r.getMaxX(),
+			r.getMaxY());
+		Node<T> leaf = findLeaf(root, item, key);
+		if (leaf == null)
+		{
+			throw new AssertionError("RTree: indexed item not found " + item);
+		}
+		for (int i = 0; i < leaf.entries.size(); i++)
+		{
+			if (leaf.entries.get(i).item == item)
+			{
+				leaf.entries.remove(i);
+				break;
+			}
+		}
+		condenseTree(leaf);
+		return true;
+	}
+
+	/**
+	 * Effacement de l'index
+	 */
+	public void clear()
+	{
+		root = new Node<T>(true);
+		bounds.clear();
+	}
+
+	/**
+	 * Recherche des éléments dont le rectangle englobant contient un point
+	 * @param p le point recherché
+	 * @return la liste (dans un ordre quelconque) des éléments dont le
+	 * rectangle englobant contient le point p
+	 */
+	public List<T> search(Point2D p)
+	{
+		List<T> result = new ArrayList<T>();
+		double x = p.getX();
+		double y = p.getY();
+		search(root, x, y, x, y, result);
+		return result;
+	}
+
+	/**
+	 * Recherche des éléments dont le rectangle englobant intersecte une zone
+	 * @param r la zone recherchée
+	 * @return la liste (dans un ordre quelconque) des éléments dont le
+	 * rectangle englobant intersecte la zone r
+	 */
+	public List<T> search(Rectangle2D r)
+	{
+		List<T> result = new ArrayList<T>();
+		search(root, r.getMinX(), r.getMinY(), r.getMaxX(), r.getMaxY(),
+			result);
+		return result;
+	}
+
+	/**
+	 * Recherche récursive des éléments intersectant une zone
+	 */
+	private void search(Node<T> node, double x0, double y0, double x1,
+		double y1, List<T> result)
+	{
+		for (Entry<T> e : node.entries)
+		{
+			if (e.intersects(x0, y0, x1, y1))
+			{
+				if (node.leaf)
+				{
+					result.add(e.item);
+				}
+				else
+				{
+					search(e.child, x0, y0, x1, y1, result);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Insertion d'une entrée de feuille dans l'arbre
+	 */
+	private void insert(Entry<T> e)
+	{
+		Node<T> leaf = root;
+		while (!leaf.leaf)
+		{
+			// premier fils par défaut : les agrandissements peuvent être
+			// infinis ou NaN pour des coordonnées démesurées
+			Entry<T> best = leaf.entries.get(0);
+			double bestEnlargement = best.enlargement(e);
+			for (Entry<T> c : leaf.entries)
+			{
+				double enlargement = c.enlargement(e);
+				if ((enlargement < bestEnlargement)
+					|| ((enlargement == bestEnlargement)
+						&& (c.area() < best.area())))
+				{
+					best = c;
+					bestEnlargement = enlargement;
+				}
+			}
+			leaf = best.child;
+		}
+
+		leaf.entries.add(e);
+		adjustTree(leaf, leaf.entries.size() > MaxEntries ? split(leaf) : null);
+	}
+
+	/**
+	 * Propagation vers la racine des modifications de rectangles englobants
+	 * et des découpages de noeuds
+	 * @param node le noeud modifié
+	 * @param sibling le noeud issu du découpage de node ou null
+	 */
+	private void adjustTree(Node<T> node, Node<T> sibling)
+	{
+		while (node != root)
+		{
+			Node<T> parent = node.parent;
+			node.computeBounds(node.parentEntry());
+			if (sibling != null)
+			{
+				addChild(parent, sibling);
+				sibling = (parent.entries.size() > MaxEntries ? split(parent)
+					: null);
+			}
+			node = parent;
+		}
+
+		if (sibling != null)
+		{
+			// Découpage de la racine : l'arbre grandit d'un niveau
+			Node<T> newRoot = new Node<T>(false);
+			addChild(newRoot, root);
+			addChild(newRoot, sibling);
+			root = newRoot;
+		}
+	}
+
+	/**
+	 * Ajout d'un noeud fils à un noeud interne
+	 * @param parent le noeud interne
+	 * @param child le noeud fils à ajouter
+	 */
+	private void addChild(Node<T> parent, Node<T> child)
+	{
+		Entry<T> e = new Entry<T>(0, 0, 0, 0);
+		e.child = child;
+		child.computeBounds(e);
+		child.parent = parent;
+		parent.entries.add(e);
+	}
+
+	/**
+	 * Découpage quadratique d'un noeud trop plein
+	 * @param node le noeud à découper, qui conserve le premier groupe
+	 * @return le nouveau noeud contenant le second groupe
+	 */
+	private Node<T> split(Node<T> node)
+	{
+		List<Entry<T>> remaining = new ArrayList<Entry<T>>(node.entries);
+		node.entries.clear();
+		Node<T> sibling = new Node<T>(node.leaf);
+
+		// Choix des deux entrées les plus éloignées comme germes
+		int seed1 = 0;
+		int seed2 = 1;
+		double worst = Double.NEGATIVE_INFINITY;
+		for (int i = 0; i < remaining.size(); i++)
+		{
+			Entry<T> a = remaining.get(i);
+			for (int j = i + 1; j < remaining.size(); j++)
+			{
+				Entry<T> b = remaining.get(j);
+				double waste = a.enlargement(b) - b.area();
+				if (waste > worst)
+				{
+					worst = waste;
+					seed1 = i;
+					seed2 = j;
+				}
+			}
+		}
+		Entry<T> e2 = remaining.remove(seed2);
+		Entry<T> e1 = remaining.remove(seed1);
+		node.entries.add(e1);
+		sibling.entries.add(e2);
+		Entry<T> b1 = new Entry<T>(e1.minX, e1.minY, e1.maxX, e1.maxY);
+		Entry<T> b2 = new Entry<T>(e2.minX, e2.minY, e2.maxX, e2.maxY);
+
+		while (!remaining.isEmpty())
+		{
+			if (node.entries.size() + remaining.size() <= MinEntries)
+			{
+				node.entries.addAll(remaining);
+				break;
+			}
+			if (sibling.entries.size() + remaining.size() <= MinEntries)
+			{
+				sibling.entries.addAll(remaining);
+				break;
+			}
+
+			// Entrée ayant la plus forte préférence pour l'un des groupes
+			int next = 0;
+			double maxDiff = Double.NEGATIVE_INFINITY;
+			for (int i = 0; i < remaining.size(); i++)
+			{
+				Entry<T> e = remaining.get(i);
+				double diff = Math.abs(b1.enlargement(e) - b2.enlargement(e));
+				if (diff > maxDiff)
+				{
+					maxDiff = diff;
+					next = i;
+				}
+			}
+			Entry<T> e = remaining.remove(next);
+			double d1 = b1.enlargement(e);
+			double d2 = b2.enlargement(e);
+			boolean toFirst;
+			if (d1 != d2)
+			{
+				toFirst = d1 < d2;
+			}
+			else if (b1.area() != b2.area())
+			{
+				toFirst = b1.area() < b2.area();
+			}
+			else
+			{
+				toFirst = node.entries.size() <= sibling.entries.size();
+			}
+			if (toFirst)
+			{
+				node.entries.add(e);
+				b1.include(e);
+			}
+			else
+			{
+				sibling.entries.add(e);
+				b2.include(e);
+			}
+		}
+
+		if (!sibling.leaf)
+		{
+			for (Entry<T> e : sibling.entries)
+			{
+				e.child.parent = sibling;
+			}
+		}
+
+		return sibling;
+	}
+
+	/**
+	 * Recherche de la feuille contenant un élément
+	 */
+	private Node<T> findLeaf(Node<T> node, T item, Entry<T> key)
+	{
+		for (Entry<T> e : node.entries)
+		{
+			if (node.leaf)
+			{
+				if (e.item == item)
+				{
+					return node;
+				}
+			}
+			else if (e.contains(key))
+			{
+				Node<T> leaf = findLeaf(e.child, item, key);
+				if (leaf != null)
+				{
+					return leaf;
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Réorganisation de l'arbre après un retrait : les noeuds sous-remplis
+	 * sont supprimés et leurs éléments réinsérés
+	 * @param leaf la feuille de laquelle une entrée a été retirée
+	 */
+	private void condenseTree(Node<T> leaf)
+	{
+		List<Entry<T>> orphans = new ArrayList<Entry<T>>();
+		Node<T> node = leaf;
+		while (node != root)
+		{
+			Node<T> parent = node.parent;
+			Entry<T> e = node.parentEntry();
+			if (node.entries.size() < MinEntries)
+			{
+				parent.entries.remove(e);
+				collectLeafEntries(node, orphans);
+			}
+			else
+			{
+				node.computeBounds(e);
+			}
+			node = parent;
+		}
+
+		if (!root.leaf)
+		{
+			if (root.entries.isEmpty())
+			{
+				root = new Node<T>(true);
+			}
+			else if (root.entries.size() == 1)
+			{
+				root = root.entries.get(0).child;
+				root.parent = null;
+			}
+		}
+
+		for (Entry<T> e : orphans)
+		{
+			insert(e);
+		}
+	}
+
+	/**
+	 * Collecte de toutes les entrées de feuilles sous un noeud
+	 */
+	private void collectLeafEntries(Node<T> node, List<Entry<T>> result)
+	{
+		if (node.leaf)
+		{
+			result.addAll(node.entries);
+		}
+		else
+		{
+			for (Entry<T> e : node.entries)
+			{
+				collectLeafEntries(e.child, result);
+			}
+		}
+	}
+}
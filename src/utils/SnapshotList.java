@@ -0,0 +1,222 @@
+package utils;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+import java.util.Spliterator;
+import java.util.Spliterators;
+
+/**
+ * Liste d'éléments publiant un instantané immuable à chaque modification.
+ * Les lecteurs obtiennent le dernier instantané publié ({@link #snapshot()})
+ * et le parcourent sans aucun verrou, quelles que soient les modifications
+ * effectuées pendant ce parcours. Les modifications passent par un unique
+ * chemin d'écriture (méthodes synchronisées).
+ * Les éléments sont rangés dans un tableau partagé par les instantanés
+ * successifs : un ajout en fin de liste écrit dans une case qu'aucun
+ * instantané ne voit encore et ne recopie donc pas le tableau (sauf pour
+ * l'agrandir). Seul l'ajout qui suit un retrait, et qui réutiliserait une
+ * case encore visible par un ancien instantané, recopie le tableau.
+ *
+ * @param <T> le type des éléments
+ * @author davidroussel
+ */
+public class SnapshotList<T>
+{
+	/**
+	 * Capacité initiale du tableau des éléments
+	 */
+	private final static int initialCapacity = 16;
+
+	/**
+	 * Instantané immuable de la liste
+	 * @param <T> le type des éléments
+	 */
+	public static final class Snapshot<T> extends AbstractList<T>
+		implements RandomAccess
+	{
+		/**
+		 * Tableau des éléments (dont seules les size premières cases, qui ne
+		 * sont plus jamais modifiées, appartiennent à l'instantané)
+		 */
+		private final Object[] elements;
+
+		/**
+		 * Nombre d'éléments de l'instantané
+		 */
+		private final int size;
+
+		/**
+		 * Constructeur
+		 */
+		Snapshot(Object[] elements, int size)
+		{
+			this.elements = elements;
+			this.size = size;
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public T get(int index)
+		{
+			if ((index < 0) || (index >= size))
+			{
+				throw new IndexOutOfBoundsException("Snapshot: index "
+					+ index + " out of " + size);
+			}
+			return (T) elements[index];
+		}
+
+		@Override
+		public int size()
+		{
+			return size;
+		}
+
+		@Override
+		public Iterator<T> iterator()
+		{
+			return new Iterator<T>()
+			{
+				private int next = 0;
+
+				@Override
+				public boolean hasNext()
+				{
+					return next < size;
+				}
+
+				@Override
+				@SuppressWarnings("unchecked")
+				public T next()
+				{
+					if (next >= size)
+					{
+						throw new NoSuchElementException();
+					}
+					return (T) elements[next++];
+				}
+			};
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public Spliterator<T> spliterator()
+		{
+			return (Spliterator<T>) Spliterators.spliterator(elements, 0,
+				size, Spliterator.ORDERED | Spliterator.IMMUTABLE);
+		}
+	}
+
+	/**
+	 * Le dernier instantané publié
+	 */
+	private volatile Snapshot<T> snapshot;
+
+	/**
+	 * Tableau des éléments (modifié uniquement par le chemin d'écriture)
+	 */
+	private Object[] elements;
+
+	/**
+	 * Nombre de cases du tableau {@link #elements} ayant été visibles par un
+	 * instantané et ne pouvant donc plus être modifiées
+	 */
+	private int published;
+
+	/**
+	 * Constructeur d'une liste vide
+	 */
+	public SnapshotList()
+	{
+		elements = new Object[initialCapacity];
+		published = 0;
+		snapshot = new Snapshot<T>(elements, 0);
+	}
+
+	/**
+	 * Accès au dernier instantané publié
+	 * @return une liste immuable des éléments lors de la dernière
+	 * modification, qui peut être parcourue sans verrou
+	 */
+	public Snapshot<T> snapshot()
+	{
+		return snapshot;
+	}
+
+	/**
+	 * Nombre d'éléments
+	 * @return le nombre d'éléments du dernier instantané
+	 */
+	public int size()
+	{
+		return snapshot.size();
+	}
+
+	/**
+	 * Teste si la liste est vide
+	 * @return true si le dernier instantané est vide
+	 */
+	public boolean isEmpty()
+	{
+		return snapshot.isEmpty();
+	}
+
+	/**
+	 * Accès à un élément
+	 * @param index l'index de l'élément
+	 * @return l'élément d'index index du dernier instantané
+	 */
+	public T get(int index)
+	{
+		return snapshot.get(index);
+	}
+
+	/**
+	 * Ajout d'un élément en fin de liste
+	 * @param element l'élément à ajouter
+	 */
+	public synchronized void add(T element)
+	{
+		int size = snapshot.size();
+		if ((size < published) || (size == elements.length))
+		{
+			// la case à écrire est visible par un ancien instantané ou le
+			// tableau est plein : nouveau tableau
+			elements = Arrays.copyOf(elements,
+				Math.max(initialCapacity, size + (size >> 1) + 1));
+		}
+		elements[size] = element;
+		published = size + 1;
+		snapshot = new Snapshot<T>(elements, size + 1);
+	}
+
+	/**
+	 * Retrait du dernier élément (qui reste visible par les instantanés
+	 * antérieurs)
+	 * @return l'élément retiré ou null si la liste est vide
+	 */
+	public synchronized T removeLast()
+	{
+		int size = snapshot.size();
+		if (size == 0)
+		{
+			return null;
+		}
+		T removed = snapshot.get(size - 1);
+		snapshot = new Snapshot<T>(elements, size - 1);
+		return removed;
+	}
+
+	/**
+	 * Retrait de tous les éléments
+	 */
+	public synchronized void clear()
+	{
+		elements = new Object[initialCapacity];
+		published = 0;
+		snapshot = new Snapshot<T>(elements, 0);
+	}
+}
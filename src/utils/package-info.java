@@ -5,6 +5,13 @@
  * 	<li>une usine à icônes : {@link utils.IconFactory}</li>
  * 	<li>une usine à Paint : {@link utils.PaintFactory}</li>
  * 	<li>une usine à Stroke : {@link utils.StrokeFactory}</li>
+ * 	<li>un index spatial : {@link utils.RTree}</li>
+ * 	<li>un index spatial compacté d'identifiants entiers :
+ * 	{@link utils.PackedRTree}</li>
+ * 	<li>une liste publiant des instantanés immuables :
+ * 	{@link utils.SnapshotList}</li>
+ * 	<li>un vecteur persistant à partage de structure :
+ * 	{@link utils.PersistentVector}</li>
  * </ul>
  */
 package utils;
\ No newline at end of file
@@ -1,17 +1,26 @@
 package widgets;
 
 import java.awt.Color;
+import java.awt.Container;
 import java.awt.Cursor;
 import java.awt.Dimension;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
 import java.awt.Point;
+import java.awt.Rectangle;
 import java.awt.RenderingHints;
+import java.awt.geom.Rectangle2D;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
 import java.awt.event.ComponentAdapter;
 import java.awt.event.ComponentEvent;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
 import java.awt.event.MouseMotionListener;
+import java.awt.event.MouseWheelEvent;
+import java.awt.event.MouseWheelListener;
+import java.awt.geom.AffineTransform;
 import java.awt.geom.Point2D;
 import java.text.DecimalFormat;
 import java.util.Observable;
@@ -19,10 +28,26 @@ import java.util.Observer;
 
 import javax.swing.JLabel;
 import javax.swing.JPanel;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
 
 import figures.Drawing;
+import figures.DrawingChange;
 import figures.Figure;
 import figures.creationListeners.AbstractCreationListener;
+import rendering.BatchRenderer;
+import rendering.DetailRenderer;
+import rendering.DisplayListCompiler;
+import rendering.FigureRenderer;
+import rendering.LayerCache;
+import rendering.MergedDisplayList;
+import rendering.PickBuffer;
+import rendering.ProgressiveRenderer;
+import rendering.QualityController;
+import rendering.RenderThread;
+import rendering.SpriteCache;
+import rendering.TileCache;
+import rendering.TileRenderer;
 
 /**
  * Panel de dessin des figures (Vue): mis à jour par modèle des figures (
@@ -40,6 +65,17 @@ import figures.creationListeners.AbstractCreationListener;
  * pour traduire les évènements souris en instructions pour le modèle de dessin
  * lors de la création d'une nouvelle figure.
  * </dl>
+ * Le dessin peut être affiché au travers d'une vue zoomée et décalée (molette
+ * de la souris avec la touche Ctrl ou Cmd, menu View) : les évènements souris
+ * transmis aux Listeners sont alors exprimés dans le repère du dessin. Les
+ * autres évènements de la molette sont laissés au
+ * {@link javax.swing.JScrollPane} contenant éventuellement ce panel.
+ * Tant que la vue est zoomée ou décalée ({@link #isViewTransformed()}), le
+ * dessin est recopié depuis les tuiles du {@link #tileCache} : le tampon
+ * d'identifiants, le cache de calques, le thread de dessin ainsi que les
+ * dessins progressif, par lots et fusionné ne concernent que la vue à la
+ * taille réelle et sont ignorés jusqu'au retour à celle-ci
+ * ({@link #resetView()}).
  *
  * @author davidroussel
  */
@@ -111,6 +147,131 @@ public class DrawingPanel extends JPanel implements Observer, MouseListener,
 	 */
 	private boolean sendInfoState;
 
+	/**
+	 * Tampon d'identifiants utilisé pour retrouver la figure sous le curseur
+	 * lorsque le mode de sélection par tampon est actif, null sinon.
+	 * @see #setPicking(boolean)
+	 */
+	private PickBuffer pickBuffer;
+
+	/**
+	 * Cache des figures situées sous et au dessus de la figure en cours
+	 * d'édition, utilisé pour ne redessiner que cette dernière pendant une
+	 * création ou un déplacement. null si le cache est désactivé.
+	 * @see #setLayerCaching(boolean)
+	 */
+	private LayerCache layerCache;
+
+	/**
+	 * Cache des images des figures coûteuses à dessiner, null si le cache est
+	 * désactivé (par défaut)
+	 * @see #setSpriteCaching(boolean)
+	 */
+	private SpriteCache spriteCache;
+
+	/**
+	 * Dessinateur parallèle par tuiles utilisé pour redessiner les figures,
+	 * null si le dessin par tuiles est désactivé (par défaut)
+	 * @see #setTiling(boolean)
+	 */
+	private TileRenderer tileRenderer;
+
+	/**
+	 * Dessinateur progressif utilisé pour répartir le dessin des figures sur
+	 * plusieurs rafraichissements, null si le dessin progressif est
+	 * désactivé (par défaut)
+	 * @see #setProgressive(boolean)
+	 */
+	private ProgressiveRenderer progressiveRenderer;
+
+	/**
+	 * Indique si les figures sont dessinées avec un niveau de détail adapté à
+	 * leur taille à l'écran (désactivé par défaut)
+	 * @see #setLevelOfDetail(boolean)
+	 */
+	private boolean levelOfDetail;
+
+	/**
+	 * Dessinateur regroupant les figures par style, null si le regroupement
+	 * est désactivé (par défaut)
+	 * @see #setBatching(boolean)
+	 */
+	private BatchRenderer batchRenderer;
+
+	/**
+	 * Liste d'affichage compilée fusionnant les figures consécutives de même
+	 * style, null si la fusion est désactivée (par défaut)
+	 * @see #setMergedPaths(boolean)
+	 */
+	private MergedDisplayList mergedDisplayList;
+
+	/**
+	 * Indique si les traits sont dessinés sans ajustement sur les pixels
+	 * ({@link RenderingHints#VALUE_STROKE_PURE}), auquel cas les bordures
+	 * pointillées ou épaisses sont dessinées en remplissant leur contour
+	 * mémorisé par chaque figure (désactivé par défaut)
+	 * @see #setStrokedOutlines(boolean)
+	 * @see Figure#usesStrokedShape(Graphics2D)
+	 */
+	private boolean strokedOutlines;
+
+	/**
+	 * Contrôleur de la qualité de rendu en fonction des interactions et de la
+	 * durée des rafraichissements, null si la qualité est toujours maximale
+	 * (par défaut)
+	 * @see #setAdaptiveQuality(boolean)
+	 */
+	private QualityController qualityController;
+
+	/**
+	 * Thread de dessin des listes d'affichage du modèle, null si le dessin
+	 * est effectué par l'EDT (par défaut)
+	 * @see #setThreadedRendering(boolean)
+	 */
+	private RenderThread renderThread;
+
+	/**
+	 * Compilateur des listes d'affichage publiées au {@link #renderThread}
+	 */
+	private DisplayListCompiler displayListCompiler;
+
+	/**
+	 * Taille de la zone de dessin lors de la dernière publication d'une
+	 * liste d'affichage au {@link #renderThread}
+	 */
+	private Dimension publishedSize;
+
+	/**
+	 * Timer déclenchant le rafraichissement suivant tant que le dessin
+	 * progressif n'est pas terminé
+	 */
+	private Timer progressTimer;
+
+	/**
+	 * Niveaux de zoom minimum et maximum de la vue
+	 * @see TileCache#getZoom(int)
+	 */
+	public final static int MinZoomLevel = -4 * TileCache.LevelsPerOctave;
+	public final static int MaxZoomLevel = 4 * TileCache.LevelsPerOctave;
+
+	/**
+	 * Niveau de zoom de la vue (0 pour la taille réelle)
+	 * @see TileCache#getZoom(int)
+	 */
+	private int zoomLevel;
+
+	/**
+	 * Décalage de la vue : position (en pixels au zoom de la vue) du point
+	 * du dessin affiché dans le coin supérieur gauche du panel
+	 */
+	private Point pan;
+
+	/**
+	 * Cache des tuiles par niveau de zoom utilisé pour dessiner la vue
+	 * lorsqu'elle est zoomée ou décalée
+	 */
+	private TileCache tileCache;
+
 	/**
 	 * Constructeur de la zone de dessin à partir d'un modèle de dessin.
 	 *
@@ -154,6 +315,31 @@ public class DrawingPanel extends JPanel implements Observer, MouseListener,
 		}
 
 		this.infoPanel = infoPanel;
+		pickBuffer = null;
+		layerCache = new LayerCache();
+		spriteCache = null;
+		tileRenderer = null;
+		progressiveRenderer = null;
+		levelOfDetail = false;
+		batchRenderer = null;
+		mergedDisplayList = null;
+		strokedOutlines = false;
+		qualityController = null;
+		renderThread = null;
+		displayListCompiler = null;
+		publishedSize = null;
+		zoomLevel = 0;
+		pan = new Point(0, 0);
+		tileCache = new TileCache();
+		progressTimer = new Timer(1, new ActionListener()
+		{
+			@Override
+			public void actionPerformed(ActionEvent e)
+			{
+				repaint();
+			}
+		});
+		progressTimer.setRepeats(false);
 
 		if (this.infoPanel != null)
 		{
@@ -167,6 +353,36 @@ public class DrawingPanel extends JPanel implements Observer, MouseListener,
 		// DrawingPanel est son propre listener d'évènements souris
 		addMouseListener(this);
 		addMouseMotionListener(this);
+
+		// Molette : zoom autour du curseur avec la touche Ctrl (ou Cmd). Les
+		// autres évènements, interceptés par ce listener, sont transmis au
+		// premier conteneur qui les écoute (défilement du JScrollPane).
+		addMouseWheelListener(new MouseWheelListener()
+		{
+			@Override
+			public void mouseWheelMoved(MouseWheelEvent e)
+			{
+				if (e.isControlDown() || e.isMetaDown())
+				{
+					setZoomLevel(zoomLevel - e.getWheelRotation(),
+					             e.getPoint());
+				}
+				else
+				{
+					Container parent = getParent();
+					while ((parent != null)
+						&& (parent.getMouseWheelListeners().length == 0))
+					{
+						parent = parent.getParent();
+					}
+					if (parent != null)
+					{
+						parent.dispatchEvent(SwingUtilities.convertMouseEvent(
+							DrawingPanel.this, e, parent));
+					}
+				}
+			}
+		});
 	}
 
 	/**
@@ -200,10 +416,36 @@ public class DrawingPanel extends JPanel implements Observer, MouseListener,
 
 		// Mise en place du nouveau modèle de dessin
 		drawingModel = drawing;
+		if (pickBuffer != null)
+		{
+			pickBuffer.invalidate();
+		}
+		if (layerCache != null)
+		{
+			layerCache.invalidate();
+		}
+		if (spriteCache != null)
+		{
+			spriteCache.clear();
+		}
+		if (progressiveRenderer != null)
+		{
+			progressiveRenderer.restart();
+		}
+		if (displayListCompiler != null)
+		{
+			displayListCompiler.clear();
+		}
+		if (mergedDisplayList != null)
+		{
+			mergedDisplayList.invalidate();
+		}
+		tileCache.clear();
 		if (drawingModel != null)
 		{
 			drawingModel.addObserver(this);
 		}
+		publishDisplayList();
 	}
 
 	/**
@@ -230,7 +472,635 @@ public class DrawingPanel extends JPanel implements Observer, MouseListener,
 	}
 
 	/**
-	 * Dessin du panel. Effacement ce celui-ci puis dessin des figures.
+	 * Accesseur du niveau de zoom de la vue
+	 * @return le niveau de zoom de la vue (0 pour la taille réelle)
+	 * @see TileCache#getZoom(int)
+	 */
+	public int getZoomLevel()
+	{
+		return zoomLevel;
+	}
+
+	/**
+	 * Accesseur du zoom de la vue
+	 * @return le zoom de la vue (1.0 pour la taille réelle)
+	 */
+	public double getZoom()
+	{
+		return TileCache.getZoom(zoomLevel);
+	}
+
+	/**
+	 * Transformation de la vue : du repère du dessin vers celui du panel
+	 * @return une nouvelle transformation correspondant au zoom et au
+	 * décalage de la vue
+	 */
+	public AffineTransform getViewTransform()
+	{
+		double zoom = getZoom();
+		AffineTransform view = AffineTransform.getTranslateInstance(-pan.x,
+		                                                            -pan.y);
+		view.scale(zoom, zoom);
+		return view;
+	}
+
+	/**
+	 * Teste si la vue est zoomée ou décalée. Le dessin est alors recopié
+	 * depuis les tuiles du {@link #tileCache} et les autres modes de dessin
+	 * et de recherche (tampon d'identifiants, cache de calques, thread de
+	 * dessin, dessins progressif, par lots et fusionné) sont ignorés.
+	 * @return true si la transformation de la vue n'est pas l'identité
+	 */
+	public boolean isViewTransformed()
+	{
+		return (zoomLevel != 0) || (pan.x != 0) || (pan.y != 0);
+	}
+
+	/**
+	 * Changement du niveau de zoom de la vue en conservant le point du
+	 * dessin situé sous un point du panel. Hors de la taille réelle, seul le
+	 * dessin par tuiles est utilisé ({@link #isViewTransformed()}).
+	 * @param level le nouveau niveau de zoom (borné par {@link #MinZoomLevel}
+	 * et {@link #MaxZoomLevel})
+	 * @param anchor le point du panel qui reste fixe
+	 */
+	public void setZoomLevel(int level, Point2D anchor)
+	{
+		level = Math.max(MinZoomLevel, Math.min(MaxZoomLevel, level));
+		if (level != zoomLevel)
+		{
+			double ratio = TileCache.getZoom(level) / getZoom();
+			pan.setLocation(
+				Math.round(((anchor.getX() + pan.x) * ratio) - anchor.getX()),
+				Math.round(((anchor.getY() + pan.y) * ratio) - anchor.getY()));
+			zoomLevel = level;
+			viewChanged();
+		}
+	}
+
+	/**
+	 * Zoom avant d'un niveau autour du centre du panel
+	 */
+	public void zoomIn()
+	{
+		setZoomLevel(zoomLevel + 1,
+		             new Point(getWidth() / 2, getHeight() / 2));
+	}
+
+	/**
+	 * Zoom arrière d'un niveau autour du centre du panel
+	 */
+	public void zoomOut()
+	{
+		setZoomLevel(zoomLevel - 1,
+		             new Point(getWidth() / 2, getHeight() / 2));
+	}
+
+	/**
+	 * Déplacement de la vue
+	 * @param dx le déplacement horizontal (en pixels du panel)
+	 * @param dy le déplacement vertical (en pixels du panel)
+	 */
+	public void panBy(int dx, int dy)
+	{
+		if ((dx != 0) || (dy != 0))
+		{
+			pan.translate(dx, dy);
+			viewChanged();
+		}
+	}
+
+	/**
+	 * Retour à la taille réelle sans décalage
+	 */
+	public void resetView()
+	{
+		if (isViewTransformed())
+		{
+			zoomLevel = 0;
+			pan.setLocation(0, 0);
+			viewChanged();
+		}
+	}
+
+	/**
+	 * Ajustement de la vue pour afficher l'ensemble du dessin : plus grand
+	 * niveau de zoom dans lequel l'étendue du dessin (maintenue par son index
+	 * spatial) tient dans le panel, puis centrage de cette étendue.
+	 */
+	public void fitToDrawing()
+	{
+		Rectangle2D extent =
+			(drawingModel != null ? drawingModel.getExtent() : null);
+		if ((extent == null) || (getWidth() <= 0) || (getHeight() <= 0))
+		{
+			resetView();
+			return;
+		}
+		double zoom = Math.min(getWidth() / Math.max(extent.getWidth(), 1.0),
+		                       getHeight() / Math.max(extent.getHeight(), 1.0));
+		zoomLevel = Math.max(MinZoomLevel,
+			Math.min(MaxZoomLevel, TileCache.getLevel(zoom)));
+		zoom = getZoom();
+		pan.setLocation(Math.round((extent.getCenterX() * zoom)
+		                           - (getWidth() / 2.0)),
+		                Math.round((extent.getCenterY() * zoom)
+		                           - (getHeight() / 2.0)));
+		viewChanged();
+	}
+
+	/**
+	 * Prise en compte d'un changement de la vue : le tampon d'identifiants,
+	 * le cache de calques et le dessin progressif, construits à la taille
+	 * réelle, sont invalidés
+	 */
+	private void viewChanged()
+	{
+		if (pickBuffer != null)
+		{
+			pickBuffer.invalidate();
+		}
+		if (layerCache != null)
+		{
+			layerCache.invalidate();
+		}
+		if (progressiveRenderer != null)
+		{
+			progressiveRenderer.restart();
+		}
+		repaint();
+	}
+
+	/**
+	 * Conversion d'un point du repère du panel dans le repère du dessin.
+	 * Les coordonnées obtenues ne sont pas arrondies : un pixel de la vue
+	 * zoomée correspond à une fraction d'unité du dessin.
+	 * @param p le point (dans le repère du panel, celui des évènements
+	 * souris)
+	 * @return le point dans le repère du dessin
+	 */
+	public Point2D toDrawing(Point2D p)
+	{
+		double zoom = getZoom();
+		return new Point2D.Double((p.getX() + pan.x) / zoom,
+		                          (p.getY() + pan.y) / zoom);
+	}
+
+	/**
+	 * Accesseur de l'état du mode de sélection par tampon d'identifiants
+	 * @return true si la figure sous le curseur est recherchée dans un
+	 * {@link PickBuffer}, false si elle est recherchée géométriquement dans le
+	 * modèle de dessin
+	 */
+	public boolean isPicking()
+	{
+		return pickBuffer != null;
+	}
+
+	/**
+	 * Mise en place ou retrait du mode de sélection par tampon
+	 * d'identifiants. Dans ce mode la figure sous le curseur est obtenue par
+	 * la lecture d'un pixel dans un {@link PickBuffer} reconstruit uniquement
+	 * lorsque le dessin change.
+	 * @param picking le nouvel état du mode de sélection par tampon
+	 */
+	public void setPicking(boolean picking)
+	{
+		if (picking != isPicking())
+		{
+			pickBuffer = (picking ? new PickBuffer() : null);
+		}
+	}
+
+	/**
+	 * Accesseur de l'état du cache de calques
+	 * @return true si les figures figées sont conservées dans un
+	 * {@link LayerCache} pendant l'édition d'une figure
+	 */
+	public boolean isLayerCaching()
+	{
+		return layerCache != null;
+	}
+
+	/**
+	 * Mise en place ou retrait du cache de calques. Lorsqu'il est actif et
+	 * qu'une figure est en cours d'édition, seule cette figure est redessinée
+	 * par dessus les images des autres figures.
+	 * @param caching le nouvel état du cache de calques
+	 */
+	public void setLayerCaching(boolean caching)
+	{
+		if (caching != isLayerCaching())
+		{
+			layerCache = (caching ? new LayerCache() : null);
+			repaint();
+		}
+	}
+
+	/**
+	 * Accesseur de l'état du cache d'images des figures
+	 * @return true si les figures coûteuses à dessiner sont conservées dans
+	 * un {@link SpriteCache}
+	 */
+	public boolean isSpriteCaching()
+	{
+		return spriteCache != null;
+	}
+
+	/**
+	 * Mise en place ou retrait du cache d'images des figures. Lorsqu'il est
+	 * actif, les figures coûteuses à dessiner sont recopiées depuis leur
+	 * image tant que seule leur position change.
+	 * @param caching le nouvel état du cache d'images
+	 */
+	public void setSpriteCaching(boolean caching)
+	{
+		if (caching != isSpriteCaching())
+		{
+			spriteCache = (caching ? new SpriteCache() : null);
+			if (layerCache != null)
+			{
+				layerCache.invalidate();
+			}
+			tileCache.clear();
+			repaint();
+		}
+	}
+
+	/**
+	 * Accesseur de l'état du dessin par tuiles
+	 * @return true si les figures sont dessinées en parallèle par tuiles
+	 */
+	public boolean isTiling()
+	{
+		return tileRenderer != null;
+	}
+
+	/**
+	 * Mise en place ou retrait du dessin parallèle par tuiles. Lorsqu'il est
+	 * actif, la zone à redessiner est découpée en tuiles dessinées en
+	 * parallèle puis recopiées dans le panel. Le cache d'images des figures
+	 * n'étant pas partagé entre threads, il n'est pas utilisé par ce mode.
+	 * @param tiling le nouvel état du dessin par tuiles
+	 */
+	public void setTiling(boolean tiling)
+	{
+		if (tiling != isTiling())
+		{
+			tileRenderer = (tiling ? new TileRenderer() : null);
+			repaint();
+		}
+	}
+
+	/**
+	 * Accesseur de l'état du dessin progressif
+	 * @return true si le dessin des figures est réparti sur plusieurs
+	 * rafraichissements
+	 */
+	public boolean isProgressive()
+	{
+		return progressiveRenderer != null;
+	}
+
+	/**
+	 * Mise en place ou retrait du dessin progressif. Lorsqu'il est actif, les
+	 * figures sont dessinées dans une image persistante pendant une durée
+	 * limitée à chaque rafraichissement, le dessin se poursuivant lors des
+	 * rafraichissements suivants jusqu'à ce qu'il soit complet. Toute
+	 * modification du dessin reprend le dessin depuis le début.
+	 * @param progressive le nouvel état du dessin progressif
+	 */
+	public void setProgressive(boolean progressive)
+	{
+		if (progressive != isProgressive())
+		{
+			progressiveRenderer =
+				(progressive ? new ProgressiveRenderer() : null);
+			if (!progressive)
+			{
+				progressTimer.stop();
+			}
+			repaint();
+		}
+	}
+
+	/**
+	 * Accesseur de l'état du niveau de détail
+	 * @return true si les figures sont dessinées avec un niveau de détail
+	 * adapté à leur taille à l'écran
+	 */
+	public boolean isLevelOfDetail()
+	{
+		return levelOfDetail;
+	}
+
+	/**
+	 * Mise en place ou retrait du niveau de détail. Lorsqu'il est actif, les
+	 * figures minuscules sont réduites à un pixel ou à un rectangle plein et
+	 * les petites figures pointillées sont dessinées avec un trait plein.
+	 * @param levelOfDetail le nouvel état du niveau de détail
+	 * @see DetailRenderer
+	 */
+	public void setLevelOfDetail(boolean levelOfDetail)
+	{
+		if (levelOfDetail != this.levelOfDetail)
+		{
+			this.levelOfDetail = levelOfDetail;
+			if (layerCache != null)
+			{
+				layerCache.invalidate();
+			}
+			tileCache.clear();
+			if (progressiveRenderer != null)
+			{
+				progressiveRenderer.restart();
+			}
+			repaint();
+		}
+	}
+
+	/**
+	 * Accesseur de l'état du regroupement des figures par style
+	 * @return true si les figures sont dessinées par lots de même style
+	 */
+	public boolean isBatching()
+	{
+		return batchRenderer != null;
+	}
+
+	/**
+	 * Mise en place ou retrait du regroupement des figures par style.
+	 * Lorsqu'il est actif, les figures sont dessinées par lots de figures de
+	 * même style ne se chevauchant pas afin de limiter les changements
+	 * d'état du contexte graphique. Ce regroupement ne s'applique que
+	 * lorsque les figures sont dessinées directement (sans cache d'images ni
+	 * niveau de détail).
+	 * @param batching le nouvel état du regroupement par style
+	 * @see BatchRenderer
+	 */
+	public void setBatching(boolean batching)
+	{
+		if (batching != isBatching())
+		{
+			batchRenderer = (batching ? new BatchRenderer() : null);
+			repaint();
+		}
+	}
+
+	/**
+	 * Accesseur de l'état de la fusion des figures
+	 * @return true si les figures consécutives de même style sont dessinées
+	 * par lots fusionnés
+	 */
+	public boolean isMergedPaths()
+	{
+		return mergedDisplayList != null;
+	}
+
+	/**
+	 * Mise en place ou retrait de la fusion des figures. Lorsqu'elle est
+	 * active, les figures consécutives de même style sont fusionnées en un
+	 * seul chemin dessiné en une seule fois, les lots fusionnés étant
+	 * conservés et recompilés au fur et à mesure des modifications du
+	 * modèle. Comme le regroupement par style, cette fusion ne s'applique
+	 * que lorsque les figures sont dessinées directement.
+	 * @param merged le nouvel état de la fusion des figures
+	 * @see MergedDisplayList
+	 */
+	public void setMergedPaths(boolean merged)
+	{
+		if (merged != isMergedPaths())
+		{
+			mergedDisplayList = (merged ? new MergedDisplayList() : null);
+			repaint();
+		}
+	}
+
+	/**
+	 * Accesseur de l'état du dessin des bordures par leur contour
+	 * @return true si les bordures pointillées ou épaisses sont dessinées en
+	 * remplissant leur contour mémorisé
+	 */
+	public boolean isStrokedOutlines()
+	{
+		return strokedOutlines;
+	}
+
+	/**
+	 * Mise en place ou retrait du dessin des bordures par leur contour.
+	 * Lorsqu'il est actif, les traits ne sont plus ajustés sur les pixels et
+	 * les bordures pointillées ou épaisses sont dessinées en remplissant le
+	 * contour mémorisé par chaque figure plutôt qu'en recalculant le trait à
+	 * chaque dessin.
+	 * @param strokedOutlines le nouvel état du dessin des bordures
+	 */
+	public void setStrokedOutlines(boolean strokedOutlines)
+	{
+		if (strokedOutlines != this.strokedOutlines)
+		{
+			this.strokedOutlines = strokedOutlines;
+			if (layerCache != null)
+			{
+				layerCache.invalidate();
+			}
+			if (spriteCache != null)
+			{
+				spriteCache.clear();
+			}
+			if (progressiveRenderer != null)
+			{
+				progressiveRenderer.restart();
+			}
+			publishDisplayList();
+			repaint();
+		}
+	}
+
+	/**
+	 * Accesseur de l'état de la qualité adaptative
+	 * @return true si la qualité de rendu est adaptée aux interactions et à
+	 * la durée des rafraichissements
+	 */
+	public boolean isAdaptiveQuality()
+	{
+		return qualityController != null;
+	}
+
+	/**
+	 * Mise en place ou retrait de la qualité adaptative. Lorsqu'elle est
+	 * active, le dessin est effectué sans antialiasing pendant la création ou
+	 * le déplacement d'une figure ainsi qu'après un rafraichissement trop
+	 * long, puis en qualité maximale après un délai d'inactivité.
+	 * @param adaptive le nouvel état de la qualité adaptative
+	 * @see QualityController
+	 */
+	public void setAdaptiveQuality(boolean adaptive)
+	{
+		if (adaptive != isAdaptiveQuality())
+		{
+			if (adaptive)
+			{
+				qualityController = new QualityController(new Runnable()
+				{
+					@Override
+					public void run()
+					{
+						repaint();
+					}
+				});
+			}
+			else
+			{
+				qualityController.stop();
+				qualityController = null;
+			}
+			repaint();
+		}
+	}
+
+	/**
+	 * Accesseur de l'état du dessin par un thread dédié
+	 * @return true si les figures sont dessinées par un thread dédié
+	 */
+	public boolean isThreadedRendering()
+	{
+		return renderThread != null;
+	}
+
+	/**
+	 * Mise en place ou retrait du dessin par un thread dédié. Lorsqu'il est
+	 * actif, chaque modification du modèle publie une liste d'affichage
+	 * immuable que le {@link RenderThread} dessine dans une image hors écran,
+	 * l'EDT se contentant de recopier la dernière image terminée. Les autres
+	 * modes de dessin ne s'appliquent pas alors.
+	 * @param threaded le nouvel état du dessin par un thread dédié
+	 */
+	public void setThreadedRendering(boolean threaded)
+	{
+		if (threaded != isThreadedRendering())
+		{
+			if (threaded)
+			{
+				displayListCompiler = new DisplayListCompiler();
+				renderThread = new RenderThread(new Runnable()
+				{
+					@Override
+					public void run()
+					{
+						repaint();
+					}
+				});
+				renderThread.start();
+				publishDisplayList();
+			}
+			else
+			{
+				renderThread.shutdown();
+				renderThread = null;
+				displayListCompiler = null;
+				publishedSize = null;
+				repaint();
+			}
+		}
+	}
+
+	/**
+	 * Compilation et publication de la liste d'affichage du modèle au
+	 * {@link #renderThread} (s'il est actif)
+	 */
+	private void publishDisplayList()
+	{
+		if ((renderThread == null) || (drawingModel == null))
+		{
+			return;
+		}
+
+		double sx = 1.0;
+		double sy = 1.0;
+		GraphicsConfiguration gc = getGraphicsConfiguration();
+		if (gc != null)
+		{
+			AffineTransform t = gc.getDefaultTransform();
+			sx = Math.max(Math.abs(t.getScaleX()), 1.0);
+			sy = Math.max(Math.abs(t.getScaleY()), 1.0);
+		}
+		RenderingHints hints =
+			new RenderingHints(RenderingHints.KEY_ANTIALIASING,
+			                   RenderingHints.VALUE_ANTIALIAS_ON);
+		if (strokedOutlines)
+		{
+			hints.put(RenderingHints.KEY_STROKE_CONTROL,
+			          RenderingHints.VALUE_STROKE_PURE);
+		}
+
+		publishedSize = getSize();
+		renderThread.publish(displayListCompiler.compile(drawingModel),
+		                     publishedSize.width, publishedSize.height, sx, sy,
+		                     getBackground(), hints);
+	}
+
+	/**
+	 * Obtention du moyen de dessiner les figures : au travers du cache
+	 * d'images s'il est actif (et que le dessin n'est pas réparti entre
+	 * plusieurs threads) ou bien directement sinon, avec un niveau de détail
+	 * adapté si celui ci est actif.
+	 * @param concurrent indique si le moyen de dessiner sera utilisé par
+	 * plusieurs threads simultanément
+	 * @return le moyen de dessiner les figures
+	 */
+	private FigureRenderer getRenderer(boolean concurrent)
+	{
+		FigureRenderer renderer = FigureRenderer.Default;
+		if ((spriteCache != null) && !concurrent)
+		{
+			renderer = spriteCache;
+		}
+		if (levelOfDetail)
+		{
+			renderer = new DetailRenderer(renderer);
+		}
+		return renderer;
+	}
+
+	/**
+	 * Obtention de la figure située sous un point de ce panel, au travers du
+	 * {@link #pickBuffer} si le mode de sélection par tampon est actif (et la
+	 * vue à la taille réelle) ou bien directement auprès du modèle de dessin
+	 * sinon
+	 * @param p le point (dans le repère du dessin) sous lequel on cherche une
+	 * figure
+	 * @return la figure (filtrée) la plus au dessus sous le point p ou null
+	 * s'il n'y en a pas
+	 */
+	public Figure getFigureAt(Point2D p)
+	{
+		if (drawingModel == null)
+		{
+			return null;
+		}
+
+		if ((pickBuffer != null) && !isViewTransformed())
+		{
+			return pickBuffer.getFigureAt(drawingModel, getWidth(),
+			                              getHeight(), p);
+		}
+
+		return drawingModel.getFigureAt(p);
+	}
+
+	/**
+	 * Marge (en pixels) ajoutée autour des zones à redessiner pour tenir
+	 * compte de l'antialiasing
+	 */
+	private final static int damageMargin = 2;
+
+	/**
+	 * Dessin du panel. Mise en place des caractéristiques de rendu :
+	 * antialiasing, ou bien qualité choisie par le {@link #qualityController}
+	 * s'il est actif (sauf en mode progressif qui assure déjà la réactivité,
+	 * ou lorsque la vue est zoomée ou décalée afin de ne pas invalider les
+	 * tuiles du {@link #tileCache} à chaque changement de qualité),
+	 * puis dessin du modèle ({@link #paintDrawing(Graphics2D)}).
 	 * @param g le contexte graphique
 	 * @see javax.swing.JComponent#paintComponent(java.awt.Graphics)
 	 */
@@ -241,24 +1111,144 @@ public class DrawingPanel extends JPanel implements Observer, MouseListener,
 
 		// caractéristiques graphiques : mise en place de l'antialiasing
 		Graphics2D g2D = (Graphics2D) g;
-		g2D.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
-		                     RenderingHints.VALUE_ANTIALIAS_ON);
+		if (strokedOutlines)
+		{
+			g2D.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL,
+			                     RenderingHints.VALUE_STROKE_PURE);
+		}
+
+		if ((qualityController != null) && (progressiveRenderer == null)
+			&& (renderThread == null) && !isViewTransformed())
+		{
+			qualityController.begin(g2D, (drawingModel != null)
+				&& (drawingModel.getActiveFigure() != null));
+			paintDrawing(g2D);
+			qualityController.end();
+		}
+		else
+		{
+			g2D.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+			                     RenderingHints.VALUE_ANTIALIAS_ON);
+			paintDrawing(g2D);
+		}
+	}
+
+	/**
+	 * Dessin du modèle. Effacement de la zone à redessiner (clip) puis dessin
+	 * des seules figures dont le rectangle englobant intersecte cette zone,
+	 * obtenues auprès de l'index spatial du modèle. Le coût du dessin dépend
+	 * donc de ce qui est visible et non de la taille du dessin.
+	 * Lorsqu'une figure est en cours d'édition et que le cache de calques est
+	 * actif, les autres figures sont copiées depuis le {@link #layerCache}.
+	 * Lorsque le dessin par tuiles est actif, le dessin de la zone est confié
+	 * au {@link #tileRenderer}. Sinon les figures peuvent être regroupées
+	 * par style au travers du {@link #batchRenderer} ou fusionnées au
+	 * travers de la {@link #mergedDisplayList}.
+	 * Lorsque la vue est zoomée ou décalée, le dessin est recopié depuis les
+	 * tuiles du {@link #tileCache} et tous les autres modes (thread de
+	 * dessin, dessin progressif, cache de calques, dessin par lots ou
+	 * fusionné), qui ne concernent que la vue à la taille réelle, sont
+	 * ignorés jusqu'au retour à celle-ci ({@link #resetView()}).
+	 * Lorsque le dessin par un thread dédié est actif, la dernière image
+	 * dessinée par le {@link #renderThread} est simplement recopiée.
+	 * Sinon, lorsque le dessin progressif est actif il prend le pas sur les
+	 * autres modes : le {@link #progressiveRenderer} poursuit le dessin
+	 * pendant le temps qui lui est alloué et le {@link #progressTimer}
+	 * déclenche le rafraichissement suivant si le dessin n'est pas terminé.
+	 * @param g2D le contexte graphique
+	 */
+	private void paintDrawing(Graphics2D g2D)
+	{
+		if (isViewTransformed())
+		{
+			if (drawingModel != null)
+			{
+				tileCache.paint(g2D, drawingModel, zoomLevel, pan.x, pan.y,
+				                getWidth(), getHeight(), getBackground(),
+				                getRenderer(false));
+			}
+			else
+			{
+				g2D.setColor(getBackground());
+				g2D.fillRect(0, 0, getWidth(), getHeight());
+			}
+			return;
+		}
+
+		if (renderThread != null)
+		{
+			if (!getSize().equals(publishedSize))
+			{
+				publishDisplayList();
+			}
+			if (!renderThread.paint(g2D))
+			{
+				g2D.setColor(getBackground());
+				g2D.fillRect(0, 0, getWidth(), getHeight());
+			}
+			return;
+		}
+
+		if ((drawingModel != null) && (progressiveRenderer != null))
+		{
+			if (!progressiveRenderer.paint(g2D, drawingModel, getWidth(),
+			                               getHeight(), getBackground(),
+			                               getRenderer(false)))
+			{
+				progressTimer.restart();
+			}
+			return;
+		}
+
+		if ((drawingModel != null) && (layerCache != null)
+			&& (drawingModel.getActiveFigure() != null))
+		{
+			layerCache.paint(g2D, drawingModel,
+			                 drawingModel.getActiveFigure(), getWidth(),
+			                 getHeight(), getBackground(), getRenderer(false));
+			return;
+		}
+
+		// zone à redessiner
+		Rectangle clip = g2D.getClipBounds();
+		if (clip == null)
+		{
+			Dimension d = getSize();
+			clip = new Rectangle(0, 0, d.width, d.height);
+		}
+		Rectangle area = new Rectangle(clip);
+		area.grow(damageMargin, damageMargin);
+
+		if ((drawingModel != null) && (tileRenderer != null))
+		{
+			tileRenderer.paint(g2D, drawingModel.getFiguresIn(area), clip,
+			                   getBackground(), getRenderer(true));
+			return;
+		}
 
-		// taille de la zone de dessin
-		Dimension d = getSize();
 		// on commence par effacer le fond
 		g2D.setColor(getBackground());
-		g2D.fillRect(0, 0, d.width, d.height);
+		g2D.fillRect(clip.x, clip.y, clip.width, clip.height);
 
-		// Puis on dessine l'ensemble des figures
+		// Puis on dessine les figures concernées par la zone à redessiner
 		if (drawingModel != null)
 		{
-			/*
-			 * Application d'un Consumer<Figure> en tant que lambda expression
-			 * sur le flux (éventuellement filtré) des figures permettant
-			 * de dessiner les figures
-			 */
-			drawingModel.stream().forEach((Figure f) -> f.draw(g2D));
+			FigureRenderer renderer = getRenderer(false);
+			if ((mergedDisplayList != null)
+				&& (renderer == FigureRenderer.Default))
+			{
+				mergedDisplayList.paint(g2D, drawingModel, area);
+				return;
+			}
+			if ((batchRenderer != null) && (renderer == FigureRenderer.Default))
+			{
+				batchRenderer.paint(g2D, drawingModel.getFiguresIn(area));
+				return;
+			}
+			for (Figure f : drawingModel.getFiguresIn(area))
+			{
+				renderer.draw(g2D, f);
+			}
 		}
 	}
 
@@ -271,6 +1261,7 @@ public class DrawingPanel extends JPanel implements Observer, MouseListener,
 	{
 		if (cl != null)
 		{
+			cl.setViewConverter(this::toDrawing);
 			addMouseListener(cl);
 			addMouseMotionListener(cl);
 			// System.out.println("CreationListener " + cl + " added");
@@ -292,6 +1283,7 @@ public class DrawingPanel extends JPanel implements Observer, MouseListener,
 		{
 			removeMouseListener(cl);
 			removeMouseMotionListener(cl);
+			cl.setViewConverter(null);
 			// System.out.println("CreationListener " + cl + " removed");
 		}
 	}
@@ -299,7 +1291,9 @@ public class DrawingPanel extends JPanel implements Observer, MouseListener,
 	/**
 	 * Mise à jour déclenchée par un {@link Observable#notifyObservers()} : en
 	 * l'occurence le modèle de dessin ({@link Drawing}) lorsque celui ci est
-	 * modifié. Cette mise à jour déclenche une requête de redessin du panel.
+	 * modifié. Cette mise à jour déclenche une requête de redessin de la zone
+	 * modifiée lorsque le modèle la fournit au travers d'un
+	 * {@link DrawingChange} ou bien de l'ensemble du panel sinon.
 	 *
 	 * @param observable l'observable ayant déclenché cette MAJ
 	 * @param data les données (evt) transmises par l'observable
@@ -310,8 +1304,59 @@ public class DrawingPanel extends JPanel implements Observer, MouseListener,
 	{
 		if (observable instanceof Drawing)
 		{
-			// Le modèle à changé il faut redessiner les figures
-			repaint();
+			// Le modèle à changé : le tampon d'identifiants doit être
+			// reconstruit et il faut redessiner les figures
+			if (pickBuffer != null)
+			{
+				pickBuffer.invalidate();
+			}
+			if (layerCache != null)
+			{
+				layerCache.update(data instanceof DrawingChange
+					? (DrawingChange) data : null);
+			}
+			if ((spriteCache != null) && !((data instanceof DrawingChange)
+				&& !((DrawingChange) data).isGlobal()))
+			{
+				// modification globale (effacement notamment) : les images
+				// des figures retirées ne doivent pas être conservées
+				spriteCache.clear();
+			}
+			if (progressiveRenderer != null)
+			{
+				progressiveRenderer.restart();
+			}
+			if (mergedDisplayList != null)
+			{
+				mergedDisplayList.update(drawingModel,
+					data instanceof DrawingChange ? (DrawingChange) data : null);
+			}
+			tileCache.update(data instanceof DrawingChange
+				? (DrawingChange) data : null);
+			if (renderThread != null)
+			{
+				displayListCompiler.update(drawingModel,
+					data instanceof DrawingChange ? (DrawingChange) data : null);
+				publishDisplayList();
+				if (!isViewTransformed())
+				{
+					// le thread de dessin demandera le rafraichissement
+					return;
+				}
+			}
+
+			if ((data instanceof DrawingChange)
+				&& !((DrawingChange) data).isGlobal())
+			{
+				Rectangle damaged = getViewTransform().createTransformedShape(
+					((DrawingChange) data).getBounds()).getBounds();
+				damaged.grow(damageMargin, damageMargin);
+				repaint(damaged);
+			}
+			else
+			{
+				repaint();
+			}
 		}
 	}
 
@@ -326,8 +1371,9 @@ public class DrawingPanel extends JPanel implements Observer, MouseListener,
 	{
 		// Déplacement de la souris (btn enfoncé) : MAJ des coordonnées
 		// de la souris dans le coordLabel et infoPanel
-		refreshCoordLabel(e.getPoint());
-		refreshInfoPanel(e.getPoint());
+		Point2D p = toDrawing(e.getPoint());
+		refreshCoordLabel(p);
+		refreshInfoPanel(p);
 	}
 
 	/**
@@ -341,8 +1387,9 @@ public class DrawingPanel extends JPanel implements Observer, MouseListener,
 	{
 		// Déplacement de la souris : MAJ des coordonnées
 		// de la souris dans le coordLabel et infoPanel
-		refreshCoordLabel(e.getPoint());
-		refreshInfoPanel(e.getPoint());
+		Point2D p = toDrawing(e.getPoint());
+		refreshCoordLabel(p);
+		refreshInfoPanel(p);
 	}
 
 	@Override
@@ -361,8 +1408,9 @@ public class DrawingPanel extends JPanel implements Observer, MouseListener,
 	public void mouseEntered(MouseEvent e)
 	{
 		sendInfoState = true;
-		refreshCoordLabel(e.getPoint());
-		refreshInfoPanel(e.getPoint());
+		Point2D p = toDrawing(e.getPoint());
+		refreshCoordLabel(p);
+		refreshInfoPanel(p);
 	}
 
 	/**
@@ -377,7 +1425,7 @@ public class DrawingPanel extends JPanel implements Observer, MouseListener,
 		// Rien si ce n'est de remettre les coordonnés dans la barre d'état
 		// à x = ___ y = ___
 		sendInfoState = false;
-		refreshCoordLabel(e.getPoint());
+		refreshCoordLabel(toDrawing(e.getPoint()));
 		infoPanel.resetLabels();
 	}
 
@@ -401,7 +1449,7 @@ public class DrawingPanel extends JPanel implements Observer, MouseListener,
 	 * @param x l'abcisse des coordonnées à afficher
 	 * @param y l'ordonnée des coordonnées à afficher
 	 */
-	private void refreshCoordLabel(Point p)
+	private void refreshCoordLabel(Point2D p)
 	{
 		if ((coordLabel != null) && (p != null))
 		{
@@ -428,7 +1476,7 @@ public class DrawingPanel extends JPanel implements Observer, MouseListener,
 	{
 		if ((infoPanel != null) && sendInfoState)
 		{
-			Figure selectedFigure = drawingModel.getFigureAt(p);
+			Figure selectedFigure = getFigureAt(p);
 
 			if (selectedFigure != null)
 			{
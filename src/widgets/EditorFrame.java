@@ -13,7 +13,12 @@ import java.awt.event.InputEvent;
 import java.awt.event.ItemEvent;
 import java.awt.event.ItemListener;
 import java.awt.event.KeyEvent;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
+import java.io.File;
+import java.io.IOException;
 import java.util.EventObject;
+import java.util.concurrent.ExecutionException;
 
 import javax.swing.AbstractAction;
 import javax.swing.AbstractButton;
@@ -25,6 +30,7 @@ import javax.swing.JCheckBox;
 import javax.swing.JCheckBoxMenuItem;
 import javax.swing.JColorChooser;
 import javax.swing.JComboBox;
+import javax.swing.JFileChooser;
 import javax.swing.JFrame;
 import javax.swing.JLabel;
 import javax.swing.JMenu;
@@ -39,11 +45,15 @@ import javax.swing.JToggleButton;
 import javax.swing.JToolBar;
 import javax.swing.KeyStroke;
 import javax.swing.SpinnerNumberModel;
+import javax.swing.SwingWorker;
 import javax.swing.border.BevelBorder;
 import javax.swing.event.ChangeEvent;
 import javax.swing.event.ChangeListener;
 
+import export.PngExporter;
 import figures.Drawing;
+import figures.DrawingSnapshot;
+import figures.FigureStore;
 import figures.creationListeners.AbstractCreationListener;
 import figures.creationListeners.MoveShapeListener;
 import figures.enums.FigureType;
@@ -233,6 +243,16 @@ public class EditorFrame extends JFrame
 	 */
 	private final Action clearAction = new ClearAction();
 
+	/**
+	 * Action déclenchée lorsque l'on clique sur l'item de menu export
+	 */
+	private final Action exportAction = new ExportAction();
+
+	/**
+	 * Action déclenchée lorsque l'on clique sur l'item de menu compact
+	 */
+	private final Action compactAction = new CompactAction();
+
 	/**
 	 * Action déclenchée lorsque l'on clique sur le bouton about ou sur l'item
 	 * de menu about
@@ -304,7 +324,9 @@ public class EditorFrame extends JFrame
 		 * aller dans l'onglet Design
 		 */
 		setPreferredSize(new Dimension(650, 450));
-		drawingModel = new Drawing();
+		// stockage compact selon la propriété système figures.store
+		drawingModel = new Drawing(FigureStore.create());
+		compactAction.setEnabled(drawingModel.getStore() != null);
 		creationListener = null;
 
 		setTitle(EditorName);
@@ -426,7 +448,8 @@ public class EditorFrame extends JFrame
 				if (drawingModel.isMoveMode())
 				{
 					drawingPanel.removeCreationListener(creationListener);
-					creationListener = new MoveShapeListener(drawingModel, infoLabel);
+					creationListener = new MoveShapeListener(drawingModel,
+						infoLabel, drawingPanel::getFigureAt);
 					drawingPanel.addCreationListener(creationListener);
 				}
 				else
@@ -470,6 +493,14 @@ public class EditorFrame extends JFrame
 		JMenuItem mntmClear = new JMenuItem("Clear");
 		mntmClear.setAction(clearAction);
 		mnFile.add(mntmClear);
+
+		JMenuItem mntmExport = new JMenuItem("Export PNG...");
+		mntmExport.setAction(exportAction);
+		mnFile.add(mntmExport);
+
+		JMenuItem mntmCompact = new JMenuItem("Compact Figures");
+		mntmCompact.setAction(compactAction);
+		mnFile.add(mntmCompact);
 		
 		JMenu mnFilter = new JMenu("Filter");
 		menuBar.add(mnFilter);
@@ -579,6 +610,208 @@ public class EditorFrame extends JFrame
 		chckbxmntmDashed.setIcon(IconFactory.getIcon("Dashed_small"));
 		mnStrokes.add(chckbxmntmDashed);
 
+		JMenu mnRendering = new JMenu("Rendering");
+		menuBar.add(mnRendering);
+
+		JCheckBoxMenuItem chckbxmntmPicking = new JCheckBoxMenuItem("Picking Buffer");
+		chckbxmntmPicking.setSelected(drawingPanel.isPicking());
+		chckbxmntmPicking.addActionListener(new ActionListener()
+		{
+			@Override
+			public void actionPerformed(ActionEvent event)
+			{
+				AbstractButton button = (AbstractButton) event.getSource();
+				drawingPanel.setPicking(button.getModel().isSelected());
+			}
+		});
+		mnRendering.add(chckbxmntmPicking);
+
+		JCheckBoxMenuItem chckbxmntmLayers = new JCheckBoxMenuItem("Layer Cache");
+		chckbxmntmLayers.setSelected(drawingPanel.isLayerCaching());
+		chckbxmntmLayers.addActionListener(new ActionListener()
+		{
+			@Override
+			public void actionPerformed(ActionEvent event)
+			{
+				AbstractButton button = (AbstractButton) event.getSource();
+				drawingPanel.setLayerCaching(button.getModel().isSelected());
+			}
+		});
+		mnRendering.add(chckbxmntmLayers);
+
+		JCheckBoxMenuItem chckbxmntmSprites = new JCheckBoxMenuItem("Sprite Cache");
+		chckbxmntmSprites.setSelected(drawingPanel.isSpriteCaching());
+		chckbxmntmSprites.addActionListener(new ActionListener()
+		{
+			@Override
+			public void actionPerformed(ActionEvent event)
+			{
+				AbstractButton button = (AbstractButton) event.getSource();
+				drawingPanel.setSpriteCaching(button.getModel().isSelected());
+			}
+		});
+		mnRendering.add(chckbxmntmSprites);
+
+		JCheckBoxMenuItem chckbxmntmTiles = new JCheckBoxMenuItem("Parallel Tiles");
+		chckbxmntmTiles.setSelected(drawingPanel.isTiling());
+		chckbxmntmTiles.addActionListener(new ActionListener()
+		{
+			@Override
+			public void actionPerformed(ActionEvent event)
+			{
+				AbstractButton button = (AbstractButton) event.getSource();
+				drawingPanel.setTiling(button.getModel().isSelected());
+			}
+		});
+		mnRendering.add(chckbxmntmTiles);
+
+		JCheckBoxMenuItem chckbxmntmProgressive = new JCheckBoxMenuItem("Progressive");
+		chckbxmntmProgressive.setSelected(drawingPanel.isProgressive());
+		chckbxmntmProgressive.addActionListener(new ActionListener()
+		{
+			@Override
+			public void actionPerformed(ActionEvent event)
+			{
+				AbstractButton button = (AbstractButton) event.getSource();
+				drawingPanel.setProgressive(button.getModel().isSelected());
+			}
+		});
+		mnRendering.add(chckbxmntmProgressive);
+
+		JCheckBoxMenuItem chckbxmntmDetail = new JCheckBoxMenuItem("Level of Detail");
+		chckbxmntmDetail.setSelected(drawingPanel.isLevelOfDetail());
+		chckbxmntmDetail.addActionListener(new ActionListener()
+		{
+			@Override
+			public void actionPerformed(ActionEvent event)
+			{
+				AbstractButton button = (AbstractButton) event.getSource();
+				drawingPanel.setLevelOfDetail(button.getModel().isSelected());
+			}
+		});
+		mnRendering.add(chckbxmntmDetail);
+
+		JCheckBoxMenuItem chckbxmntmBatching = new JCheckBoxMenuItem("Style Batching");
+		chckbxmntmBatching.setSelected(drawingPanel.isBatching());
+		chckbxmntmBatching.addActionListener(new ActionListener()
+		{
+			@Override
+			public void actionPerformed(ActionEvent event)
+			{
+				AbstractButton button = (AbstractButton) event.getSource();
+				drawingPanel.setBatching(button.getModel().isSelected());
+			}
+		});
+		mnRendering.add(chckbxmntmBatching);
+
+		JCheckBoxMenuItem chckbxmntmMerged = new JCheckBoxMenuItem("Merged Paths");
+		chckbxmntmMerged.setSelected(drawingPanel.isMergedPaths());
+		chckbxmntmMerged.addActionListener(new ActionListener()
+		{
+			@Override
+			public void actionPerformed(ActionEvent event)
+			{
+				AbstractButton button = (AbstractButton) event.getSource();
+				drawingPanel.setMergedPaths(button.getModel().isSelected());
+			}
+		});
+		mnRendering.add(chckbxmntmMerged);
+
+		JCheckBoxMenuItem chckbxmntmOutlines = new JCheckBoxMenuItem("Stroked Outlines");
+		chckbxmntmOutlines.setSelected(drawingPanel.isStrokedOutlines());
+		chckbxmntmOutlines.addActionListener(new ActionListener()
+		{
+			@Override
+			public void actionPerformed(ActionEvent event)
+			{
+				AbstractButton button = (AbstractButton) event.getSource();
+				drawingPanel.setStrokedOutlines(button.getModel().isSelected());
+			}
+		});
+		mnRendering.add(chckbxmntmOutlines);
+
+		JCheckBoxMenuItem chckbxmntmQuality = new JCheckBoxMenuItem("Adaptive Quality");
+		chckbxmntmQuality.setSelected(drawingPanel.isAdaptiveQuality());
+		chckbxmntmQuality.addActionListener(new ActionListener()
+		{
+			@Override
+			public void actionPerformed(ActionEvent event)
+			{
+				AbstractButton button = (AbstractButton) event.getSource();
+				drawingPanel.setAdaptiveQuality(button.getModel().isSelected());
+			}
+		});
+		mnRendering.add(chckbxmntmQuality);
+
+		JCheckBoxMenuItem chckbxmntmThread = new JCheckBoxMenuItem("Render Thread");
+		chckbxmntmThread.setSelected(drawingPanel.isThreadedRendering());
+		chckbxmntmThread.addActionListener(new ActionListener()
+		{
+			@Override
+			public void actionPerformed(ActionEvent event)
+			{
+				AbstractButton button = (AbstractButton) event.getSource();
+				drawingPanel.setThreadedRendering(button.getModel().isSelected());
+			}
+		});
+		mnRendering.add(chckbxmntmThread);
+
+		JMenu mnView = new JMenu("View");
+		menuBar.add(mnView);
+
+		JMenuItem mntmZoomIn = new JMenuItem("Zoom In");
+		mntmZoomIn.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_EQUALS,
+				Toolkit.getDefaultToolkit().getMenuShortcutKeyMask()));
+		mntmZoomIn.addActionListener(new ActionListener()
+		{
+			@Override
+			public void actionPerformed(ActionEvent event)
+			{
+				drawingPanel.zoomIn();
+			}
+		});
+		mnView.add(mntmZoomIn);
+
+		JMenuItem mntmZoomOut = new JMenuItem("Zoom Out");
+		mntmZoomOut.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_MINUS,
+				Toolkit.getDefaultToolkit().getMenuShortcutKeyMask()));
+		mntmZoomOut.addActionListener(new ActionListener()
+		{
+			@Override
+			public void actionPerformed(ActionEvent event)
+			{
+				drawingPanel.zoomOut();
+			}
+		});
+		mnView.add(mntmZoomOut);
+
+		JMenuItem mntmActualSize = new JMenuItem("Actual Size");
+		mntmActualSize.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_0,
+				Toolkit.getDefaultToolkit().getMenuShortcutKeyMask()));
+		mntmActualSize.addActionListener(new ActionListener()
+		{
+			@Override
+			public void actionPerformed(ActionEvent event)
+			{
+				drawingPanel.resetView();
+			}
+		});
+		mnView.add(mntmActualSize);
+
+		JMenuItem mntmFit = new JMenuItem("Fit Drawing");
+		mntmFit.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_0,
+				Toolkit.getDefaultToolkit().getMenuShortcutKeyMask()
+				| InputEvent.SHIFT_MASK));
+		mntmFit.addActionListener(new ActionListener()
+		{
+			@Override
+			public void actionPerformed(ActionEvent event)
+			{
+				drawingPanel.fitToDrawing();
+			}
+		});
+		mnView.add(mntmFit);
+
 		if (!isMacOS)
 		{
 			JSeparator separator = new JSeparator();
@@ -767,6 +1000,153 @@ public class EditorFrame extends JFrame
 		}
 	}
 
+	/**
+	 * Action réalisée pour déplacer les figures du dessin vers son stockage
+	 * compact ({@link Drawing#storeFigures()}). N'est active que lorsque le
+	 * dessin dispose d'un stockage compact ({@link FigureStore#create()}).
+	 */
+	private class CompactAction extends AbstractAction
+	{
+		/**
+		 * Constructeur de l'action pour compacter les figures du dessin
+		 * Met en place la description de l'action
+		 */
+		public CompactAction()
+		{
+			putValue(NAME, "Compact Figures");
+			putValue(SHORT_DESCRIPTION,
+			         "Move figures to the compact figure store");
+		}
+
+		/**
+		 * Opérations réalisées par l'action
+		 * @param e l'évènement déclenchant l'action. Peut provenir d'un bouton
+		 *            ou d'un item de menu
+		 */
+		@Override
+		public void actionPerformed(ActionEvent e)
+		{
+			int moved = drawingModel.storeFigures();
+			System.out.println("Compact Figures : " + moved
+				+ " figures stored");
+		}
+	}
+
+	/**
+	 * Action réalisée pour exporter le dessin dans une image PNG. L'export
+	 * est réalisé en arrière plan à partir d'un instantané du dessin
+	 * ({@link Drawing#snapshot()}) afin que l'édition puisse continuer
+	 * pendant l'export, figures du stockage compact comprises.
+	 */
+	private class ExportAction extends AbstractAction
+	{
+		/**
+		 * Constructeur de l'action pour exporter le dessin
+		 * Met en place le raccourci clavier et la description de l'action
+		 */
+		public ExportAction()
+		{
+			putValue(NAME, "Export PNG...");
+			putValue(ACCELERATOR_KEY, KeyStroke.getKeyStroke(KeyEvent.VK_E,
+					Toolkit.getDefaultToolkit().getMenuShortcutKeyMask()));
+			putValue(SHORT_DESCRIPTION, "Export drawing as a PNG image");
+		}
+
+		/**
+		 * Opérations réalisées par l'action
+		 * @param e l'évènement déclenchant l'action. Peut provenir d'un bouton
+		 *            ou d'un item de menu
+		 */
+		@Override
+		public void actionPerformed(ActionEvent e)
+		{
+			JFileChooser chooser = new JFileChooser();
+			chooser.setSelectedFile(new File("drawing.png"));
+			if (chooser.showSaveDialog(EditorFrame.this)
+				!= JFileChooser.APPROVE_OPTION)
+			{
+				return;
+			}
+			final File file = chooser.getSelectedFile();
+			final PngExporter exporter = new PngExporter();
+			final DrawingSnapshot snapshot = drawingModel.snapshot();
+			final Rectangle2D extent = snapshot.getExtent();
+			if (extent == null)
+			{
+				JOptionPane.showMessageDialog(EditorFrame.this,
+					"Nothing to export", EditorName,
+					JOptionPane.INFORMATION_MESSAGE);
+				return;
+			}
+			setEnabled(false);
+			new SwingWorker<Void, Void>()
+			{
+				@Override
+				protected Void doInBackground() throws IOException
+				{
+					exporter.export(snapshot, width(extent), height(extent),
+					                origin(extent), file);
+					return null;
+				}
+
+				@Override
+				protected void done()
+				{
+					ExportAction.this.setEnabled(true);
+					try
+					{
+						get();
+					}
+					catch (InterruptedException | ExecutionException ex)
+					{
+						failed(ex);
+					}
+				}
+			}.execute();
+		}
+
+		/**
+		 * Largeur de l'image exportée (étendue du dessin plus une marge d'un
+		 * pixel de chaque côté)
+		 */
+		private int width(Rectangle2D extent)
+		{
+			return (extent != null ? (int) Math.ceil(extent.getWidth()) + 2
+				: 1);
+		}
+
+		/**
+		 * Hauteur de l'image exportée
+		 */
+		private int height(Rectangle2D extent)
+		{
+			return (extent != null ? (int) Math.ceil(extent.getHeight()) + 2
+				: 1);
+		}
+
+		/**
+		 * Transformation plaçant l'étendue du dessin dans l'image exportée
+		 */
+		private AffineTransform origin(Rectangle2D extent)
+		{
+			return (extent != null
+				? AffineTransform.getTranslateInstance(1 - extent.getX(),
+				                                       1 - extent.getY())
+				: null);
+		}
+
+		/**
+		 * Signalement de l'échec d'un export
+		 */
+		private void failed(Exception ex)
+		{
+			System.err.println("Export failed : " + ex);
+			JOptionPane.showMessageDialog(EditorFrame.this,
+				"Export failed : " + ex.getMessage(), EditorName,
+				JOptionPane.ERROR_MESSAGE);
+		}
+	}
+
 	/**
 	 * Action réalisée pour afficher la boite de dialogue "A propos ..."
 	 */